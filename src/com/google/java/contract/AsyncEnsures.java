@@ -0,0 +1,68 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Specifies postconditions that apply to the value with which the
+ * {@link java.util.concurrent.CompletableFuture} returned by the
+ * annotated method completes. The annotated method must establish
+ * its postconditions if and only if the preconditions were
+ * satisfied.
+ *
+ * <p>When run time checking of contracts is enabled, these
+ * postconditions do not block the caller: they are attached to the
+ * returned future on method exit, and checked by the thread that
+ * completes it. The method then returns a dependent future instead
+ * of the original one, which completes with the same value, or, if a
+ * postcondition is violated, exceptionally with a
+ * {@link java.util.concurrent.CompletionException} caused by a
+ * {@link com.google.java.contract.PostconditionError}. Cancelling the
+ * dependent future does not cancel the original one. Postconditions
+ * are not checked when the future completes exceptionally.
+ *
+ * @see Ensures
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AsyncEnsures {
+  /**
+   * The list of postconditions that must be met by the value of the
+   * returned future. The expressions have the same syntax and
+   * semantics as in normal postconditions, except that the
+   * {@code result} keyword refers to the value the future completes
+   * with, instead of the future itself. The annotated method must
+   * return a {@code CompletableFuture}, not a subclass of it.
+   *
+   * @see Ensures#value()
+   */
+  String[] value();
+
+  /**
+   * The cost tiers of the clauses in {@link #value()}, in the same
+   * order. A single tier applies to all clauses; by default, the tier
+   * of each clause is estimated from its code at compile time.
+   */
+  Cost[] cost() default {};
+}
@@ -99,6 +99,115 @@ public interface ContractEnvironment {
   @Ensures("!hasInvariantsEnabled(pattern)")
   public void disableInvariants(String pattern);
 
+  /**
+   * Enables invariant checking on entry to and exit from private
+   * methods of classes matched by pattern {@code pattern}. This is
+   * the default. Has no effect on classes that have invariants
+   * disabled.
+   *
+   * @throws UnsupportedOperationException if this environment does
+   * not support selective contract activation
+   */
+  @Requires("pattern != null")
+  @Ensures("hasPrivateInvariantsEnabled(pattern)")
+  public void enablePrivateInvariants(String pattern);
+
+  /**
+   * Disables invariant checking on entry to and exit from private
+   * methods of classes matched by pattern {@code pattern}. Such
+   * methods can only be called from within their class, where
+   * invariants need not hold; no invariant checking code is woven
+   * into them. Constructors are not affected.
+   *
+   * @throws UnsupportedOperationException if this environment does
+   * not support selective contract activation
+   */
+  @Requires("pattern != null")
+  @Ensures("!hasPrivateInvariantsEnabled(pattern)")
+  public void disablePrivateInvariants(String pattern);
+
+  /**
+   * Enables invariant checking on entry to and exit from
+   * package-private methods of classes matched by pattern
+   * {@code pattern}. This is the default. Has no effect on classes
+   * that have invariants disabled.
+   *
+   * @throws UnsupportedOperationException if this environment does
+   * not support selective contract activation
+   */
+  @Requires("pattern != null")
+  @Ensures("hasPackageInvariantsEnabled(pattern)")
+  public void enablePackageInvariants(String pattern);
+
+  /**
+   * Disables invariant checking on entry to and exit from
+   * package-private methods of classes matched by pattern
+   * {@code pattern}, as {@link #disablePrivateInvariants(String)}
+   * does for private methods.
+   *
+   * @throws UnsupportedOperationException if this environment does
+   * not support selective contract activation
+   */
+  @Requires("pattern != null")
+  @Ensures("!hasPackageInvariantsEnabled(pattern)")
+  public void disablePackageInvariants(String pattern);
+
+  /**
+   * Enables contract checking in all methods of classes matched by
+   * pattern {@code pattern}. This is the default.
+   *
+   * @throws UnsupportedOperationException if this environment does
+   * not support selective contract activation
+   */
+  @Requires("pattern != null")
+  @Ensures("hasInternalContractsEnabled(pattern)")
+  public void enableInternalContracts(String pattern);
+
+  /**
+   * Restricts contract checking in classes matched by pattern
+   * {@code pattern} to their API boundary: contracts are only woven
+   * into public methods and constructors of public classes, which
+   * other packages can call. Other methods are left unchanged, even
+   * though they may be called through a public interface.
+   *
+   * @throws UnsupportedOperationException if this environment does
+   * not support selective contract activation
+   */
+  @Requires("pattern != null")
+  @Ensures("!hasInternalContractsEnabled(pattern)")
+  public void disableInternalContracts(String pattern);
+
+  /**
+   * Enables checking of contract clauses of cost tier {@code tier}
+   * for classes matched by pattern {@code pattern}. All tiers are
+   * enabled by default.
+   *
+   * @throws UnsupportedOperationException if this environment does
+   * not support selective contract activation
+   */
+  @Requires({
+    "pattern != null",
+    "tier != null"
+  })
+  @Ensures("hasCostTierEnabled(pattern, tier)")
+  public void enableCostTier(String pattern, Cost tier);
+
+  /**
+   * Disables checking of contract clauses of cost tier {@code tier}
+   * for classes matched by pattern {@code pattern}. The clauses are
+   * skipped by the code woven into the classes that declare them;
+   * contract methods whose clauses are all disabled are not called.
+   *
+   * @throws UnsupportedOperationException if this environment does
+   * not support selective contract activation
+   */
+  @Requires({
+    "pattern != null",
+    "tier != null"
+  })
+  @Ensures("!hasCostTierEnabled(pattern, tier)")
+  public void disableCostTier(String pattern, Cost tier);
+
   /**
    * Returns {@code true} if {@code clazz} has preconditions
    * enabled. This does <em>not</em> imply that such a class has any
@@ -147,6 +256,39 @@ public interface ContractEnvironment {
   @Requires("pattern != null")
   public boolean hasInvariantsEnabled(String pattern);
 
+  /**
+   * Returns {@code true} if all classes matched by {@code pattern}
+   * have invariant checking enabled on private methods.
+   */
+  @Requires("pattern != null")
+  public boolean hasPrivateInvariantsEnabled(String pattern);
+
+  /**
+   * Returns {@code true} if all classes matched by {@code pattern}
+   * have invariant checking enabled on package-private methods.
+   */
+  @Requires("pattern != null")
+  public boolean hasPackageInvariantsEnabled(String pattern);
+
+  /**
+   * Returns {@code true} if all classes matched by {@code pattern}
+   * have contract checking enabled in methods that are not part of
+   * their API boundary.
+   */
+  @Requires("pattern != null")
+  public boolean hasInternalContractsEnabled(String pattern);
+
+  /**
+   * Returns {@code true} if all classes matched by {@code pattern}
+   * have checking of contract clauses of cost tier {@code tier}
+   * enabled.
+   */
+  @Requires({
+    "pattern != null",
+    "tier != null"
+  })
+  public boolean hasCostTierEnabled(String pattern, Cost tier);
+
   /**
    * Ignores classes matched by {@code pattern}. Ignored classes are
    * not touched by Contracts for Java in any way: they are neither
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract;
+
+/**
+ * The cost tier of a contract clause. Tiers let checks of different
+ * costs be enabled separately, per class, through a
+ * {@link ContractEnvironment}: for example, constant-time checks may
+ * be kept in production, while checks that traverse data structures
+ * are only enabled during testing.
+ *
+ * @see ContractEnvironment#disableCostTier(String, Cost)
+ */
+public enum Cost {
+  /**
+   * Clauses that take constant time, such as null or range checks.
+   */
+  CHEAP,
+
+  /**
+   * Clauses that call methods or allocate objects, but do not
+   * traverse data structures. Clauses with no specified cost are
+   * estimated in this tier when they contain such calls.
+   */
+  NORMAL,
+
+  /**
+   * Clauses that take time proportional to the size of some data
+   * structure, or more.
+   */
+  EXPENSIVE
+}
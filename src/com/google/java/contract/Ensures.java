@@ -70,6 +70,24 @@ public @interface Ensures {
    *
    * <p>It is an error to call a method named {@code old} from within
    * a postcondition.
+   *
+   * <p>If the annotated method returns a {@link java.util.stream.Stream},
+   * an {@link java.lang.Iterable} or an {@link java.util.Iterator}
+   * (not a subtype of these), the {@code each(lambda)} construct
+   * states a condition on each element of the result, for example
+   * {@code each(x -> x != null)}. The result is not traversed on
+   * return; instead, the method returns a wrapper of it that checks
+   * each element as the caller consumes it; elements that are never
+   * consumed are never checked. The construct itself evaluates to
+   * {@code true} on return. It is an error to call a method named {@code each}
+   * from within the postconditions of such a method.
    */
   String[] value();
+
+  /**
+   * The cost tiers of the clauses in {@link #value()}, in the same
+   * order. A single tier applies to all clauses; by default, the tier
+   * of each clause is estimated from its code at compile time.
+   */
+  Cost[] cost() default {};
 }
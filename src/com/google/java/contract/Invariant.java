@@ -46,4 +46,11 @@ public @interface Invariant {
    * including private members.
    */
   String[] value();
+
+  /**
+   * The cost tiers of the clauses in {@link #value()}, in the same
+   * order. A single tier applies to all clauses; by default, the tier
+   * of each clause is estimated from its code at compile time.
+   */
+  Cost[] cost() default {};
 }
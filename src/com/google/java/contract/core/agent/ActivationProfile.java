@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.agent;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Requires;
+
+/**
+ * A common combination of contract activation settings, for which
+ * pre-woven class variants may be produced offline. When the
+ * activation rules in effect for a class match a profile, the agent
+ * can load the corresponding variant as is, instead of weaving the
+ * class itself.
+ */
+public enum ActivationProfile {
+  /**
+   * All contracts enabled.
+   */
+  ALL(true, true, true),
+
+  /**
+   * Preconditions only.
+   */
+  PRE(true, false, false),
+
+  /**
+   * All contracts disabled.
+   */
+  OFF(false, false, false);
+
+  private final boolean withPreconditions;
+  private final boolean withPostconditions;
+  private final boolean withInvariants;
+
+  private ActivationProfile(boolean withPreconditions,
+                            boolean withPostconditions,
+                            boolean withInvariants) {
+    this.withPreconditions = withPreconditions;
+    this.withPostconditions = withPostconditions;
+    this.withInvariants = withInvariants;
+  }
+
+  public boolean hasPreconditionsEnabled() {
+    return withPreconditions;
+  }
+
+  public boolean hasPostconditionsEnabled() {
+    return withPostconditions;
+  }
+
+  public boolean hasInvariantsEnabled() {
+    return withInvariants;
+  }
+
+  /**
+   * Returns the name of this profile, as used in file names.
+   */
+  @Ensures("result != null")
+  public String getFileName() {
+    return name().toLowerCase();
+  }
+
+  /**
+   * Returns the profile that matches the activation rules in effect
+   * for {@code className}, or {@code null} if there is none. Classes
+   * with invariant checking disabled on internal methods, with
+   * contracts restricted to their API boundary, or with some cost
+   * tier disabled, match no profile.
+   */
+  @Requires({
+    "am != null",
+    "className != null"
+  })
+  public static ActivationProfile forClass(ActivationRuleManager am,
+                                           String className) {
+    boolean pre = am.hasPreconditionsEnabled(className);
+    boolean post = am.hasPostconditionsEnabled(className);
+    boolean inv = am.hasInvariantsEnabled(className);
+    if (inv && (!am.hasPrivateInvariantsEnabled(className)
+                || !am.hasPackageInvariantsEnabled(className))) {
+      return null;
+    }
+    if (!am.hasInternalContractsEnabled(className)
+        || !am.hasAllCostTiersEnabled(className)) {
+      return null;
+    }
+    for (ActivationProfile profile : values()) {
+      if (profile.withPreconditions == pre
+          && profile.withPostconditions == post
+          && profile.withInvariants == inv) {
+        return profile;
+      }
+    }
+    return null;
+  }
+}
@@ -17,12 +17,15 @@
  */
 package com.google.java.contract.core.agent;
 
+import com.google.java.contract.Cost;
 import com.google.java.contract.Ensures;
 import com.google.java.contract.Invariant;
 import com.google.java.contract.Requires;
 import com.google.java.contract.core.util.DebugUtils;
 import com.google.java.contract.core.util.PatternMap;
 
+import java.util.EnumMap;
+
 /**
  * A process-wide collection of contract activation rules.
  *
@@ -31,7 +34,13 @@ import com.google.java.contract.core.util.PatternMap;
 @Invariant({
   "assertPre != null",
   "assertPost != null",
-  "assertInvariant != null"
+  "assertInvariant != null",
+  "assertPrivateInvariant != null",
+  "assertPackageInvariant != null",
+  "assertInternal != null",
+  "assertCostTier != null",
+  "assertCostTier.size() == Cost.values().length",
+  "maxCostTier != null"
 })
 public class ActivationRuleManager {
   protected static ActivationRuleManager instance = null;
@@ -39,11 +48,32 @@ public class ActivationRuleManager {
   protected PatternMap<Boolean> assertPre = new PatternMap<Boolean>();
   protected PatternMap<Boolean> assertPost = new PatternMap<Boolean>();
   protected PatternMap<Boolean> assertInvariant = new PatternMap<Boolean>();
+  protected PatternMap<Boolean> assertPrivateInvariant =
+      new PatternMap<Boolean>();
+  protected PatternMap<Boolean> assertPackageInvariant =
+      new PatternMap<Boolean>();
+  protected PatternMap<Boolean> assertInternal = new PatternMap<Boolean>();
+  protected EnumMap<Cost, PatternMap<Boolean>> assertCostTier =
+      new EnumMap<Cost, PatternMap<Boolean>>(Cost.class);
+
+  /*
+   * The most expensive tier enabled for classes that no cost tier
+   * rule matches.
+   */
+  protected Cost maxCostTier = Cost.EXPENSIVE;
 
   protected ActivationRuleManager() {
     assertPre = new PatternMap<Boolean>();
     assertPost = new PatternMap<Boolean>();
     assertInvariant = new PatternMap<Boolean>();
+    assertPrivateInvariant = new PatternMap<Boolean>();
+    assertPackageInvariant = new PatternMap<Boolean>();
+    assertInternal = new PatternMap<Boolean>();
+    assertCostTier = new EnumMap<Cost, PatternMap<Boolean>>(Cost.class);
+    for (Cost tier : Cost.values()) {
+      assertCostTier.put(tier, new PatternMap<Boolean>());
+    }
+    maxCostTier = Cost.EXPENSIVE;
   }
 
   public static ActivationRuleManager getInstance() {
@@ -53,6 +83,23 @@ public class ActivationRuleManager {
     return instance;
   }
 
+  /**
+   * Sets the most expensive cost tier enabled by default, that is
+   * for classes that no cost tier rule matches. More expensive tiers
+   * are disabled unless enabled by a rule.
+   */
+  @Requires("tier != null")
+  @Ensures("tier == getMaxCostTier()")
+  public synchronized void setMaxCostTier(Cost tier) {
+    DebugUtils.info("activation", "cost tiers up to " + getTierName(tier));
+    maxCostTier = tier;
+  }
+
+  @Ensures("result != null")
+  public synchronized Cost getMaxCostTier() {
+    return maxCostTier;
+  }
+
   @Requires("pattern != null")
   @Ensures("hasPreconditionsEnabled(pattern)")
   public synchronized void enablePreconditions(String pattern) {
@@ -95,6 +142,68 @@ public class ActivationRuleManager {
     assertInvariant.put(pattern, false);
   }
 
+  @Requires("pattern != null")
+  @Ensures("hasPrivateInvariantsEnabled(pattern)")
+  public synchronized void enablePrivateInvariants(String pattern) {
+    DebugUtils.info("activation", pattern + " +private-invariant");
+    assertPrivateInvariant.put(pattern, true);
+  }
+
+  @Requires("pattern != null")
+  @Ensures("!hasPrivateInvariantsEnabled(pattern)")
+  public synchronized void disablePrivateInvariants(String pattern) {
+    DebugUtils.info("activation", pattern + " -private-invariant");
+    assertPrivateInvariant.put(pattern, false);
+  }
+
+  @Requires("pattern != null")
+  @Ensures("hasPackageInvariantsEnabled(pattern)")
+  public synchronized void enablePackageInvariants(String pattern) {
+    DebugUtils.info("activation", pattern + " +package-invariant");
+    assertPackageInvariant.put(pattern, true);
+  }
+
+  @Requires("pattern != null")
+  @Ensures("!hasPackageInvariantsEnabled(pattern)")
+  public synchronized void disablePackageInvariants(String pattern) {
+    DebugUtils.info("activation", pattern + " -package-invariant");
+    assertPackageInvariant.put(pattern, false);
+  }
+
+  @Requires("pattern != null")
+  @Ensures("hasInternalContractsEnabled(pattern)")
+  public synchronized void enableInternalContracts(String pattern) {
+    DebugUtils.info("activation", pattern + " +internal");
+    assertInternal.put(pattern, true);
+  }
+
+  @Requires("pattern != null")
+  @Ensures("!hasInternalContractsEnabled(pattern)")
+  public synchronized void disableInternalContracts(String pattern) {
+    DebugUtils.info("activation", pattern + " -internal");
+    assertInternal.put(pattern, false);
+  }
+
+  @Requires({
+    "pattern != null",
+    "tier != null"
+  })
+  @Ensures("hasCostTierEnabled(pattern, tier)")
+  public synchronized void enableCostTier(String pattern, Cost tier) {
+    DebugUtils.info("activation", pattern + " +cost-" + getTierName(tier));
+    assertCostTier.get(tier).put(pattern, true);
+  }
+
+  @Requires({
+    "pattern != null",
+    "tier != null"
+  })
+  @Ensures("!hasCostTierEnabled(pattern, tier)")
+  public synchronized void disableCostTier(String pattern, Cost tier) {
+    DebugUtils.info("activation", pattern + " -cost-" + getTierName(tier));
+    assertCostTier.get(tier).put(pattern, false);
+  }
+
   @Requires("pattern != null")
   public synchronized boolean hasPreconditionsEnabled(String pattern) {
     if (pattern.endsWith(".*") && assertPre.isOverriden(pattern)) {
@@ -121,4 +230,64 @@ public class ActivationRuleManager {
     Boolean rule = assertInvariant.get(pattern);
     return rule == null || rule;
   }
+
+  @Requires("pattern != null")
+  public synchronized boolean hasPrivateInvariantsEnabled(String pattern) {
+    if (pattern.endsWith(".*") && assertPrivateInvariant.isOverriden(pattern)) {
+      return false;
+    }
+    Boolean rule = assertPrivateInvariant.get(pattern);
+    return rule == null || rule;
+  }
+
+  @Requires("pattern != null")
+  public synchronized boolean hasPackageInvariantsEnabled(String pattern) {
+    if (pattern.endsWith(".*") && assertPackageInvariant.isOverriden(pattern)) {
+      return false;
+    }
+    Boolean rule = assertPackageInvariant.get(pattern);
+    return rule == null || rule;
+  }
+
+  @Requires("pattern != null")
+  public synchronized boolean hasInternalContractsEnabled(String pattern) {
+    if (pattern.endsWith(".*") && assertInternal.isOverriden(pattern)) {
+      return false;
+    }
+    Boolean rule = assertInternal.get(pattern);
+    return rule == null || rule;
+  }
+
+  @Requires({
+    "pattern != null",
+    "tier != null"
+  })
+  public synchronized boolean hasCostTierEnabled(String pattern, Cost tier) {
+    PatternMap<Boolean> rules = assertCostTier.get(tier);
+    if (pattern.endsWith(".*") && rules.isOverriden(pattern)) {
+      return false;
+    }
+    Boolean rule = rules.get(pattern);
+    return rule == null ? tier.compareTo(maxCostTier) <= 0 : rule;
+  }
+
+  /**
+   * Returns {@code true} if all cost tiers are enabled for all
+   * classes matched by {@code pattern}.
+   */
+  @Requires("pattern != null")
+  public synchronized boolean hasAllCostTiersEnabled(String pattern) {
+    for (Cost tier : Cost.values()) {
+      if (!hasCostTierEnabled(pattern, tier)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Requires("tier != null")
+  @Ensures("result != null")
+  private static String getTierName(Cost tier) {
+    return tier.name().toLowerCase();
+  }
 }
@@ -17,6 +17,7 @@
  */
 package com.google.java.contract.core.agent;
 
+import com.google.java.contract.Cost;
 import com.google.java.contract.Invariant;
 import com.google.java.contract.core.runtime.RuntimeContractEnvironment;
 
@@ -63,6 +64,46 @@ public class AgentContractEnvironment extends RuntimeContractEnvironment {
     activationManager.disableInvariants(pattern);
   }
 
+  @Override
+  public void enablePrivateInvariants(String pattern) {
+    activationManager.enablePrivateInvariants(pattern);
+  }
+
+  @Override
+  public void disablePrivateInvariants(String pattern) {
+    activationManager.disablePrivateInvariants(pattern);
+  }
+
+  @Override
+  public void enablePackageInvariants(String pattern) {
+    activationManager.enablePackageInvariants(pattern);
+  }
+
+  @Override
+  public void disablePackageInvariants(String pattern) {
+    activationManager.disablePackageInvariants(pattern);
+  }
+
+  @Override
+  public void enableInternalContracts(String pattern) {
+    activationManager.enableInternalContracts(pattern);
+  }
+
+  @Override
+  public void disableInternalContracts(String pattern) {
+    activationManager.disableInternalContracts(pattern);
+  }
+
+  @Override
+  public void enableCostTier(String pattern, Cost tier) {
+    activationManager.enableCostTier(pattern, tier);
+  }
+
+  @Override
+  public void disableCostTier(String pattern, Cost tier) {
+    activationManager.disableCostTier(pattern, tier);
+  }
+
   @Override
   public boolean hasPreconditionsEnabled(Class<?> clazz) {
     return activationManager.hasPreconditionsEnabled(clazz.getName());
@@ -92,4 +133,24 @@ public class AgentContractEnvironment extends RuntimeContractEnvironment {
   public boolean hasInvariantsEnabled(String pattern) {
     return activationManager.hasInvariantsEnabled(pattern);
   }
+
+  @Override
+  public boolean hasPrivateInvariantsEnabled(String pattern) {
+    return activationManager.hasPrivateInvariantsEnabled(pattern);
+  }
+
+  @Override
+  public boolean hasPackageInvariantsEnabled(String pattern) {
+    return activationManager.hasPackageInvariantsEnabled(pattern);
+  }
+
+  @Override
+  public boolean hasInternalContractsEnabled(String pattern) {
+    return activationManager.hasInternalContractsEnabled(pattern);
+  }
+
+  @Override
+  public boolean hasCostTierEnabled(String pattern, Cost tier) {
+    return activationManager.hasCostTierEnabled(pattern, tier);
+  }
 }
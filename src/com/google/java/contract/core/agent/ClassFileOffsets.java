@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.agent;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Requires;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Utility methods to locate the tables of a class file read by a
+ * {@link ClassReader}, by walking its structure instead of visiting
+ * the class.
+ */
+class ClassFileOffsets {
+  /**
+   * Returns the offset of the field table of the class read by
+   * {@code reader}.
+   */
+  @Requires("reader != null")
+  @Ensures("result > reader.header")
+  static int getFieldsOffset(ClassReader reader) {
+    int u = reader.header + 6;
+    return u + 2 + 2 * reader.readUnsignedShort(u);
+  }
+
+  /**
+   * Returns the offset of the method table of the class read by
+   * {@code reader}.
+   */
+  @Requires("reader != null")
+  @Ensures("result > reader.header")
+  static int getMethodsOffset(ClassReader reader) {
+    return skipMembers(reader, getFieldsOffset(reader));
+  }
+
+  /**
+   * Returns the offset of the attribute table of the class read by
+   * {@code reader}.
+   */
+  @Requires("reader != null")
+  @Ensures("result > reader.header")
+  static int getAttributesOffset(ClassReader reader) {
+    return skipMembers(reader, getMethodsOffset(reader));
+  }
+
+  /**
+   * Returns the offset that follows the field or method table that
+   * starts at offset {@code u}.
+   */
+  @Requires({
+    "reader != null",
+    "u >= 0"
+  })
+  @Ensures("result > u")
+  private static int skipMembers(ClassReader reader, int u) {
+    int n = reader.readUnsignedShort(u);
+    u += 2;
+    for (; n > 0; --n) {
+      int m = reader.readUnsignedShort(u + 6);
+      u += 8;
+      for (; m > 0; --m) {
+        u += 6 + reader.readInt(u + 2);
+      }
+    }
+    return u;
+  }
+}
@@ -98,6 +98,32 @@ class ContractAnalyzer extends ClassVisitor {
     return matched;
   }
 
+  /**
+   * Returns all handles, class and method handles alike.
+   */
+  @Ensures({
+    "result != null",
+    "!result.contains(null)"
+  })
+  List<ContractHandle> getAllHandles() {
+    ArrayList<ContractHandle> all = new ArrayList<ContractHandle>();
+    all.addAll(classHandles);
+    for (ArrayList<MethodContractHandle> handles : methodHandles.values()) {
+      all.addAll(handles);
+    }
+    return all;
+  }
+
+  /**
+   * Returns {@code true} if there are method contracts for some
+   * method named {@code name}.
+   */
+  @Requires("name != null")
+  boolean hasMethodHandles(String name) {
+    ArrayList<MethodContractHandle> candidates = methodHandles.get(name);
+    return candidates != null && !candidates.isEmpty();
+  }
+
   /**
    * Returns the MethodHandle objects matching the specified criteria.
    *
@@ -22,6 +22,7 @@ import com.google.java.contract.AllowUnusedImport;
 import com.google.java.contract.Ensures;
 import com.google.java.contract.Requires;
 import com.google.java.contract.core.model.ClassName;
+import com.google.java.contract.core.model.ContractKind;
 import com.google.java.contract.core.runtime.BlacklistManager;
 import com.google.java.contract.core.util.DebugUtils;
 import com.google.java.contract.core.util.JavaUtils;
@@ -233,6 +234,27 @@ public class ContractClassFileTransformer implements ClassFileTransformer {
 
   protected Map<String, String> superClassNames = new HashMap<String, String>();
 
+  /**
+   * Whether to look for pre-woven class variants before weaving.
+   */
+  protected boolean usePreWovenVariants;
+
+  /**
+   * Whether to inline inherited helper contract methods.
+   */
+  protected boolean flattenInheritedContracts;
+
+  /**
+   * Whether to weave classes lazily, through {@link LazyWeaver}.
+   */
+  protected boolean lazyWeaving;
+
+  /**
+   * Whether to skip invariant checks on objects that have not been
+   * written since their last check.
+   */
+  protected boolean trackDirtyInvariants;
+
   /**
    * Constructs a new ContractClassFileTransformer.
    */
@@ -251,6 +273,46 @@ public class ContractClassFileTransformer implements ClassFileTransformer {
     this.loader = loader;
   }
 
+  /**
+   * Sets whether pre-woven class variants, if available and up to
+   * date, are loaded instead of weaving classes.
+   */
+  public void setUsePreWovenVariants(boolean usePreWovenVariants) {
+    this.usePreWovenVariants = usePreWovenVariants;
+  }
+
+  /**
+   * Sets whether contracts inherited from superclasses and interfaces
+   * are inlined into the contract methods of the classes being
+   * instrumented, when possible.
+   *
+   * @see ContractFlattener
+   */
+  public void setFlattenInheritedContracts(boolean flattenInheritedContracts) {
+    this.flattenInheritedContracts = flattenInheritedContracts;
+  }
+
+  /**
+   * Sets whether invariants are only checked on objects that may
+   * have changed since their last successful check, in classes that
+   * allow it.
+   *
+   * @see SpecificationClassAdapter#isTrackingDirtyInvariants()
+   */
+  public void setTrackDirtyInvariants(boolean trackDirtyInvariants) {
+    this.trackDirtyInvariants = trackDirtyInvariants;
+  }
+
+  /**
+   * Sets whether contracted methods are woven with a trampoline to
+   * {@link LazyWeaver} at load time, and with their contracts only
+   * once they are hot. In this mode, the transformer must be
+   * registered as able to retransform classes.
+   */
+  public void setLazyWeaving(boolean lazyWeaving) {
+    this.lazyWeaving = lazyWeaving;
+  }
+
   /**
    * Instruments the specified class, if necessary.
    */
@@ -264,7 +326,15 @@ public class ContractClassFileTransformer implements ClassFileTransformer {
     }
     try {
       this.loader = loader;
-      ContractAnalyzer contracts = analyze(className);
+      if (canUsePreWovenVariants()) {
+        byte[] variant = findPreWovenVariant(className, bytecode);
+        if (variant != null) {
+          DebugUtils.info("agent", "using pre-woven " + className);
+          return variant;
+        }
+      }
+
+      ContractAnalyzer contracts = analyze(className, bytecode);
       if (contracts == null) {
         if (className.endsWith(JavaUtils.HELPER_CLASS_SUFFIX)) {
           DebugUtils.info("agent", "adding source info to " + className);
@@ -274,7 +344,10 @@ public class ContractClassFileTransformer implements ClassFileTransformer {
         }
       } else {
         DebugUtils.info("agent", "adding contracts to " + className);
-        return instrumentWithContracts(bytecode, contracts);
+        boolean lazy = lazyWeaving
+            && (redefinedClass == null
+                || !LazyWeaver.getInstance().isHot(redefinedClass));
+        return instrumentWithContracts(bytecode, contracts, null, lazy);
       }
     } catch (Throwable e) {
       DebugUtils.err("agent", "while instrumenting " + className, e);
@@ -305,6 +378,31 @@ public class ContractClassFileTransformer implements ClassFileTransformer {
     }
   }
 
+  /**
+   * Instruments the specified class with contracts, as enabled by
+   * {@code profile}.
+   */
+  @Requires({
+    "bytecode != null",
+    "contractBytecode != null",
+    "profile != null"
+  })
+  @Ensures("result != null")
+  public byte[] transformWithContracts(byte[] bytecode, byte[] contractBytecode,
+                                       ActivationProfile profile)
+      throws IllegalClassFormatException {
+    try {
+      ContractAnalyzer contracts =
+          extractContracts(new ClassReader(contractBytecode));
+      return instrumentWithContracts(bytecode, contracts, profile);
+    } catch (Throwable t) {
+      /* If the class file contains errors, ASM will just crash. */
+      IllegalClassFormatException e = new IllegalClassFormatException();
+      e.initCause(t);
+      throw e;
+    }
+  }
+
   /**
    * Instruments the specified class with debug information.
    */
@@ -322,21 +420,82 @@ public class ContractClassFileTransformer implements ClassFileTransformer {
     }
   }
 
+  /**
+   * Returns {@code true} if pre-woven variants may be loaded instead
+   * of weaving classes. Variants cannot be used when weaving lazily,
+   * since they have no trampolines.
+   */
+  protected boolean canUsePreWovenVariants() {
+    return usePreWovenVariants && !lazyWeaving;
+  }
+
+  /**
+   * Returns the weaving mode flags of this transformer, as recorded
+   * in pre-woven variants.
+   *
+   * @see PreWovenVariants
+   */
+  @Ensures("result >= 0")
+  public int getWeavingModes() {
+    int modes = 0;
+    if (flattenInheritedContracts) {
+      modes |= PreWovenVariants.FLATTEN;
+    }
+    if (trackDirtyInvariants) {
+      modes |= PreWovenVariants.DIRTY;
+    }
+    return modes;
+  }
+
+  /**
+   * Returns the pre-woven variant of the specified class for the
+   * activation profile and weaving modes in effect, or {@code null}
+   * if there is none. This method does not parse {@code bytecode}.
+   */
+  @Requires({
+    "ClassName.isBinaryName(className)",
+    "bytecode != null"
+  })
+  protected byte[] findPreWovenVariant(String className, byte[] bytecode)
+      throws IOException {
+    ActivationProfile profile =
+        ActivationProfile.forClass(ActivationRuleManager.getInstance(),
+                                   className);
+    if (profile == null) {
+      return null;
+    }
+    return PreWovenVariants.find(loader, className, profile, bytecode,
+                                 getWeavingModes());
+  }
+
   /**
    * Extracts contract methods for the specified class, if necessary.
+   * Contracts embedded in {@code bytecode} take precedence over
+   * contract class files.
    *
    * @param className the class name
+   * @param bytecode the bytecode of the class
    * @return the extracted contracts or {@code null} if the class has
    * none and should not be instrumented
    */
-  @Requires("ClassName.isBinaryName(className)")
-  protected ContractAnalyzer analyze(String className)
+  @Requires({
+    "ClassName.isBinaryName(className)",
+    "bytecode != null"
+  })
+  protected ContractAnalyzer analyze(String className, byte[] bytecode)
       throws IOException {
     /* Skip helper classes. */
     if (className.endsWith(JavaUtils.HELPER_CLASS_SUFFIX)) {
       return null;
     }
 
+    /* Use embedded contracts, if any; no lookup needed. */
+    byte[] contractBytecode =
+        ContractsAttribute.extract(new ClassReader(bytecode));
+    if (contractBytecode != null) {
+      return extractContracts(new ClassReader(contractBytecode));
+    }
+
     /* Skip interfaces. */
     String helperFileName = className + JavaUtils.HELPER_CLASS_SUFFIX
         + Kind.CLASS.extension;
@@ -380,14 +539,66 @@ public class ContractClassFileTransformer implements ClassFileTransformer {
   @Ensures("result != null")
   protected byte[] instrumentWithContracts(byte[] bytecode,
                                            ContractAnalyzer contracts) {
+    return instrumentWithContracts(bytecode, contracts, null);
+  }
+
+  /**
+   * Instruments the passed class file with contracts, as enabled by
+   * {@code profile}, or by the activation rules in effect if
+   * {@code profile} is {@code null}.
+   */
+  @Requires({
+    "bytecode != null",
+    "contracts != null"
+  })
+  @Ensures("result != null")
+  protected byte[] instrumentWithContracts(byte[] bytecode,
+                                           ContractAnalyzer contracts,
+                                           ActivationProfile profile) {
+    return instrumentWithContracts(bytecode, contracts, profile, false);
+  }
+
+  /**
+   * Instruments the passed class file with contracts, as above, or,
+   * if {@code lazy} is {@code true}, with trampolines to
+   * {@link LazyWeaver}. Class files older than Java 5 cannot refer to
+   * their own class from a trampoline and are never woven lazily.
+   */
+  @Requires({
+    "bytecode != null",
+    "contracts != null"
+  })
+  @Ensures("result != null")
+  protected byte[] instrumentWithContracts(byte[] bytecode,
+                                           ContractAnalyzer contracts,
+                                           ActivationProfile profile,
+                                           boolean lazy) {
     ClassReader reader = new ClassReader(bytecode);
+    if (flattenInheritedContracts) {
+      new ContractFlattener(reader.getClassName(), this, loader)
+          .flatten(contracts);
+    }
+
     ClassWriter writer =
         new NonLoadingClassWriter(reader,
                                   ClassWriter.COMPUTE_FRAMES |
                                   ClassWriter.COMPUTE_MAXS);
 
     SpecificationClassAdapter adapter =
-        new SpecificationClassAdapter(writer, contracts);
+        new SpecificationClassAdapter(writer, contracts, profile);
+    adapter.setSignalTypeAnalyzer(
+        new SignalTypeAnalyzer(reader.getClassName(), contracts, this, loader));
+    if (contracts.getClassHandle(ContractKind.INVARIANT) != null) {
+      adapter.setReadOnlyMethods(new ReadOnlyMethodAnalyzer().analyze(reader));
+    }
+    adapter.setTrackDirtyInvariants(trackDirtyInvariants);
+    if (lazyWeaving) {
+      /* Lazy and full weaving must yield the same methods. */
+      adapter.setInjectAllContractMethods(true);
+      if (lazy && reader.readUnsignedShort(6) >= Opcodes.V1_5) {
+        adapter.setLazy(LazyWeaver.getInstance().newClassId());
+      }
+    }
     reader.accept(adapter, ClassReader.EXPAND_FRAMES);
 
     return writer.toByteArray();
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.agent;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.util.JavaUtils;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import javax.tools.JavaFileObject.Kind;
+
+/**
+ * A standalone program that embeds contract class files into the
+ * class files they belong to, as a {@link ContractsAttribute}. The
+ * resulting class files can be deployed without their {@code .contracts}
+ * companions; the agent reads the contracts directly from the bytecode
+ * it is handed.
+ *
+ * <p>Usage:
+ *
+ * <pre>
+ * java -Dcom.google.java.contract.classoutput=&lt;outdir&gt; \
+ *   com.google.java.contract.core.agent.ContractEmbedder &lt;someclass&gt;.class...
+ * </pre>
+ *
+ * <p>If no output directory is specified, class files are rewritten in
+ * place.
+ */
+public class ContractEmbedder {
+  /**
+   * A class adapter that appends a contracts attribute to the visited
+   * class, replacing any existing one.
+   */
+  private static class EmbeddingClassAdapter extends ClassVisitor {
+    protected byte[] contractBytecode;
+
+    @Requires({
+      "cv != null",
+      "contractBytecode != null"
+    })
+    public EmbeddingClassAdapter(ClassVisitor cv, byte[] contractBytecode) {
+      super(Opcodes.ASM5, cv);
+      this.contractBytecode = contractBytecode;
+    }
+
+    @Override
+    public void visitAttribute(Attribute attr) {
+      if (!ContractsAttribute.isContractsAttribute(attr)) {
+        super.visitAttribute(attr);
+      }
+    }
+
+    @Override
+    public void visitEnd() {
+      super.visitAttribute(new ContractsAttribute(contractBytecode));
+      super.visitEnd();
+    }
+  }
+
+  /**
+   * Returns {@code bytecode} with {@code contractBytecode} embedded.
+   */
+  @Requires({
+    "bytecode != null",
+    "contractBytecode != null"
+  })
+  @Ensures("result != null")
+  public static byte[] embed(byte[] bytecode, byte[] contractBytecode) {
+    ClassReader reader = new ClassReader(bytecode);
+    ClassWriter writer = new ClassWriter(reader, 0);
+    reader.accept(new EmbeddingClassAdapter(writer, contractBytecode),
+                  new Attribute[] { new ContractsAttribute() }, 0);
+    return writer.toByteArray();
+  }
+
+  public static void main(String[] args) throws IOException {
+    String classout =
+      System.getProperty("com.google.java.contract.classoutput");
+    embed(args, classout);
+  }
+
+  /**
+   * Embeds contracts into the class files listed in {@code args}.
+   * Class files without a {@code .contracts} file, interfaces and
+   * helper classes are copied unchanged if {@code classout} is
+   * not {@code null}, and left alone otherwise.
+   *
+   * @param args the class file names
+   * @param classout the output directory, or {@code null} to
+   * rewrite files in place
+   */
+  @Requires("args != null")
+  public static void embed(String[] args, String classout)
+      throws IOException {
+    for (String arg : args) {
+      String baseName = arg;
+      if (arg.endsWith(Kind.CLASS.extension)) {
+        baseName = baseName
+            .substring(0, baseName.length() - Kind.CLASS.extension.length());
+      }
+
+      File fileName = new File(baseName + Kind.CLASS.extension);
+      File contractFileName =
+          new File(baseName + JavaUtils.CONTRACTS_EXTENSION);
+      File helperFileName =
+          new File(baseName + JavaUtils.HELPER_CLASS_SUFFIX
+                   + Kind.CLASS.extension);
+
+      byte[] bytecode = JavaUtils.getBytes(fileName);
+      byte[] embedded = null;
+
+      /*
+       * Interfaces are handled through their helper classes, which
+       * are not affected.
+       */
+      if (!baseName.endsWith(JavaUtils.HELPER_CLASS_SUFFIX)
+          && !helperFileName.isFile()
+          && contractFileName.isFile()) {
+        embedded = embed(bytecode, JavaUtils.getBytes(contractFileName));
+      }
+
+      File outputFileName;
+      if (classout == null) {
+        if (embedded == null) {
+          continue;
+        }
+        outputFileName = fileName;
+      } else {
+        String className = new ClassReader(bytecode).getClassName();
+        outputFileName =
+            new File(classout + "/" + className + Kind.CLASS.extension);
+      }
+
+      outputFileName.getAbsoluteFile().getParentFile().mkdirs();
+      FileOutputStream out = new FileOutputStream(outputFileName);
+      try {
+        out.write(embedded == null ? bytecode : embedded);
+      } finally {
+        out.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,656 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.agent;
+
+import com.google.java.contract.AllowUnusedImport;
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.model.ClassName;
+import com.google.java.contract.core.model.ContractKind;
+import com.google.java.contract.core.util.DebugUtils;
+import com.google.java.contract.core.util.JavaUtils;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.MultiANewArrayInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inlines the helper contract methods of superclasses and interfaces
+ * into the contract methods of a class, so that evaluating inherited
+ * contracts takes a single call per contract method, whatever the
+ * depth of the hierarchy.
+ *
+ * <p>A helper call is only inlined if the helper can be found at
+ * weave time and everything it references is accessible from the
+ * flattened class. Package-private members are considered accessible
+ * from classes of the same package; flattening therefore assumes that
+ * packages are not split across class loaders. Inlined code carries
+ * no line number information.
+ */
+@AllowUnusedImport(ClassName.class)
+@Invariant({
+  "ClassName.isBinaryName(className)",
+  "transformer != null"
+})
+class ContractFlattener {
+  /**
+   * The access information of a class, as read from its class file.
+   */
+  protected static class ClassInfo extends ClassVisitor {
+    int access;
+    String superName;
+    String[] interfaces;
+    Map<String, Integer> members = new HashMap<String, Integer>();
+
+    ClassInfo() {
+      super(Opcodes.ASM5);
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature,
+                      String superName, String[] interfaces) {
+      this.access = access;
+      this.superName = superName;
+      this.interfaces = interfaces;
+    }
+
+    @Override
+    public FieldVisitor visitField(int access, String name, String desc,
+                                   String signature, Object value) {
+      members.put(name + desc, access);
+      return null;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String desc,
+                                     String signature, String[] exceptions) {
+      members.put(name + desc, access);
+      return null;
+    }
+  }
+
+  /**
+   * A helper contract method, with the class it belongs to.
+   */
+  protected static class Helper {
+    final String owner;
+    final MethodNode method;
+
+    Helper(String owner, MethodNode method) {
+      this.owner = owner;
+      this.method = method;
+    }
+  }
+
+  protected String className;
+  protected ContractClassFileTransformer transformer;
+  protected ClassLoader loader;
+
+  /*
+   * Caches, valid for a single class. A null value records a failed
+   * lookup.
+   */
+  protected Map<String, ClassInfo> classInfos;
+  protected Map<String, ContractAnalyzer> ancestorContracts;
+  protected Map<String, Boolean> inlinable;
+
+  /**
+   * Constructs a new ContractFlattener for the class
+   * {@code className}, looking up ancestors through {@code loader}.
+   */
+  @Requires({
+    "ClassName.isBinaryName(className)",
+    "transformer != null"
+  })
+  ContractFlattener(String className,
+                    ContractClassFileTransformer transformer,
+                    ClassLoader loader) {
+    this.className = className;
+    this.transformer = transformer;
+    this.loader = loader;
+    classInfos = new HashMap<String, ClassInfo>();
+    ancestorContracts = new HashMap<String, ContractAnalyzer>();
+    inlinable = new HashMap<String, Boolean>();
+  }
+
+  /**
+   * Inlines inherited helper calls into all contract methods of
+   * {@code contracts}.
+   *
+   * @return the number of helper calls inlined
+   */
+  @Requires("contracts != null")
+  @Ensures("result >= 0")
+  int flatten(ContractAnalyzer contracts) {
+    int count = 0;
+    for (ContractHandle h : contracts.getAllHandles()) {
+      ContractKind kind = h.getKind();
+      if (kind.isHelperContract()
+          || kind == ContractKind.ACCESS || kind == ContractKind.LAMBDA) {
+        continue;
+      }
+      count += flattenMethod(h.getContractMethod());
+    }
+    if (count != 0) {
+      DebugUtils.info("instrument", "inlined " + count
+                      + " inherited helper calls into " + className);
+    }
+    return count;
+  }
+
+  /**
+   * Inlines inherited helper calls into {@code method}.
+   *
+   * @return the number of helper calls inlined
+   */
+  @Requires("method != null")
+  @Ensures("result >= 0")
+  protected int flattenMethod(MethodNode method) {
+    int count = 0;
+    AbstractInsnNode insn = method.instructions.getFirst();
+    while (insn != null) {
+      AbstractInsnNode next = insn.getNext();
+      if (insn instanceof MethodInsnNode) {
+        MethodInsnNode call = (MethodInsnNode) insn;
+        Helper helper = findHelper(call);
+        if (helper != null && isStatement(call)
+            && isInlinable(helper)) {
+          /* Inlined code keeps the cost tiers of its ancestor. */
+          CostTierResolver.forClass(getContractedClassName(helper.owner))
+              .resolve(helper.method);
+          inline(method, call, helper.method);
+          ++count;
+        }
+      }
+      insn = next;
+    }
+    return count;
+  }
+
+  /**
+   * Returns the name of the class whose contracts are held by
+   * {@code owner}, which may be a helper class.
+   */
+  @Requires("owner != null")
+  @Ensures("result != null")
+  private static String getContractedClassName(String owner) {
+    if (owner.endsWith(JavaUtils.HELPER_CLASS_SUFFIX)) {
+      return owner.substring(
+          0, owner.length() - JavaUtils.HELPER_CLASS_SUFFIX.length());
+    }
+    return owner;
+  }
+
+  /**
+   * Returns the inherited helper invoked by {@code call}, or
+   * {@code null} if {@code call} is not a call to an inherited
+   * helper or the helper cannot be found.
+   */
+  @Requires("call != null")
+  protected Helper findHelper(MethodInsnNode call) {
+    if (!call.name.startsWith("com$google$java$contract$")) {
+      return null;
+    }
+
+    if (call.getOpcode() == Opcodes.INVOKESTATIC
+        && call.owner.endsWith(JavaUtils.HELPER_CLASS_SUFFIX)) {
+      MethodNode m = findHelperMethod(getHelperClassContracts(call.owner),
+                                      call.name, call.desc);
+      return m == null ? null : new Helper(call.owner, m);
+    }
+
+    if (call.getOpcode() == Opcodes.INVOKEVIRTUAL
+        && call.owner.equals(className)) {
+      ClassInfo info = getClassInfo(className);
+      String ancestor = info == null ? null : info.superName;
+      while (ancestor != null) {
+        MethodNode m = findHelperMethod(getAncestorContracts(ancestor),
+                                        call.name, call.desc);
+        if (m != null) {
+          return new Helper(ancestor, m);
+        }
+        info = getClassInfo(ancestor);
+        ancestor = info == null ? null : info.superName;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns the helper contract method of {@code contracts} with the
+   * specified name and descriptor, or {@code null} if there is none.
+   */
+  static MethodNode findHelperMethod(ContractAnalyzer contracts,
+                                     String name, String desc) {
+    if (contracts == null) {
+      return null;
+    }
+    for (ClassContractHandle h :
+         contracts.getClassHandles(ContractKind.HELPER)) {
+      MethodNode m = h.getContractMethod();
+      if (m.name.equals(name) && m.desc.equals(desc)) {
+        return m;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns {@code true} if {@code call} is made with an empty stack
+   * below its arguments, which are all loaded from local variables.
+   * This is the shape of all helper calls in contract methods, and
+   * ensures exception handlers in the inlined code do not discard
+   * values of the caller.
+   */
+  @Requires("call != null")
+  protected boolean isStatement(MethodInsnNode call) {
+    int n = Type.getArgumentTypes(call.desc).length;
+    if (call.getOpcode() != Opcodes.INVOKESTATIC) {
+      ++n;
+    }
+    AbstractInsnNode insn = previous(call);
+    for (; n > 0; --n) {
+      if (insn == null) {
+        return false;
+      }
+      int opcode = insn.getOpcode();
+      if (!(opcode >= Opcodes.ILOAD && opcode <= Opcodes.ALOAD)
+          && opcode != Opcodes.ACONST_NULL) {
+        return false;
+      }
+      insn = previous(insn);
+    }
+    if (insn == null) {
+      return true;
+    }
+    if (insn instanceof MethodInsnNode) {
+      return Type.getReturnType(((MethodInsnNode) insn).desc)
+          == Type.VOID_TYPE;
+    }
+    int opcode = insn.getOpcode();
+    return (opcode >= Opcodes.ISTORE && opcode <= Opcodes.ASTORE)
+        || (opcode >= Opcodes.IFEQ && opcode <= Opcodes.GOTO)
+        || (opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN)
+        || opcode == Opcodes.IFNULL || opcode == Opcodes.IFNONNULL
+        || opcode == Opcodes.POP || opcode == Opcodes.POP2
+        || opcode == Opcodes.ATHROW;
+  }
+
+  /**
+   * Returns the instruction before {@code insn}, skipping labels,
+   * line numbers and frames.
+   */
+  private static AbstractInsnNode previous(AbstractInsnNode insn) {
+    do {
+      insn = insn.getPrevious();
+    } while (insn != null && insn.getOpcode() == -1);
+    return insn;
+  }
+
+  /**
+   * Returns {@code true} if the body of {@code helper} can be copied
+   * into the flattened class: it may not call lambdas, nor reference
+   * members or classes that are not accessible from there.
+   */
+  @Requires("helper != null")
+  protected boolean isInlinable(Helper helper) {
+    String key = helper.owner + "." + helper.method.name + helper.method.desc;
+    Boolean cached = inlinable.get(key);
+    if (cached == null) {
+      cached = computeInlinable(helper.method);
+      if (!cached) {
+        DebugUtils.info("instrument", "cannot inline " + key
+                        + " into " + className);
+      }
+      inlinable.put(key, cached);
+    }
+    return cached;
+  }
+
+  private boolean computeInlinable(MethodNode method) {
+    for (TryCatchBlockNode tcb : method.tryCatchBlocks) {
+      if (tcb.type != null && !isAccessibleClass(tcb.type)) {
+        return false;
+      }
+    }
+    for (AbstractInsnNode insn = method.instructions.getFirst();
+         insn != null; insn = insn.getNext()) {
+      switch (insn.getType()) {
+        case AbstractInsnNode.INVOKE_DYNAMIC_INSN:
+          return false;
+        case AbstractInsnNode.FIELD_INSN: {
+          FieldInsnNode f = (FieldInsnNode) insn;
+          if (!isAccessibleMember(f.owner, f.name + f.desc)) {
+            return false;
+          }
+          break;
+        }
+        case AbstractInsnNode.METHOD_INSN: {
+          MethodInsnNode m = (MethodInsnNode) insn;
+          if (!isAccessibleMember(m.owner, m.name + m.desc)) {
+            return false;
+          }
+          break;
+        }
+        case AbstractInsnNode.TYPE_INSN:
+          if (!isAccessibleClass(((TypeInsnNode) insn).desc)) {
+            return false;
+          }
+          break;
+        case AbstractInsnNode.MULTIANEWARRAY_INSN:
+          if (!isAccessibleClass(((MultiANewArrayInsnNode) insn).desc)) {
+            return false;
+          }
+          break;
+        case AbstractInsnNode.LDC_INSN: {
+          Object cst = ((LdcInsnNode) insn).cst;
+          if (cst instanceof Type
+              && !isAccessibleClass(((Type) cst).getInternalName())) {
+            return false;
+          }
+          break;
+        }
+        default:
+          break;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if the class named {@code name}, which may
+   * be an array descriptor, is accessible from the flattened class.
+   */
+  @Requires("name != null")
+  protected boolean isAccessibleClass(String name) {
+    if (name.startsWith("[")) {
+      Type type = Type.getType(name).getElementType();
+      if (type.getSort() != Type.OBJECT) {
+        return true;
+      }
+      name = type.getInternalName();
+    }
+    if (samePackage(name)) {
+      return true;
+    }
+    ClassInfo info = getClassInfo(name);
+    return info != null && (info.access & Opcodes.ACC_PUBLIC) != 0;
+  }
+
+  /**
+   * Returns {@code true} if the member {@code member} (name and
+   * descriptor), referenced through class {@code owner}, is
+   * accessible from the flattened class.
+   */
+  @Requires({
+    "owner != null",
+    "member != null"
+  })
+  protected boolean isAccessibleMember(String owner, String member) {
+    if (owner.equals(className)) {
+      return true;
+    }
+    if (owner.startsWith("[")) {
+      /* Methods of arrays, such as clone(), are public. */
+      return true;
+    }
+    if (!isAccessibleClass(owner)) {
+      return false;
+    }
+    String declaringClass = findDeclaringClass(owner, member);
+    if (declaringClass == null) {
+      return false;
+    }
+    int access = getClassInfo(declaringClass).members.get(member);
+    if ((access & Opcodes.ACC_PUBLIC) != 0) {
+      return true;
+    }
+    if ((access & Opcodes.ACC_PRIVATE) != 0) {
+      return declaringClass.equals(className);
+    }
+    /* Protected and package-private. */
+    return samePackage(declaringClass);
+  }
+
+  /**
+   * Returns the name of the class that declares {@code member}, as
+   * seen from class {@code owner}, or {@code null} if it cannot be
+   * found.
+   */
+  private String findDeclaringClass(String owner, String member) {
+    ClassInfo info = getClassInfo(owner);
+    if (info == null) {
+      return null;
+    }
+    if (info.members.containsKey(member)) {
+      return owner;
+    }
+    if (info.superName != null) {
+      String declaringClass = findDeclaringClass(info.superName, member);
+      if (declaringClass != null) {
+        return declaringClass;
+      }
+    }
+    for (String iface : info.interfaces) {
+      String declaringClass = findDeclaringClass(iface, member);
+      if (declaringClass != null) {
+        return declaringClass;
+      }
+    }
+    return null;
+  }
+
+  private boolean samePackage(String name) {
+    return getPackageName(name).equals(getPackageName(className));
+  }
+
+  private static String getPackageName(String name) {
+    int i = name.lastIndexOf('/');
+    return i == -1 ? "" : name.substring(0, i);
+  }
+
+  /**
+   * Replaces {@code call} in {@code method} with a copy of the body
+   * of {@code helper}. The arguments of the call are stored into
+   * fresh local variables, and returns become jumps to the end of the
+   * copied code.
+   */
+  @Requires({
+    "method != null",
+    "call != null",
+    "helper != null"
+  })
+  protected void inline(MethodNode method, MethodInsnNode call,
+                        MethodNode helper) {
+    int base = method.maxLocals;
+    InsnList code = new InsnList();
+
+    /* Pop arguments, last first, into the helper's parameter slots. */
+    boolean statik = (helper.access & Opcodes.ACC_STATIC) != 0;
+    Type[] argTypes = Type.getArgumentTypes(helper.desc);
+    int[] slots = new int[argTypes.length];
+    int slot = base + (statik ? 0 : 1);
+    for (int i = 0; i < argTypes.length; ++i) {
+      slots[i] = slot;
+      slot += argTypes[i].getSize();
+    }
+    for (int i = argTypes.length - 1; i >= 0; --i) {
+      code.add(new VarInsnNode(argTypes[i].getOpcode(Opcodes.ISTORE),
+                               slots[i]));
+    }
+    if (!statik) {
+      code.add(new VarInsnNode(Opcodes.ASTORE, base));
+    }
+
+    Map<LabelNode, LabelNode> labels = new HashMap<LabelNode, LabelNode>();
+    for (AbstractInsnNode insn = helper.instructions.getFirst();
+         insn != null; insn = insn.getNext()) {
+      if (insn instanceof LabelNode) {
+        labels.put((LabelNode) insn, new LabelNode());
+      }
+    }
+    LabelNode end = new LabelNode();
+
+    for (AbstractInsnNode insn = helper.instructions.getFirst();
+         insn != null; insn = insn.getNext()) {
+      switch (insn.getType()) {
+        case AbstractInsnNode.LINE:
+        case AbstractInsnNode.FRAME:
+          continue;
+        default:
+          break;
+      }
+      int opcode = insn.getOpcode();
+      if (opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN) {
+        code.add(new JumpInsnNode(Opcodes.GOTO, end));
+        continue;
+      }
+      AbstractInsnNode copy = insn.clone(labels);
+      if (copy instanceof VarInsnNode) {
+        ((VarInsnNode) copy).var += base;
+      } else if (copy instanceof IincInsnNode) {
+        ((IincInsnNode) copy).var += base;
+      }
+      code.add(copy);
+    }
+    code.add(end);
+
+    /*
+     * Handlers of the inlined code are nested within those of the
+     * caller, if any, so they must come first.
+     */
+    List<TryCatchBlockNode> handlers = new ArrayList<TryCatchBlockNode>();
+    for (TryCatchBlockNode tcb : helper.tryCatchBlocks) {
+      handlers.add(new TryCatchBlockNode(labels.get(tcb.start),
+                                         labels.get(tcb.end),
+                                         labels.get(tcb.handler),
+                                         tcb.type));
+    }
+    method.tryCatchBlocks.addAll(0, handlers);
+
+    method.instructions.insert(call, code);
+    method.instructions.remove(call);
+    method.maxLocals = base + helper.maxLocals;
+    method.maxStack = Math.max(method.maxStack, helper.maxStack);
+  }
+
+  /**
+   * Returns the access information of the class named {@code name},
+   * or {@code null} if its class file cannot be found.
+   */
+  @Requires("name != null")
+  protected ClassInfo getClassInfo(String name) {
+    if (classInfos.containsKey(name)) {
+      return classInfos.get(name);
+    }
+    ClassInfo info = null;
+    byte[] bytecode = readClass(name);
+    if (bytecode != null) {
+      info = new ClassInfo();
+      new ClassReader(bytecode).accept(info, ClassReader.SKIP_CODE
+                                       | ClassReader.SKIP_DEBUG
+                                       | ClassReader.SKIP_FRAMES);
+    }
+    classInfos.put(name, info);
+    return info;
+  }
+
+  /**
+   * Returns the contracts of the superclass named {@code name}, or
+   * {@code null} if it has none or they cannot be found.
+   */
+  @Requires("name != null")
+  protected ContractAnalyzer getAncestorContracts(String name) {
+    if (ancestorContracts.containsKey(name)) {
+      return ancestorContracts.get(name);
+    }
+    ContractAnalyzer contracts = null;
+    byte[] bytecode = readClass(name);
+    if (bytecode != null) {
+      try {
+        contracts = transformer.analyze(name, bytecode);
+      } catch (IOException e) {
+        DebugUtils.info("instrument", "cannot read contracts of " + name);
+      }
+    }
+    ancestorContracts.put(name, contracts);
+    return contracts;
+  }
+
+  /**
+   * Returns the contracts held by the interface helper class named
+   * {@code name}, or {@code null} if it cannot be found.
+   */
+  @Requires("name != null")
+  protected ContractAnalyzer getHelperClassContracts(String name) {
+    if (ancestorContracts.containsKey(name)) {
+      return ancestorContracts.get(name);
+    }
+    ContractAnalyzer contracts = null;
+    byte[] bytecode = readClass(name);
+    if (bytecode != null) {
+      contracts = transformer.extractContracts(new ClassReader(bytecode));
+    }
+    ancestorContracts.put(name, contracts);
+    return contracts;
+  }
+
+  private byte[] readClass(String name) {
+    if (!ClassName.isBinaryName(name)) {
+      return null;
+    }
+    InputStream in = JavaUtils.getClassInputStream(loader, name);
+    if (in == null) {
+      return null;
+    }
+    try {
+      try {
+        return JavaUtils.getBytes(in);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      return null;
+    }
+  }
+}
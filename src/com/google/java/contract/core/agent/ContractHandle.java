@@ -19,6 +19,7 @@
 package com.google.java.contract.core.agent;
 
 import com.google.java.contract.AllowUnusedImport;
+import com.google.java.contract.Cost;
 import com.google.java.contract.Ensures;
 import com.google.java.contract.Invariant;
 import com.google.java.contract.Requires;
@@ -30,6 +31,7 @@ import com.google.java.contract.util.Predicates;
 import org.objectweb.asm.tree.MethodNode;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * A handle representing a contract method at run time. The handle
@@ -44,6 +46,7 @@ import java.util.List;
   "getKind() != null",
   "ClassName.isBinaryName(getClassName())",
   "getKey() >= -1",
+  "getCosts() != null",
   "getLineNumbers() == null " +
       "|| ContractMethodSignatures.isLineNumberList(getLineNumbers())"
 })
@@ -54,6 +57,7 @@ public class ContractHandle {
 
   protected MethodNode contractMethod;
   protected List<Long> lineNumbers;
+  protected Set<Cost> costs;
 
   protected boolean injected;
 
@@ -92,6 +96,7 @@ public class ContractHandle {
           JavaUtils.SYNTHETIC_MEMBER_PREFIX + contractMethod.name;
     }
     this.lineNumbers = lineNumbers;
+    costs = ContractMethodSignatures.getCosts(contractMethod);
 
     this.injected = false;
   }
@@ -116,6 +121,14 @@ public class ContractHandle {
     return lineNumbers;
   }
 
+  /**
+   * Returns the cost tiers of the clauses of this contract, or an
+   * empty set if unknown.
+   */
+  public Set<Cost> getCosts() {
+    return costs;
+  }
+
   public boolean isInjected() {
     return injected;
   }
@@ -17,6 +17,7 @@
  */
 package com.google.java.contract.core.agent;
 
+import com.google.java.contract.Cost;
 import com.google.java.contract.core.model.ContractKind;
 
 import java.lang.annotation.ElementType;
@@ -58,4 +59,12 @@ public @interface ContractMethodSignature {
    * The line numbers where the original contract is located.
    */
   long[] lines() default {};
+
+  /**
+   * The cost tiers of the clauses evaluated by the contract method,
+   * including those of the helper methods it calls. Empty if
+   * unknown, as when it calls inherited helper methods, which
+   * resolve their own tiers.
+   */
+  Cost[] costs() default {};
 }
@@ -17,6 +17,7 @@
  */
 package com.google.java.contract.core.agent;
 
+import com.google.java.contract.Cost;
 import com.google.java.contract.Ensures;
 import com.google.java.contract.Requires;
 import com.google.java.contract.core.model.ContractKind;
@@ -25,6 +26,7 @@ import org.objectweb.asm.tree.AnnotationNode;
 import org.objectweb.asm.tree.MethodNode;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
 
@@ -65,6 +67,20 @@ class ContractMethodSignatures {
     return id == null || id < 0 ? -1 : id;
   }
 
+  @Requires("contractMethod != null")
+  @Ensures("result != null")
+  static EnumSet<Cost> getCosts(MethodNode contractMethod) {
+    EnumSet<Cost> costs = EnumSet.noneOf(Cost.class);
+    List<?> list = getMetaData(contractMethod, "costs", List.class);
+    if (list != null) {
+      for (Object elem : list) {
+        String[] pair = (String[]) elem;
+        costs.add(Enum.valueOf(Cost.class, pair[1]));
+      }
+    }
+    return costs;
+  }
+
   @Requires("contractMethod != null")
   @Ensures("result == null || isLineNumberList(result)")
   static List<Long> getLineNumbers(MethodNode contractMethod) {
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.agent;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.util.JavaUtils;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+import javax.tools.JavaFileObject.Kind;
+
+/**
+ * A standalone program that removes all Cofoja artifacts from a JAR
+ * file built without contract checking in mind: contract class files,
+ * helper classes, pre-woven variants, source dependency files,
+ * embedded contracts and contract annotations.
+ *
+ * <p>The stripped JAR file is then checked: no class left in it,
+ * other than the Cofoja implementation classes, may reference the
+ * Cofoja runtime or a removed helper class. Such references are found
+ * in classes that have already been woven with contracts, which this
+ * program does not undo.
+ *
+ * <p>Usage:
+ *
+ * <pre>
+ * java com.google.java.contract.core.agent.ContractStripper \
+ *   &lt;input jar&gt; &lt;output jar&gt;
+ * </pre>
+ */
+@Invariant({
+  "danglingReferences != null",
+  "removedClassNames != null"
+})
+public class ContractStripper {
+  /**
+   * A class adapter that removes contract annotations and embedded
+   * contracts.
+   */
+  private class StrippingClassAdapter extends ClassVisitor {
+    public StrippingClassAdapter(ClassVisitor cv) {
+      super(Opcodes.ASM5, cv);
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+      if (CONTRACT_ANNOTATIONS.contains(desc)) {
+        ++annotationCount;
+        return null;
+      }
+      return super.visitAnnotation(desc, visible);
+    }
+
+    @Override
+    public void visitAttribute(Attribute attr) {
+      if (!ContractsAttribute.isContractsAttribute(attr)) {
+        super.visitAttribute(attr);
+      }
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String desc,
+                                     String signature, String[] exceptions) {
+      MethodVisitor mv =
+          super.visitMethod(access, name, desc, signature, exceptions);
+      if (mv == null) {
+        return null;
+      }
+      return new MethodVisitor(Opcodes.ASM5, mv) {
+        @Override
+        public AnnotationVisitor visitAnnotation(String desc,
+                                                 boolean visible) {
+          if (CONTRACT_ANNOTATIONS.contains(desc)) {
+            ++annotationCount;
+            return null;
+          }
+          return super.visitAnnotation(desc, visible);
+        }
+      };
+    }
+  }
+
+  /**
+   * Descriptors of the annotations removed from classes.
+   */
+  public static final Set<String> CONTRACT_ANNOTATIONS =
+      Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+          "Lcom/google/java/contract/Requires;",
+          "Lcom/google/java/contract/Ensures;",
+          "Lcom/google/java/contract/ThrowEnsures;",
+          "Lcom/google/java/contract/AsyncEnsures;",
+          "Lcom/google/java/contract/Invariant;",
+          "Lcom/google/java/contract/core/agent/ContractMethodSignature;")));
+
+  /**
+   * Internal name prefix of the Cofoja implementation classes.
+   */
+  private static final String CORE_PREFIX = "com/google/java/contract/core/";
+
+  /**
+   * Internal name prefix of the Cofoja runtime package.
+   */
+  private static final String RUNTIME_PREFIX = CORE_PREFIX + "runtime/";
+
+  protected int entryCount;
+  protected int strippedEntryCount;
+  protected int classCount;
+  protected int strippedClassCount;
+  protected long size;
+  protected long strippedSize;
+  protected int removedContractCount;
+  protected int removedHelperCount;
+  protected int removedOtherCount;
+  protected int annotationCount;
+
+  /**
+   * Internal names of the removed helper classes.
+   */
+  protected Set<String> removedClassNames;
+
+  /**
+   * Internal names of the kept classes, with the classes they
+   * reference.
+   */
+  protected List<String[]> keptReferences;
+
+  /**
+   * References to the Cofoja runtime or removed classes, found in
+   * the stripped JAR file, in the form
+   * {@code "referencing -> referenced"}.
+   */
+  protected Set<String> danglingReferences;
+
+  public ContractStripper() {
+    removedClassNames = new HashSet<String>();
+    keptReferences = new ArrayList<String[]>();
+    danglingReferences = new TreeSet<String>();
+  }
+
+  /**
+   * Copies the JAR file read from {@code in} to {@code out}, stripping
+   * Cofoja artifacts, then checks the result.
+   */
+  @Requires({
+    "in != null",
+    "out != null"
+  })
+  public void strip(InputStream in, OutputStream out) throws IOException {
+    ZipInputStream zin = new ZipInputStream(in);
+    ZipOutputStream zout = new ZipOutputStream(out);
+
+    ZipEntry entry;
+    while ((entry = zin.getNextEntry()) != null) {
+      String name = entry.getName();
+      byte[] data = JavaUtils.getBytes(zin);
+      boolean isClass = name.endsWith(Kind.CLASS.extension);
+
+      ++entryCount;
+      size += data.length;
+      if (isClass) {
+        ++classCount;
+      }
+
+      if (name.endsWith(JavaUtils.CONTRACTS_EXTENSION)) {
+        ++removedContractCount;
+        continue;
+      }
+      if (name.endsWith(JavaUtils.HELPER_CLASS_SUFFIX + Kind.CLASS.extension)) {
+        ++removedHelperCount;
+        removedClassNames.add(name.substring(
+            0, name.length() - Kind.CLASS.extension.length()));
+        continue;
+      }
+      if (name.contains(JavaUtils.WOVEN_EXTENSION)
+          || name.endsWith(JavaUtils.CONTRACTED_EXTENSION)
+          || name.endsWith(JavaUtils.SOURCE_DEPENDENCY_EXTENSION)) {
+        ++removedOtherCount;
+        continue;
+      }
+
+      if (isClass) {
+        data = stripClass(name, data);
+      }
+
+      ZipEntry outEntry = new ZipEntry(name);
+      outEntry.setTime(entry.getTime());
+      zout.putNextEntry(outEntry);
+      zout.write(data);
+      zout.closeEntry();
+
+      ++strippedEntryCount;
+      strippedSize += data.length;
+      if (isClass) {
+        ++strippedClassCount;
+      }
+    }
+    zout.finish();
+
+    for (String[] refs : keptReferences) {
+      for (int i = 1; i < refs.length; ++i) {
+        if (refs[i].startsWith(RUNTIME_PREFIX)
+            || removedClassNames.contains(refs[i])) {
+          danglingReferences.add((refs[0] + " -> " + refs[i])
+                                 .replace('/', '.'));
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns references to the Cofoja runtime or removed classes left
+   * in the stripped JAR file.
+   */
+  @Ensures("result != null")
+  public Set<String> getDanglingReferences() {
+    return danglingReferences;
+  }
+
+  /**
+   * Prints a summary of the savings to {@code out}.
+   */
+  @Requires("out != null")
+  public void printReport(PrintStream out) {
+    out.println("  entries:     " + entryCount + " -> " + strippedEntryCount
+                + " (" + removedContractCount + " contract files, "
+                + removedHelperCount + " helper classes, "
+                + removedOtherCount + " other files removed)");
+    out.println("  classes:     " + classCount + " -> " + strippedClassCount);
+    out.println("  annotations: " + annotationCount + " removed");
+    out.println("  size:        " + size + " -> " + strippedSize
+                + " bytes uncompressed"
+                + (size == 0 ? "" : String.format(" (-%.1f%%)",
+                    100.0 * (size - strippedSize) / size)));
+  }
+
+  /**
+   * Returns the class file {@code data} without contract annotations
+   * and embedded contracts, and records its references, unless it is
+   * a Cofoja implementation class. Class files that cannot be parsed
+   * are returned unchanged.
+   */
+  @Requires({
+    "name != null",
+    "data != null"
+  })
+  @Ensures("result != null")
+  protected byte[] stripClass(String name, byte[] data) {
+    ClassReader reader;
+    try {
+      reader = new ClassReader(data);
+    } catch (RuntimeException e) {
+      System.err.println("warning: cannot parse " + name + ", copied as is");
+      return data;
+    }
+
+    int count = annotationCount;
+    /* Rebuild the constant pool so unused entries are dropped. */
+    ClassWriter writer = new ClassWriter(0);
+    reader.accept(new StrippingClassAdapter(writer), 0);
+    byte[] stripped = data;
+    if (annotationCount != count
+        || ContractsAttribute.extract(reader) != null) {
+      stripped = writer.toByteArray();
+      reader = new ClassReader(stripped);
+    }
+
+    if (name.startsWith(CORE_PREFIX)) {
+      return stripped;
+    }
+    Set<String> refs = RuntimeLinkChecker.getReferencedClassNames(reader);
+    ArrayList<String> list = new ArrayList<String>(refs.size() + 1);
+    list.add(reader.getClassName());
+    list.addAll(refs);
+    keptReferences.add(list.toArray(new String[list.size()]));
+
+    return stripped;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("usage: ContractStripper <input jar> <output jar>");
+      System.exit(2);
+    }
+
+    File inFile = new File(args[0]);
+    File outFile = new File(args[1]);
+    ContractStripper stripper = new ContractStripper();
+    InputStream in = new FileInputStream(inFile);
+    try {
+      OutputStream out = new FileOutputStream(outFile);
+      try {
+        stripper.strip(in, out);
+      } finally {
+        out.close();
+      }
+    } finally {
+      in.close();
+    }
+
+    System.out.println("Stripped " + inFile + " to " + outFile
+                       + " (" + inFile.length() + " -> " + outFile.length()
+                       + " bytes)");
+    stripper.printReport(System.out);
+
+    Set<String> dangling = stripper.getDanglingReferences();
+    for (String ref : dangling) {
+      System.err.println("dangling reference: " + ref);
+    }
+    if (!dangling.isEmpty()) {
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.agent;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ByteVector;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+
+/**
+ * A class file attribute that carries the contract class file of the
+ * class it is attached to. Classes with such an attribute are
+ * instrumented from their own bytecode alone, without looking up a
+ * separate {@code .contracts} resource.
+ *
+ * <p>The attribute is added by {@link ContractEmbedder} and removed
+ * when contracts are woven into the class.
+ */
+@Invariant("getContractBytecode() != null")
+public class ContractsAttribute extends Attribute {
+  /**
+   * The name of the attribute in class files.
+   */
+  public static final String NAME = "com.google.java.contract.Contracts";
+
+  protected byte[] contractBytecode;
+
+  /**
+   * Constructs a new ContractsAttribute carrying the contract class
+   * file {@code contractBytecode}.
+   */
+  @Requires("contractBytecode != null")
+  public ContractsAttribute(byte[] contractBytecode) {
+    super(NAME);
+    this.contractBytecode = contractBytecode;
+  }
+
+  /**
+   * Constructs a prototype ContractsAttribute, for use with
+   * {@link ClassReader#accept(org.objectweb.asm.ClassVisitor,Attribute[],int)}.
+   */
+  public ContractsAttribute() {
+    this(new byte[0]);
+  }
+
+  /**
+   * Returns the contract class file carried by this attribute.
+   */
+  public byte[] getContractBytecode() {
+    return contractBytecode;
+  }
+
+  @Override
+  protected Attribute read(ClassReader cr, int off, int len, char[] buf,
+                           int codeOff, Label[] labels) {
+    return new ContractsAttribute(readBytes(cr, off, len));
+  }
+
+  @Override
+  protected ByteVector write(ClassWriter cw, byte[] code, int len,
+                             int maxStack, int maxLocals) {
+    ByteVector v = new ByteVector(contractBytecode.length);
+    v.putByteArray(contractBytecode, 0, contractBytecode.length);
+    return v;
+  }
+
+  /**
+   * Returns the contract class file embedded in the class read by
+   * {@code reader}, or {@code null} if there is none.
+   *
+   * <p>This method only walks the class file structure up to its
+   * attributes; it does not visit the class.
+   */
+  @Requires("reader != null")
+  public static byte[] extract(ClassReader reader) {
+    int u = ClassFileOffsets.getAttributesOffset(reader);
+    char[] buf = new char[reader.getMaxStringLength()];
+    int n = reader.readUnsignedShort(u);
+    u += 2;
+    for (; n > 0; --n) {
+      int len = reader.readInt(u + 2);
+      if (NAME.equals(reader.readUTF8(u, buf))) {
+        return readBytes(reader, u + 6, len);
+      }
+      u += 6 + len;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the {@code len} bytes of the class file read by
+   * {@code reader} that start at offset {@code off}.
+   */
+  @Requires({
+    "reader != null",
+    "off >= 0",
+    "len >= 0"
+  })
+  @Ensures("result.length == len")
+  private static byte[] readBytes(ClassReader reader, int off, int len) {
+    byte[] data = new byte[len];
+    for (int i = 0; i < len; ++i) {
+      data[i] = (byte) reader.readByte(off + i);
+    }
+    return data;
+  }
+
+  /**
+   * Returns {@code true} if {@code attr} is a contracts attribute.
+   */
+  @Requires("attr != null")
+  public static boolean isContractsAttribute(Attribute attr) {
+    return NAME.equals(attr.type);
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.agent;
+
+import com.google.java.contract.Cost;
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Resolves the cost tier tests that guard contract clauses, according
+ * to the tiers enabled for a class.
+ *
+ * <p>Each clause of generated contract code is guarded by a call to
+ * {@code ContractRuntime.isCostTierEnabled(Cost)}. This resolver
+ * removes the tests of enabled tiers, together with the conditional
+ * branch that follows them, and replaces the tests of disabled tiers
+ * with a constant. The branch past a disabled clause is kept, rather
+ * than made unconditional, so that stack map frames stay valid
+ * without being recomputed; the JIT compiler folds it away.
+ *
+ * @see com.google.java.contract.core.runtime.ContractRuntime#isCostTierEnabled(Cost)
+ */
+@Invariant("enabledTiers != null")
+class CostTierResolver {
+  private static final String CONTRACT_RUNTIME =
+      "com/google/java/contract/core/runtime/ContractRuntime";
+  private static final String COST_TIER_METHOD = "isCostTierEnabled";
+  private static final String COST = "com/google/java/contract/Cost";
+  private static final String COST_TIER_DESC = "(L" + COST + ";)Z";
+
+  /**
+   * A resolver that enables all tiers.
+   */
+  static final CostTierResolver ALL =
+      new CostTierResolver(EnumSet.allOf(Cost.class));
+
+  protected Set<Cost> enabledTiers;
+
+  /**
+   * Constructs a new CostTierResolver that enables the tiers in
+   * {@code enabledTiers}.
+   */
+  @Requires("enabledTiers != null")
+  CostTierResolver(Set<Cost> enabledTiers) {
+    this.enabledTiers = enabledTiers;
+  }
+
+  /**
+   * Returns a resolver that enables the tiers enabled for
+   * {@code className} by the activation rules in effect.
+   */
+  @Requires("className != null")
+  @Ensures("result != null")
+  static CostTierResolver forClass(String className) {
+    ActivationRuleManager am = ActivationRuleManager.getInstance();
+    EnumSet<Cost> tiers = EnumSet.noneOf(Cost.class);
+    for (Cost tier : Cost.values()) {
+      if (am.hasCostTierEnabled(className, tier)) {
+        tiers.add(tier);
+      }
+    }
+    return new CostTierResolver(tiers);
+  }
+
+  /**
+   * Returns {@code true} if some of the tiers in {@code tiers} are
+   * enabled, or if {@code tiers} is empty, which means unknown.
+   */
+  @Requires("tiers != null")
+  boolean isAnyEnabled(Set<Cost> tiers) {
+    if (tiers.isEmpty()) {
+      return true;
+    }
+    for (Cost tier : tiers) {
+      if (enabledTiers.contains(tier)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Resolves the tier tests in {@code method}, in place.
+   */
+  @Requires("method != null")
+  void resolve(MethodNode method) {
+    InsnList insns = method.instructions;
+    List<MethodInsnNode> tests = new ArrayList<MethodInsnNode>();
+    for (AbstractInsnNode insn = insns.getFirst(); insn != null;
+         insn = insn.getNext()) {
+      if (isTierTest(insn)) {
+        tests.add((MethodInsnNode) insn);
+      }
+    }
+
+    for (MethodInsnNode test : tests) {
+      FieldInsnNode load = (FieldInsnNode) test.getPrevious();
+      boolean enabled = enabledTiers.contains(Cost.valueOf(load.name));
+      AbstractInsnNode next = test.getNext();
+      if (enabled && next != null && next.getOpcode() == Opcodes.IFEQ) {
+        insns.remove(next);
+        insns.remove(test);
+      } else {
+        insns.set(test, new InsnNode(enabled
+                                     ? Opcodes.ICONST_1 : Opcodes.ICONST_0));
+      }
+      insns.remove(load);
+    }
+  }
+
+  /**
+   * Returns {@code true} if {@code insn} is a call to the tier test
+   * method, with a constant tier argument.
+   */
+  @Requires("insn != null")
+  private static boolean isTierTest(AbstractInsnNode insn) {
+    if (insn.getOpcode() != Opcodes.INVOKESTATIC) {
+      return false;
+    }
+    MethodInsnNode call = (MethodInsnNode) insn;
+    if (!call.owner.equals(CONTRACT_RUNTIME)
+        || !call.name.equals(COST_TIER_METHOD)
+        || !call.desc.equals(COST_TIER_DESC)) {
+      return false;
+    }
+    AbstractInsnNode prev = call.getPrevious();
+    return prev != null && prev.getOpcode() == Opcodes.GETSTATIC
+        && ((FieldInsnNode) prev).owner.equals(COST);
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.agent;
+
+import com.google.java.contract.AllowUnusedImport;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.model.ClassName;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Marks objects as possibly breaking their invariants whenever one of
+ * their fields is written, by clearing their clean flag before each
+ * {@code putfield} on a field of the tracked class.
+ *
+ * @see SpecificationClassAdapter#isTrackingDirtyInvariants()
+ */
+@AllowUnusedImport(ClassName.class)
+@Invariant("ClassName.isBinaryName(className)")
+class DirtyTrackingMethodAdapter extends MethodVisitor {
+  /**
+   * The name of the flag added to tracked classes. The flag is set
+   * after a successful invariant check and cleared by field writes,
+   * so objects are dirty until first checked.
+   */
+  static final String CLEAN_FIELD = "com$google$java$contract$clean";
+
+  protected String className;
+
+  /**
+   * Constructs a new DirtyTrackingMethodAdapter for a method of
+   * class {@code className}.
+   */
+  @Requires({
+    "mv != null",
+    "ClassName.isBinaryName(className)"
+  })
+  public DirtyTrackingMethodAdapter(MethodVisitor mv, String className) {
+    super(Opcodes.ASM5, mv);
+    this.className = className;
+  }
+
+  @Override
+  public void visitFieldInsn(int opcode, String owner, String name,
+                             String desc) {
+    if (opcode == Opcodes.PUTFIELD && owner.equals(className)
+        && !name.equals(CLEAN_FIELD)) {
+      /* Stack: object, value; duplicate the object above the value. */
+      if (Type.getType(desc).getSize() == 2) {
+        super.visitInsn(Opcodes.DUP2_X1);
+        super.visitInsn(Opcodes.POP2);
+        super.visitInsn(Opcodes.DUP_X2);
+      } else {
+        super.visitInsn(Opcodes.DUP2);
+        super.visitInsn(Opcodes.POP);
+      }
+      super.visitInsn(Opcodes.ICONST_0);
+      super.visitFieldInsn(Opcodes.PUTFIELD, className, CLEAN_FIELD, "Z");
+    }
+    super.visitFieldInsn(opcode, owner, name, desc);
+  }
+}
@@ -24,6 +24,7 @@ import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.MethodNode;
 
 import javax.tools.JavaFileObject.Kind;
 
@@ -69,11 +70,27 @@ class HelperClassAdapter extends ClassVisitor {
     }
   }
 
+  protected CostTierResolver costTierResolver;
+
   @Requires("cv != null")
   public HelperClassAdapter(ClassVisitor cv) {
     super(Opcodes.ASM5, cv);
   }
 
+  @Override
+  public void visit(int version, int access, String name,
+                    String signature, String superName, String[] interfaces) {
+    /* Helpers follow the cost tier rules of the interface. */
+    String className = name;
+    if (className.endsWith(JavaUtils.HELPER_CLASS_SUFFIX)) {
+      int lengthSansSuffix =
+          className.length() - JavaUtils.HELPER_CLASS_SUFFIX.length();
+      className = className.substring(0, lengthSansSuffix);
+    }
+    costTierResolver = CostTierResolver.forClass(className);
+    super.visit(version, access, name, signature, superName, interfaces);
+  }
+
   @Override
   public void visitSource(String source, String debug) {
     /*
@@ -97,8 +114,15 @@ class HelperClassAdapter extends ClassVisitor {
   @Override
   public MethodVisitor visitMethod(int access, String name, String desc,
                                    String signature, String[] exceptions) {
-    MethodVisitor mv =
+    final MethodVisitor next =
         cv.visitMethod(access, name, desc, signature, exceptions);
-    return new HelperMethodAdapter(mv, access, name, desc);
+    return new MethodNode(Opcodes.ASM5, access, name, desc,
+                          signature, exceptions) {
+      @Override
+      public void visitEnd() {
+        costTierResolver.resolve(this);
+        accept(new HelperMethodAdapter(next, access, name, desc));
+      }
+    };
   }
 }
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.agent;
+
+import com.google.java.contract.AllowUnusedImport;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.model.ClassName;
+import com.google.java.contract.core.model.ContractKind;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Determines whether the invariants of a class can only change during
+ * construction, in which case they need only be checked at the end of
+ * constructors.
+ *
+ * <p>This is the case if the class directly extends {@link Object},
+ * all its instance fields are final and of an immutable type (a
+ * primitive type, {@link String} or a primitive wrapper), and its
+ * invariant code reads nothing but these fields and constants of the
+ * same kind, and only calls methods of immutable types. The
+ * analysis is conservative: invariants inherited from interfaces, or
+ * calls to any other method, such as methods of the class itself,
+ * make the class fail it. Fields modified through reflection are not
+ * accounted for.
+ */
+@AllowUnusedImport(ClassName.class)
+@Invariant({
+  "className == null || ClassName.isBinaryName(className)",
+  "immutableFields != null"
+})
+class ImmutableInvariantAnalyzer {
+  /**
+   * Types whose instances cannot change, and whose methods have no
+   * side effects on anything an invariant may read.
+   */
+  static final Set<String> IMMUTABLE_TYPES =
+      new HashSet<String>(Arrays.asList(
+          "java/lang/String",
+          "java/lang/Boolean",
+          "java/lang/Byte",
+          "java/lang/Character",
+          "java/lang/Short",
+          "java/lang/Integer",
+          "java/lang/Long",
+          "java/lang/Float",
+          "java/lang/Double",
+          "java/lang/Math"));
+
+  /**
+   * Runtime classes called by contract methods to report failures.
+   */
+  private static final Set<String> RUNTIME_TYPES =
+      new HashSet<String>(Arrays.asList(
+          "com/google/java/contract/InvariantError",
+          "com/google/java/contract/core/runtime/ContractRuntime"));
+
+  private static final String COST = "com/google/java/contract/Cost";
+
+  protected String className;
+  protected boolean candidate;
+
+  /*
+   * The names of the fields that hold immutable values: final
+   * instance fields, and static constants, of an immutable type.
+   */
+  protected Set<String> immutableFields;
+
+  /**
+   * Constructs a new ImmutableInvariantAnalyzer. Field and class
+   * information is then fed through {@link #visitClass} and
+   * {@link #visitField}.
+   */
+  ImmutableInvariantAnalyzer() {
+    className = null;
+    candidate = true;
+    immutableFields = new HashSet<String>();
+  }
+
+  /**
+   * Records the name and superclass of the analyzed class.
+   */
+  @Requires("ClassName.isBinaryName(name)")
+  void visitClass(String name, String superName) {
+    className = name;
+    if (!"java/lang/Object".equals(superName)) {
+      candidate = false;
+    }
+  }
+
+  /**
+   * Records a field of the analyzed class.
+   */
+  @Requires({
+    "name != null",
+    "desc != null"
+  })
+  void visitField(int access, String name, String desc) {
+    boolean immutable = (access & Opcodes.ACC_FINAL) != 0
+        && isImmutableType(Type.getType(desc));
+    if (immutable) {
+      immutableFields.add(name + desc);
+    } else if ((access & Opcodes.ACC_STATIC) == 0) {
+      candidate = false;
+    }
+  }
+
+  /**
+   * Returns {@code true} if the invariants in {@code contracts} can
+   * only change during construction.
+   */
+  @Requires("contracts != null")
+  boolean hasImmutableInvariants(ContractAnalyzer contracts) {
+    if (!candidate || className == null) {
+      return false;
+    }
+    ClassContractHandle h = contracts.getClassHandle(ContractKind.INVARIANT);
+    if (h == null) {
+      return false;
+    }
+    return readsImmutableState(contracts, h.getContractMethod(),
+                               new HashSet<MethodNode>());
+  }
+
+  @Requires("type != null")
+  private static boolean isImmutableType(Type type) {
+    switch (type.getSort()) {
+      case Type.ARRAY:
+        return false;
+      case Type.OBJECT:
+        return IMMUTABLE_TYPES.contains(type.getInternalName());
+      default:
+        return true;
+    }
+  }
+
+  /**
+   * Returns {@code true} if {@code method}, and the helpers it calls,
+   * only read immutable fields and only call methods without side
+   * effects.
+   */
+  @Requires({
+    "contracts != null",
+    "method != null",
+    "visited != null"
+  })
+  protected boolean readsImmutableState(ContractAnalyzer contracts,
+                                        MethodNode method,
+                                        Set<MethodNode> visited) {
+    if (!visited.add(method)) {
+      return true;
+    }
+    for (AbstractInsnNode insn = method.instructions.getFirst();
+         insn != null; insn = insn.getNext()) {
+      switch (insn.getType()) {
+        case AbstractInsnNode.INVOKE_DYNAMIC_INSN:
+          return false;
+        case AbstractInsnNode.FIELD_INSN: {
+          FieldInsnNode f = (FieldInsnNode) insn;
+          /* Cost tier constants guard contract clauses. */
+          if (f.getOpcode() == Opcodes.GETSTATIC && f.owner.equals(COST)) {
+            break;
+          }
+          if (!f.owner.equals(className)
+              || !immutableFields.contains(f.name + f.desc)) {
+            return false;
+          }
+          break;
+        }
+        case AbstractInsnNode.METHOD_INSN: {
+          MethodInsnNode m = (MethodInsnNode) insn;
+          if (m.owner.equals(className)) {
+            MethodNode helper =
+                ContractFlattener.findHelperMethod(contracts, m.name, m.desc);
+            if (helper == null
+                || !readsImmutableState(contracts, helper, visited)) {
+              return false;
+            }
+          } else if (!RUNTIME_TYPES.contains(m.owner)
+                     && !IMMUTABLE_TYPES.contains(m.owner)) {
+            return false;
+          }
+          break;
+        }
+        default:
+          break;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.agent;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.util.DebugUtils;
+
+import java.lang.instrument.Instrumentation;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A process-wide registry of lazily woven classes.
+ *
+ * <p>In lazy mode, the agent weaves contracted methods with a
+ * trampoline only: a call to {@link #enter(Class,int,int)} that
+ * counts invocations. When any method of a class has been entered as
+ * many times as the configured threshold, the class is retransformed
+ * with its contracts fully woven. The call that reaches the threshold
+ * runs without contract checking; subsequent calls are checked.
+ *
+ * <p>The JVM does not allow retransformation to add methods, so
+ * lazily woven classes already contain all their contract methods;
+ * only the calls to them are missing.
+ *
+ * <p>Trampolines run on every call until their class is hot, so
+ * counting an entry takes no lock: counters are found by class
+ * identifier in an array, and incremented atomically.
+ */
+@Invariant({
+  "threshold >= 1",
+  "states != null",
+  "hotClasses != null"
+})
+public class LazyWeaver {
+  /**
+   * The invocation counters of a lazily woven class.
+   */
+  protected static class State {
+    final String className;
+    final AtomicIntegerArray counters;
+    final AtomicBoolean triggered;
+
+    State(String className, int methodCount) {
+      this.className = className;
+      counters = new AtomicIntegerArray(methodCount);
+      triggered = new AtomicBoolean();
+    }
+  }
+
+  /**
+   * The initial number of class identifiers with room for a state.
+   */
+  private static final int INITIAL_CAPACITY = 256;
+
+  protected static final LazyWeaver instance = new LazyWeaver();
+
+  protected volatile Instrumentation instrumentation;
+  protected volatile int threshold;
+
+  protected AtomicInteger nextClassId;
+
+  /**
+   * The states of lazily woven classes, indexed by class identifier;
+   * replaced by a larger copy, under the lock of this object, when
+   * full.
+   */
+  protected volatile AtomicReferenceArray<State> states;
+
+  protected Map<Class<?>, Boolean> hotClasses;
+
+  protected LazyWeaver() {
+    threshold = 1;
+    nextClassId = new AtomicInteger();
+    states = new AtomicReferenceArray<State>(INITIAL_CAPACITY);
+    hotClasses =
+        Collections.synchronizedMap(new WeakHashMap<Class<?>, Boolean>());
+  }
+
+  public static LazyWeaver getInstance() {
+    return instance;
+  }
+
+  /**
+   * Enables retransformation through {@code instrumentation} of
+   * classes with a method entered {@code threshold} times.
+   */
+  @Requires({
+    "instrumentation != null",
+    "threshold >= 1"
+  })
+  public synchronized void install(Instrumentation instrumentation,
+                                   int threshold) {
+    this.instrumentation = instrumentation;
+    this.threshold = threshold;
+  }
+
+  /**
+   * Returns a new identifier for a class about to be lazily woven.
+   */
+  @Ensures("result >= 0")
+  int newClassId() {
+    return nextClassId.getAndIncrement();
+  }
+
+  /**
+   * Registers the lazily woven class {@code className}, with
+   * {@code methodCount} trampolines, under identifier {@code id}.
+   */
+  @Requires({
+    "id >= 0",
+    "className != null",
+    "methodCount >= 0"
+  })
+  synchronized void register(int id, String className, int methodCount) {
+    AtomicReferenceArray<State> current = states;
+    if (id >= current.length()) {
+      int length = current.length();
+      while (id >= length) {
+        length *= 2;
+      }
+      AtomicReferenceArray<State> grown =
+          new AtomicReferenceArray<State>(length);
+      for (int i = 0; i < current.length(); ++i) {
+        grown.set(i, current.get(i));
+      }
+      current = grown;
+      states = grown;
+    }
+    current.set(id, new State(className, methodCount));
+  }
+
+  /**
+   * Forgets the state of the class registered under {@code id}.
+   */
+  @Requires("id >= 0")
+  protected synchronized void unregister(int id) {
+    states.set(id, null);
+  }
+
+  /**
+   * Returns {@code true} if {@code clazz} must be woven in full.
+   */
+  @Requires("clazz != null")
+  public boolean isHot(Class<?> clazz) {
+    return hotClasses.containsKey(clazz);
+  }
+
+  /**
+   * Called by the trampoline of method {@code methodIndex} of
+   * {@code clazz}, registered under {@code classId}.
+   */
+  public static void enter(Class<?> clazz, int classId, int methodIndex) {
+    instance.countEntry(clazz, classId, methodIndex);
+  }
+
+  @Requires({
+    "clazz != null",
+    "methodIndex >= 0"
+  })
+  protected void countEntry(Class<?> clazz, int classId, int methodIndex) {
+    AtomicReferenceArray<State> current = states;
+    State state = classId < current.length() ? current.get(classId) : null;
+    if (state == null || instrumentation == null) {
+      return;
+    }
+    if (state.counters.incrementAndGet(methodIndex) < threshold
+        || !state.triggered.compareAndSet(false, true)) {
+      return;
+    }
+
+    DebugUtils.info("agent", "weaving hot class " + state.className);
+    hotClasses.put(clazz, Boolean.TRUE);
+    try {
+      instrumentation.retransformClasses(clazz);
+      unregister(classId);
+    } catch (Throwable t) {
+      hotClasses.remove(clazz);
+      DebugUtils.warn("agent", "cannot weave " + state.className
+                      + ": " + t.toString());
+    }
+  }
+}
@@ -19,17 +19,18 @@
 package com.google.java.contract.core.agent;
 
 import com.google.java.contract.ContractEnvironment;
+import com.google.java.contract.Cost;
 import com.google.java.contract.Invariant;
 import com.google.java.contract.Requires;
+import com.google.java.contract.core.util.AsyncDumpWriter;
 import com.google.java.contract.core.util.DebugUtils;
 import com.google.java.contract.core.util.JavaUtils;
 import org.objectweb.asm.ClassReader;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.IllegalClassFormatException;
 import java.lang.instrument.Instrumentation;
@@ -46,19 +47,24 @@ import javax.tools.JavaFileObject.Kind;
  * @author johannes.rieken@gmail.com (Johannes Rieken)
  */
 public class PreMain {
-  @Invariant("transformer != null")
+  @Invariant({
+    "transformer != null",
+    "writer != null"
+  })
   private static class DumpClassFileTransformer
       implements ClassFileTransformer {
     protected ClassFileTransformer transformer;
+    protected AsyncDumpWriter writer;
 
     @Requires({
       "parent != null",
-      "dumpDir != null"
+      "dumpDir != null",
+      "maxPendingBytes > 0"
     })
     public DumpClassFileTransformer(ClassFileTransformer parent,
-                                    String dumpDir) {
+                                    String dumpDir, long maxPendingBytes) {
       transformer = parent;
-      DebugUtils.setDumpDirectory(dumpDir);
+      writer = new AsyncDumpWriter(dumpDir, maxPendingBytes);
     }
 
     @Override
@@ -70,12 +76,69 @@ public class PreMain {
       byte[] data = transformer.transform(loader, className, redefinedClass,
                                           protectionDomain, bytecode);
       if (data != null) {
-        DebugUtils.dump(className, data, Kind.CLASS);
+        writer.dump(className, data, Kind.CLASS);
       }
       return data;
     }
   }
 
+  @Invariant({
+    "transformer != null",
+    "report != null"
+  })
+  private static class ReportClassFileTransformer
+      implements ClassFileTransformer {
+    protected ClassFileTransformer transformer;
+    protected PrintWriter report;
+
+    @Requires({
+      "parent != null",
+      "report != null"
+    })
+    public ReportClassFileTransformer(ClassFileTransformer parent,
+                                      PrintWriter report) {
+      transformer = parent;
+      this.report = report;
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className,
+                            Class<?> redefinedClass,
+                            ProtectionDomain protectionDomain,
+                            byte[] bytecode)
+        throws IllegalClassFormatException {
+      byte[] data = transformer.transform(loader, className, redefinedClass,
+                                          protectionDomain, bytecode);
+      if (data != null) {
+        printReport(report, bytecode, data);
+      }
+      return data;
+    }
+  }
+
+  /**
+   * The default maximum number of bytes of class files waiting to be
+   * dumped. Further class files are dropped until the queue drains.
+   */
+  private static final long DUMP_MAX_PENDING_DEFAULT = 32L << 20;
+
+  /**
+   * Sets the default cost tier ceiling from the system properties.
+   * This must be done before the transformer is installed, since it
+   * loads the activation rules.
+   */
+  private static void configureMaxCostTier() {
+    String maxCost = System.getProperty("com.google.java.contract.maxcost");
+    if (maxCost != null) {
+      try {
+        ActivationRuleManager.getInstance().setMaxCostTier(
+            Cost.valueOf(maxCost.toUpperCase()));
+      } catch (IllegalArgumentException e) {
+        DebugUtils.warn("agent", "unknown cost tier: " + maxCost);
+      }
+    }
+  }
+
   private static void configure() {
     String configClass = System.getProperty("com.google.java.contract.configurator");
     if (configClass != null) {
@@ -99,14 +162,50 @@ public class PreMain {
   }
 
   public static void premain(String args, Instrumentation inst) {
-    ClassFileTransformer transformer = new ContractClassFileTransformer();
+    ContractClassFileTransformer contractTransformer =
+        new ContractClassFileTransformer();
+    contractTransformer.setUsePreWovenVariants(
+        Boolean.getBoolean("com.google.java.contract.variants"));
+    contractTransformer.setFlattenInheritedContracts(
+        Boolean.getBoolean("com.google.java.contract.flatten"));
+    contractTransformer.setTrackDirtyInvariants(
+        Boolean.getBoolean("com.google.java.contract.dirty"));
+    boolean lazy = false;
+    int lazyThreshold = Integer.getInteger("com.google.java.contract.lazy", 0);
+    if (lazyThreshold > 0) {
+      if (inst.isRetransformClassesSupported()) {
+        LazyWeaver.getInstance().install(inst, lazyThreshold);
+        contractTransformer.setLazyWeaving(true);
+        lazy = true;
+      } else {
+        DebugUtils.warn("agent", "lazy weaving needs class retransformation");
+      }
+    }
+    ClassFileTransformer transformer = contractTransformer;
 
     String dumpDir = System.getProperty("com.google.java.contract.dump");
     if (dumpDir != null) {
-      transformer = new DumpClassFileTransformer(transformer, dumpDir);
+      long maxPending = Long.getLong("com.google.java.contract.dump.maxpending",
+                                     DUMP_MAX_PENDING_DEFAULT);
+      if (maxPending <= 0) {
+        maxPending = DUMP_MAX_PENDING_DEFAULT;
+      }
+      transformer =
+          new DumpClassFileTransformer(transformer, dumpDir, maxPending);
+    }
+
+    String reportFile = System.getProperty("com.google.java.contract.report");
+    if (reportFile != null) {
+      try {
+        transformer = new ReportClassFileTransformer(
+            transformer, openReport(reportFile));
+      } catch (IOException e) {
+        DebugUtils.warn("agent", "cannot open report file: " + e.getMessage());
+      }
     }
 
-    inst.addTransformer(transformer);
+    configureMaxCostTier();
+    inst.addTransformer(transformer, lazy);
 
     configure();
   }
@@ -115,19 +214,58 @@ public class PreMain {
       throws IllegalClassFormatException, IOException {
     String classout =
       System.getProperty("com.google.java.contract.classoutput");
-    /* TODO(lenh): Separate class loader for source files. */
-    instrument(args, classout, null);
+    boolean variants = Boolean.getBoolean("com.google.java.contract.variants");
+    String reportFile = System.getProperty("com.google.java.contract.report");
+    PrintWriter report = reportFile == null ? null : openReport(reportFile);
+    try {
+      /* TODO(lenh): Separate class loader for source files. */
+      instrument(args, classout, null, variants, report);
+    } finally {
+      if (report != null) {
+        report.close();
+      }
+    }
   }
 
   public static void instrument(String[] args, String classout,
                                 ClassLoader loader)
       throws IllegalClassFormatException, IOException {
+    instrument(args, classout, loader, false);
+  }
+
+  /**
+   * Instruments the class files listed in {@code args}. If
+   * {@code variants} is {@code true}, contracted classes are not
+   * woven; instead, their contracts are embedded and a pre-woven
+   * variant is written next to them for each
+   * {@link ActivationProfile}, for use by the agent.
+   */
+  public static void instrument(String[] args, String classout,
+                                ClassLoader loader, boolean variants)
+      throws IllegalClassFormatException, IOException {
+    instrument(args, classout, loader, variants, null);
+  }
+
+  /**
+   * Instruments the class files listed in {@code args}, as above,
+   * and, unless {@code report} is {@code null}, prints a
+   * {@link WeavingReport} for each instrumented class file to it.
+   */
+  public static void instrument(String[] args, String classout,
+                                ClassLoader loader, boolean variants,
+                                PrintWriter report)
+      throws IllegalClassFormatException, IOException {
     ContractClassFileTransformer transformer;
     if (loader == null) {
       transformer = new ContractClassFileTransformer();
     } else {
       transformer = new ContractClassFileTransformer(loader);
     }
+    transformer.setFlattenInheritedContracts(
+        Boolean.getBoolean("com.google.java.contract.flatten"));
+    transformer.setTrackDirtyInvariants(
+        Boolean.getBoolean("com.google.java.contract.dirty"));
+    configureMaxCostTier();
     configure();
 
     for (String arg : args) {
@@ -156,13 +294,15 @@ public class PreMain {
           new File(baseName + JavaUtils.HELPER_CLASS_SUFFIX
                    + Kind.CLASS.extension);
 
-      byte[] bytecode = getBytes(fileName);
+      byte[] bytecode = JavaUtils.getBytes(fileName);
       byte[] instrumented = null;
       byte[] instrumentedHelper = null;
 
+      String outputBaseName;
       File outputFileName;
       File helperOutputFileName;
       if (classout == null) {
+        outputBaseName = baseName;
         outputFileName = new File(baseName + JavaUtils.CONTRACTED_EXTENSION);
         helperOutputFileName =
             new File(baseName + JavaUtils.HELPER_CLASS_SUFFIX
@@ -170,6 +310,7 @@ public class PreMain {
       } else {
         String className = getClassName(bytecode);
         String baseOutputName = classout + "/" + className;
+        outputBaseName = baseOutputName;
         outputFileName = new File(baseOutputName + Kind.CLASS.extension);
         helperOutputFileName =
             new File(baseOutputName + JavaUtils.HELPER_CLASS_SUFFIX
@@ -178,16 +319,47 @@ public class PreMain {
 
       /*
        * - If argument is an interface, instrument helper, copy interface.
-       * - If argument is a contracted class, instrument class.
+       * - If argument is a contracted class, instrument class, with
+       *   embedded contracts if any.
        * - Otherwise, copy class file.
        */
       if (helperFileName.isFile()) {
-        byte[] helperBytecode = getBytes(helperFileName);
+        byte[] helperBytecode = JavaUtils.getBytes(helperFileName);
         instrumentedHelper = transformer.transformWithDebug(helperBytecode);
-      } else if (contractFileName.isFile()) {
-        byte[] contractBytecode = getBytes(contractFileName);
-        instrumented =
-            transformer.transformWithContracts(bytecode, contractBytecode);
+      } else {
+        byte[] contractBytecode = getEmbeddedContracts(bytecode);
+        if (contractBytecode == null && contractFileName.isFile()) {
+          contractBytecode = JavaUtils.getBytes(contractFileName);
+        }
+        if (contractBytecode != null && variants) {
+          /*
+           * The class itself is left unwoven, with its contracts
+           * embedded, so the agent can still weave it for activation
+           * settings that match no profile.
+           */
+          instrumented = ContractEmbedder.embed(bytecode, contractBytecode);
+          for (ActivationProfile profile : ActivationProfile.values()) {
+            File variantFileName =
+                new File(outputBaseName + JavaUtils.WOVEN_EXTENSION
+                         + profile.getFileName());
+            byte[] variant =
+                transformer.transformWithContracts(instrumented,
+                                                   contractBytecode,
+                                                   profile);
+            PreWovenVariants.write(variantFileName, instrumented, variant,
+                                   transformer.getWeavingModes());
+            if (report != null) {
+              report.println("variant " + profile.getFileName());
+              printReport(report, instrumented, variant);
+            }
+          }
+        } else if (contractBytecode != null) {
+          instrumented =
+              transformer.transformWithContracts(bytecode, contractBytecode);
+          if (report != null) {
+            printReport(report, bytecode, instrumented);
+          }
+        }
       }
 
       outputFileName.getParentFile().mkdirs();
@@ -196,6 +368,10 @@ public class PreMain {
       out.close();
 
       if (instrumentedHelper != null) {
+        if (report != null) {
+          printReport(report, JavaUtils.getBytes(helperFileName),
+                      instrumentedHelper);
+        }
         helperOutputFileName.getParentFile().mkdirs();
         FileOutputStream helperOut = new FileOutputStream(helperOutputFileName);
         helperOut.write(instrumentedHelper);
@@ -204,18 +380,52 @@ public class PreMain {
     }
   }
 
-  private static byte[] getBytes(File path) throws IOException {
-    FileInputStream in = new FileInputStream(path);
-    ByteArrayOutputStream out = new ByteArrayOutputStream();
+  private static PrintWriter openReport(String fileName) throws IOException {
+    File file = new File(fileName);
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (parent != null) {
+      parent.mkdirs();
+    }
+    return new PrintWriter(new FileOutputStream(file), true);
+  }
 
-    byte[] buffer = new byte[1024];
-    int len;
-    while ((len = in.read(buffer)) != -1) {
-      out.write(buffer, 0, len);
+  /**
+   * Prints the {@link WeavingReport} of {@code instrumented} to
+   * {@code out}. Classes with methods made too large to be compiled
+   * are also logged as warnings.
+   */
+  @Requires({
+    "out != null",
+    "bytecode != null",
+    "instrumented != null"
+  })
+  private static void printReport(PrintWriter out, byte[] bytecode,
+                                  byte[] instrumented) {
+    WeavingReport report;
+    try {
+      report = new WeavingReport(bytecode, instrumented);
+    } catch (Throwable t) {
+      DebugUtils.warn("report", "cannot analyze class: " + t.toString());
+      return;
+    }
+    synchronized (out) {
+      report.print(out);
     }
-    in.close();
+    if (report.hasCrossedHugeMethodLimit()) {
+      DebugUtils.warn("report", "weaving " + report.getClassName()
+                      + " crossed HugeMethodLimit");
+    }
+  }
 
-    return out.toByteArray();
+  private static byte[] getEmbeddedContracts(byte[] bytecode)
+      throws IllegalClassFormatException {
+    try {
+      return ContractsAttribute.extract(new ClassReader(bytecode));
+    } catch (Throwable t) {
+      IllegalClassFormatException e = new IllegalClassFormatException();
+      e.initCause(t);
+      throw e;
+    }
   }
 
   private static String getClassName(byte[] bytecode)
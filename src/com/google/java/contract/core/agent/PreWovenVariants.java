@@ -0,0 +1,199 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.agent;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.util.DebugUtils;
+import com.google.java.contract.core.util.JavaUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Utility methods for reading and writing pre-woven class variants.
+ *
+ * <p>A variant of class {@code C} for profile {@code p} is stored
+ * alongside its class file, as {@code C.class.woven.p}. It holds the
+ * CRC-32 checksum of the original class file, as a big-endian 32-bit
+ * integer, then one byte of weaving mode flags, followed by the
+ * instrumented class file. The checksum guards against stale
+ * variants: a variant is only used if it has been produced from the
+ * very bytes being loaded, and woven in the modes in effect.
+ */
+public class PreWovenVariants {
+  /**
+   * Mode flag of variants woven with inherited contracts flattened.
+   */
+  public static final int FLATTEN = 1;
+
+  /**
+   * Mode flag of variants woven with dirty invariant tracking.
+   */
+  public static final int DIRTY = 2;
+
+  /**
+   * The length of the header that precedes the instrumented class
+   * file in a variant.
+   */
+  private static final int HEADER_LENGTH = 5;
+
+  /**
+   * Returns the resource name of the variant of {@code className}
+   * for {@code profile}.
+   */
+  @Requires({
+    "className != null",
+    "profile != null"
+  })
+  @Ensures("result != null")
+  public static String getFileName(String className,
+                                   ActivationProfile profile) {
+    return className + JavaUtils.WOVEN_EXTENSION + profile.getFileName();
+  }
+
+  /**
+   * Returns the instrumented bytecode of the variant of
+   * {@code className} for {@code profile}, or {@code null} if there
+   * is no up-to-date variant for {@code bytecode}, woven in the modes
+   * {@code modes}.
+   *
+   * @param loader the class loader used to load resources
+   * @param className the class name, in binary format
+   * @param profile the activation profile in effect
+   * @param bytecode the original bytecode of the class
+   * @param modes the weaving mode flags in effect
+   */
+  @Requires({
+    "className != null",
+    "profile != null",
+    "bytecode != null"
+  })
+  public static byte[] find(ClassLoader loader, String className,
+                            ActivationProfile profile, byte[] bytecode,
+                            int modes)
+      throws IOException {
+    String fileName = getFileName(className, profile);
+    InputStream in = loader == null
+        ? ClassLoader.getSystemResourceAsStream(fileName)
+        : loader.getResourceAsStream(fileName);
+    if (in == null) {
+      return null;
+    }
+
+    byte[] data;
+    try {
+      data = JavaUtils.getBytes(in);
+    } finally {
+      in.close();
+    }
+    if (data.length < HEADER_LENGTH || readInt(data) != checksum(bytecode)) {
+      DebugUtils.info("agent", "ignoring stale " + fileName);
+      return null;
+    }
+    if (data[4] != modes) {
+      DebugUtils.info("agent", "ignoring " + fileName
+                      + ", woven in other modes");
+      return null;
+    }
+
+    byte[] instrumented = new byte[data.length - HEADER_LENGTH];
+    System.arraycopy(data, HEADER_LENGTH, instrumented, 0,
+                     instrumented.length);
+    return instrumented;
+  }
+
+  /**
+   * Returns the variant of {@code className} for {@code profile},
+   * woven in the default modes.
+   *
+   * @see #find(ClassLoader,String,ActivationProfile,byte[],int)
+   */
+  @Requires({
+    "className != null",
+    "profile != null",
+    "bytecode != null"
+  })
+  public static byte[] find(ClassLoader loader, String className,
+                            ActivationProfile profile, byte[] bytecode)
+      throws IOException {
+    return find(loader, className, profile, bytecode, 0);
+  }
+
+  /**
+   * Writes a variant of the class {@code bytecode}.
+   *
+   * @param file the variant file
+   * @param bytecode the original bytecode of the class
+   * @param instrumented the instrumented bytecode for the variant
+   * @param modes the weaving mode flags the variant was woven in
+   */
+  @Requires({
+    "file != null",
+    "bytecode != null",
+    "instrumented != null"
+  })
+  public static void write(File file, byte[] bytecode, byte[] instrumented,
+                           int modes)
+      throws IOException {
+    int sum = checksum(bytecode);
+    file.getAbsoluteFile().getParentFile().mkdirs();
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(new byte[] {
+        (byte) (sum >>> 24), (byte) (sum >>> 16),
+        (byte) (sum >>> 8), (byte) sum, (byte) modes
+      });
+      out.write(instrumented);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Writes a variant of the class {@code bytecode}, woven in the
+   * default modes.
+   *
+   * @see #write(File,byte[],byte[],int)
+   */
+  @Requires({
+    "file != null",
+    "bytecode != null",
+    "instrumented != null"
+  })
+  public static void write(File file, byte[] bytecode, byte[] instrumented)
+      throws IOException {
+    write(file, bytecode, instrumented, 0);
+  }
+
+  @Requires("bytecode != null")
+  private static int checksum(byte[] bytecode) {
+    CRC32 crc = new CRC32();
+    crc.update(bytecode, 0, bytecode.length);
+    return (int) crc.getValue();
+  }
+
+  @Requires("data.length >= 4")
+  private static int readInt(byte[] data) {
+    return ((data[0] & 0xFF) << 24) | ((data[1] & 0xFF) << 16)
+        | ((data[2] & 0xFF) << 8) | (data[3] & 0xFF);
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.agent;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the methods of a class that cannot change the state of their
+ * receiver, so that invariants that hold on entry still hold on exit.
+ *
+ * <p>The analysis is conservative. A method is read-only if it is
+ * neither a constructor nor static, and its code:
+ *
+ * <ul>
+ * <li>writes no field and no array element;
+ * <li>only calls methods of immutable types ({@link String},
+ * primitive wrappers, {@link Math}) that take no mutable argument,
+ * and read-only methods of the same class that cannot be overridden
+ * (private or final methods, or any method of a final class).
+ * </ul>
+ *
+ * Writes to objects other than the receiver are not told apart from
+ * writes to the receiver, since both may alias.
+ */
+@Invariant({
+  "methods != null",
+  "readOnly != null"
+})
+class ReadOnlyMethodAnalyzer extends ClassVisitor {
+  /**
+   * What a method does that matters to the analysis.
+   */
+  protected static class MethodInfo {
+    int access;
+    boolean writes;
+    List<String> calls = new ArrayList<String>();
+
+    MethodInfo(int access) {
+      this.access = access;
+    }
+  }
+
+  /**
+   * Collects information about a single method.
+   */
+  protected class MethodInfoCollector extends MethodVisitor {
+    protected MethodInfo info;
+
+    public MethodInfoCollector(MethodInfo info) {
+      super(Opcodes.ASM5);
+      this.info = info;
+    }
+
+    @Override
+    public void visitInsn(int opcode) {
+      if (opcode >= Opcodes.IASTORE && opcode <= Opcodes.SASTORE) {
+        info.writes = true;
+      }
+    }
+
+    @Override
+    public void visitFieldInsn(int opcode, String owner, String name,
+                               String desc) {
+      if (opcode == Opcodes.PUTFIELD || opcode == Opcodes.PUTSTATIC) {
+        info.writes = true;
+      }
+    }
+
+    @Override
+    public void visitMethodInsn(int opcode, String owner, String name,
+                                String desc, boolean itf) {
+      if (owner.equals(className) && opcode != Opcodes.INVOKEINTERFACE) {
+        info.calls.add(name + desc);
+      } else if (!ImmutableInvariantAnalyzer.IMMUTABLE_TYPES.contains(owner)
+                 || !hasImmutableArguments(desc)) {
+        info.writes = true;
+      }
+    }
+
+    @Override
+    public void visitInvokeDynamicInsn(String name, String desc, Handle bsm,
+                                       Object... bsmArgs) {
+      info.writes = true;
+    }
+  }
+
+  /**
+   * Returns {@code true} if the method descriptor {@code desc} only
+   * takes arguments of primitive or immutable types. Methods such as
+   * {@link String#valueOf(Object)} or
+   * {@link String#getChars(int, int, char[], int)} may call or change
+   * their arguments.
+   */
+  @Requires("desc != null")
+  private static boolean hasImmutableArguments(String desc) {
+    for (Type type : Type.getArgumentTypes(desc)) {
+      switch (type.getSort()) {
+        case Type.ARRAY:
+          return false;
+        case Type.OBJECT:
+          if (!ImmutableInvariantAnalyzer.IMMUTABLE_TYPES.contains(
+                  type.getInternalName())) {
+            return false;
+          }
+          break;
+        default:
+          break;
+      }
+    }
+    return true;
+  }
+
+  protected String className;
+  protected boolean finalClass;
+  protected Map<String, MethodInfo> methods;
+  protected Set<String> readOnly;
+
+  /**
+   * Constructs a new ReadOnlyMethodAnalyzer.
+   */
+  ReadOnlyMethodAnalyzer() {
+    super(Opcodes.ASM5);
+    methods = new HashMap<String, MethodInfo>();
+    readOnly = new HashSet<String>();
+  }
+
+  /**
+   * Returns the names and descriptors of the read-only methods of
+   * the class read by {@code reader}.
+   */
+  @Requires("reader != null")
+  @Ensures("result != null")
+  Set<String> analyze(ClassReader reader) {
+    reader.accept(this, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+    /*
+     * Start from all candidates and remove those that call a method
+     * that is not read-only, until none is removed.
+     */
+    for (Map.Entry<String, MethodInfo> entry : methods.entrySet()) {
+      MethodInfo info = entry.getValue();
+      if (!info.writes && (info.access & Opcodes.ACC_STATIC) == 0
+          && !entry.getKey().startsWith("<")) {
+        readOnly.add(entry.getKey());
+      }
+    }
+    boolean changed;
+    do {
+      changed = false;
+      for (String method : new ArrayList<String>(readOnly)) {
+        for (String callee : methods.get(method).calls) {
+          if (!isReadOnlyCallee(callee)) {
+            readOnly.remove(method);
+            changed = true;
+            break;
+          }
+        }
+      }
+    } while (changed);
+
+    return readOnly;
+  }
+
+  @Requires("callee != null")
+  private boolean isReadOnlyCallee(String callee) {
+    MethodInfo info = methods.get(callee);
+    if (info == null) {
+      /* Inherited; may do anything. */
+      return false;
+    }
+    if ((info.access & Opcodes.ACC_STATIC) != 0) {
+      return !info.writes && info.calls.isEmpty();
+    }
+    if (!finalClass
+        && (info.access & (Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL)) == 0) {
+      /* May be overridden. */
+      return false;
+    }
+    return readOnly.contains(callee);
+  }
+
+  @Override
+  public void visit(int version, int access, String name, String signature,
+                    String superName, String[] interfaces) {
+    className = name;
+    finalClass = (access & Opcodes.ACC_FINAL) != 0;
+  }
+
+  @Override
+  public MethodVisitor visitMethod(int access, String name, String desc,
+                                   String signature, String[] exceptions) {
+    MethodInfo info = new MethodInfo(access);
+    methods.put(name + desc, info);
+    if ((access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+      info.writes = true;
+      return null;
+    }
+    return new MethodInfoCollector(info);
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.agent;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.util.JavaUtils;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.tools.JavaFileObject.Kind;
+
+/**
+ * Checks that instrumented class files only link against the Cofoja
+ * runtime JAR file. Any class in the {@code com.google.java.contract}
+ * namespace referenced from the constant pool of a checked class must
+ * be either in the runtime JAR file or among the checked classes
+ * themselves.
+ *
+ * <p>Annotations are not considered: they are not resolved when a
+ * class is linked, and those left behind by the instrumenter (such as
+ * {@link ContractMethodSignature}) are not retained at run time.
+ *
+ * <p>This class can be run as a standalone program:
+ *
+ * <pre>
+ * java com.google.java.contract.core.agent.RuntimeLinkChecker \
+ *   cofoja-runtime.jar &lt;class file or directory&gt;...
+ * </pre>
+ */
+@Invariant({
+  "available != null",
+  "checked != null",
+  "references != null"
+})
+public class RuntimeLinkChecker {
+  /**
+   * Internal name prefix of the classes subject to checking.
+   */
+  public static final String COFOJA_PREFIX = "com/google/java/contract/";
+
+  /*
+   * Constant pool tags, as per the JVM specification.
+   */
+  private static final int TAG_CLASS = 7;
+  private static final int TAG_NAME_TYPE = 12;
+  private static final int TAG_METHOD_TYPE = 16;
+
+  /**
+   * Internal names of the classes in the runtime JAR file.
+   */
+  protected Set<String> available;
+
+  /**
+   * Internal names of the checked classes.
+   */
+  protected Set<String> checked;
+
+  /**
+   * Pairs of referencing and referenced classes, in the form
+   * {@code "referencing -> referenced"}.
+   */
+  protected Set<String> references;
+
+  /**
+   * Constructs a new RuntimeLinkChecker for the runtime JAR file
+   * {@code runtimeJar}.
+   */
+  @Requires("runtimeJar != null")
+  public RuntimeLinkChecker(File runtimeJar) throws IOException {
+    available = new HashSet<String>();
+    checked = new HashSet<String>();
+    references = new TreeSet<String>();
+
+    ZipFile zip = new ZipFile(runtimeJar);
+    try {
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      while (entries.hasMoreElements()) {
+        String name = entries.nextElement().getName();
+        if (name.endsWith(Kind.CLASS.extension)) {
+          available.add(name.substring(
+              0, name.length() - Kind.CLASS.extension.length()));
+        }
+      }
+    } finally {
+      zip.close();
+    }
+  }
+
+  /**
+   * Adds the class file {@code file}, or all class files under it if
+   * it is a directory, to the set of checked classes.
+   */
+  @Requires("file != null")
+  public void add(File file) throws IOException {
+    if (file.isDirectory()) {
+      File[] children = file.listFiles();
+      if (children != null) {
+        for (File child : children) {
+          add(child);
+        }
+      }
+    } else if (file.getName().endsWith(Kind.CLASS.extension)) {
+      add(JavaUtils.getBytes(file));
+    }
+  }
+
+  /**
+   * Adds the class file {@code bytecode} to the set of checked
+   * classes.
+   */
+  @Requires("bytecode != null")
+  public void add(byte[] bytecode) {
+    ClassReader reader = new ClassReader(bytecode);
+    String className = reader.getClassName();
+    checked.add(className);
+
+    for (String name : getReferencedClassNames(reader)) {
+      if (name.startsWith(COFOJA_PREFIX)) {
+        references.add(className + " -> " + name);
+      }
+    }
+  }
+
+  /**
+   * Returns the internal names of the classes referenced from the
+   * constant pool of the class read by {@code reader}, including
+   * those that only appear in field and method descriptors.
+   */
+  @Requires("reader != null")
+  @Ensures("result != null")
+  public static Set<String> getReferencedClassNames(ClassReader reader) {
+    HashSet<String> names = new HashSet<String>();
+    char[] buf = new char[reader.getMaxStringLength()];
+    int n = reader.getItemCount();
+    for (int i = 1; i < n; ++i) {
+      int offset = reader.getItem(i);
+      if (offset == 0) {
+        /* Second slot of a long or double constant. */
+        continue;
+      }
+      switch (reader.readByte(offset - 1)) {
+        case TAG_CLASS:
+          addType(names, internalNameToType(reader.readUTF8(offset, buf)));
+          break;
+        case TAG_NAME_TYPE:
+          addDescriptor(names, reader.readUTF8(offset + 2, buf));
+          break;
+        case TAG_METHOD_TYPE:
+          addDescriptor(names, reader.readUTF8(offset, buf));
+          break;
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Returns the references from checked classes to Cofoja classes
+   * that are neither in the runtime JAR file nor checked themselves,
+   * in the form {@code "referencing -> referenced"}.
+   */
+  @Ensures("result != null")
+  public List<String> getMissingReferences() {
+    ArrayList<String> missing = new ArrayList<String>();
+    for (String ref : references) {
+      String target = ref.substring(ref.indexOf(" -> ") + 4);
+      if (!available.contains(target) && !checked.contains(target)) {
+        missing.add(ref.replace('/', '.'));
+      }
+    }
+    return missing;
+  }
+
+  @Requires({
+    "names != null",
+    "desc != null"
+  })
+  private static void addDescriptor(Set<String> names, String desc) {
+    if (desc.startsWith("(")) {
+      for (Type type : Type.getArgumentTypes(desc)) {
+        addType(names, type);
+      }
+      addType(names, Type.getReturnType(desc));
+    } else {
+      addType(names, Type.getType(desc));
+    }
+  }
+
+  @Requires({
+    "names != null",
+    "type != null"
+  })
+  private static void addType(Set<String> names, Type type) {
+    if (type.getSort() == Type.ARRAY) {
+      type = type.getElementType();
+    }
+    if (type.getSort() == Type.OBJECT) {
+      names.add(type.getInternalName());
+    }
+  }
+
+  @Requires("name != null")
+  @Ensures("result != null")
+  private static Type internalNameToType(String name) {
+    return name.startsWith("[") ? Type.getType(name) : Type.getObjectType(name);
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("usage: RuntimeLinkChecker <runtime jar> "
+                         + "<class file or directory>...");
+      System.exit(2);
+    }
+
+    RuntimeLinkChecker checker = new RuntimeLinkChecker(new File(args[0]));
+    for (int i = 1; i < args.length; ++i) {
+      checker.add(new File(args[i]));
+    }
+
+    List<String> missing = checker.getMissingReferences();
+    for (String ref : missing) {
+      System.err.println("not in runtime: " + ref);
+    }
+    System.out.println("Checked " + checker.checked.size() + " class file"
+                       + (checker.checked.size() == 1 ? "" : "s")
+                       + " against " + args[0] + ": "
+                       + missing.size() + " missing reference"
+                       + (missing.size() == 1 ? "" : "s"));
+    if (!missing.isEmpty()) {
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.agent;
+
+import com.google.java.contract.AllowUnusedImport;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.model.ClassName;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Determines the exception types named by the exceptional
+ * postconditions of a method, including inherited ones, from the
+ * code of its signal contract method.
+ *
+ * <p>Each {@link com.google.java.contract.ThrowEnsures} clause is
+ * compiled to a test of the form {@code !(signal instanceof T) || p},
+ * so the types of all {@code instanceof} instructions reachable from
+ * the signal contract method, through helper calls, include all
+ * exception types for which a clause may be evaluated. Other types
+ * found along the way only make the result more conservative.
+ */
+@AllowUnusedImport(ClassName.class)
+@Invariant({
+  "ClassName.isBinaryName(className)",
+  "contracts != null",
+  "resolver != null"
+})
+class SignalTypeAnalyzer {
+  private static final String EXCEPTION_DESC =
+      Type.getDescriptor(Exception.class);
+
+  protected String className;
+  protected ContractAnalyzer contracts;
+
+  /*
+   * Used to look up the helpers of superclasses and interfaces.
+   */
+  protected ContractFlattener resolver;
+
+  /**
+   * Constructs a new SignalTypeAnalyzer for the class
+   * {@code className}, with contracts {@code contracts}, looking up
+   * ancestors through {@code loader}.
+   */
+  @Requires({
+    "ClassName.isBinaryName(className)",
+    "contracts != null",
+    "transformer != null"
+  })
+  SignalTypeAnalyzer(String className, ContractAnalyzer contracts,
+                     ContractClassFileTransformer transformer,
+                     ClassLoader loader) {
+    this.className = className;
+    this.contracts = contracts;
+    resolver = new ContractFlattener(className, transformer, loader);
+  }
+
+  /**
+   * Returns the internal names of the exception types checked by
+   * the signal contract method {@code method}, in a stable order, or
+   * {@code null} if they cannot all be determined or include
+   * {@link Exception} itself.
+   */
+  @Requires("method != null")
+  Set<String> getSignalTypes(MethodNode method) {
+    Set<String> types = new TreeSet<String>();
+    if (!collect(method, types, new HashSet<MethodNode>())
+        || types.contains("java/lang/Exception")
+        || types.contains("java/lang/Throwable")) {
+      return null;
+    }
+    return types;
+  }
+
+  /**
+   * Adds the types tested in {@code method}, and in the helpers it
+   * calls, to {@code types}.
+   *
+   * @return {@code false} if a helper that receives the exception
+   * could not be found
+   */
+  @Requires({
+    "method != null",
+    "types != null",
+    "visited != null"
+  })
+  protected boolean collect(MethodNode method, Set<String> types,
+                            Set<MethodNode> visited) {
+    if (!visited.add(method)) {
+      return true;
+    }
+    for (AbstractInsnNode insn = method.instructions.getFirst();
+         insn != null; insn = insn.getNext()) {
+      if (insn.getOpcode() == Opcodes.INSTANCEOF) {
+        types.add(((TypeInsnNode) insn).desc);
+      } else if (insn instanceof MethodInsnNode) {
+        MethodInsnNode call = (MethodInsnNode) insn;
+        if (!call.name.startsWith("com$google$java$contract$")) {
+          continue;
+        }
+        MethodNode helper = findHelper(call);
+        if (helper != null) {
+          if (!collect(helper, types, visited)) {
+            return false;
+          }
+        } else if (call.desc.contains(EXCEPTION_DESC)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the helper called by {@code call}, whether it belongs to
+   * this class or to an ancestor, or {@code null} if it cannot be
+   * found.
+   */
+  @Requires("call != null")
+  protected MethodNode findHelper(MethodInsnNode call) {
+    if (call.owner.equals(className)) {
+      MethodNode m =
+          ContractFlattener.findHelperMethod(contracts, call.name, call.desc);
+      if (m != null) {
+        return m;
+      }
+    }
+    ContractFlattener.Helper helper = resolver.findHelper(call);
+    return helper == null ? null : helper.method;
+  }
+}
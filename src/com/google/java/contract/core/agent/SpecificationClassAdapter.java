@@ -19,17 +19,25 @@
 package com.google.java.contract.core.agent;
 
 import com.google.java.contract.AllowUnusedImport;
+import com.google.java.contract.Ensures;
 import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
 import com.google.java.contract.core.model.ClassName;
 import com.google.java.contract.core.model.ContractKind;
 import com.google.java.contract.core.util.DebugUtils;
+import org.objectweb.asm.Attribute;
 import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.MethodNode;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Bytecode class visitor. Initiates/delegates method instrumentation
@@ -47,11 +55,125 @@ import java.util.List;
 class SpecificationClassAdapter extends ClassVisitor {
   protected String className;
   protected ContractAnalyzer contracts;
+  protected ActivationProfile profile;
+  protected CostTierResolver costTierResolver;
+
+  /*
+   * The access flags of the class, and those of the nested classes
+   * it references, with their enclosing class, or null if top-level
+   * or local; used to tell whether the class is public.
+   */
+  protected int classAccess;
+  protected Map<String, Integer> innerClassAccess;
+  protected Map<String, String> outerClassNames;
+
+  protected boolean injectAllContractMethods;
+  protected int lazyClassId;
+  protected int lazyMethodCount;
+
+  protected SignalTypeAnalyzer signalTypeAnalyzer;
+  protected Set<String> readOnlyMethods;
+
+  /*
+   * Fed with the class and its fields, which a ClassReader visits
+   * before methods; queried once, on the first method.
+   */
+  protected ImmutableInvariantAnalyzer immutableInvariantAnalyzer;
+  protected Boolean immutableInvariants;
+
+  /*
+   * Whether invariants may be tracked with a clean flag, and whether
+   * they are for this class, once known.
+   */
+  protected boolean trackDirtyInvariants;
+  protected boolean dirtyTrackable;
+  protected Boolean trackingDirtyInvariants;
 
   public SpecificationClassAdapter(ClassVisitor cv,
                                    ContractAnalyzer contracts) {
+    this(cv, contracts, null);
+  }
+
+  /**
+   * Constructs a new SpecificationClassAdapter that weaves contracts
+   * according to {@code profile} instead of the activation rules in
+   * effect, unless {@code profile} is {@code null}.
+   */
+  public SpecificationClassAdapter(ClassVisitor cv,
+                                   ContractAnalyzer contracts,
+                                   ActivationProfile profile) {
     super(Opcodes.ASM5, cv);
     this.contracts = contracts;
+    this.profile = profile;
+    injectAllContractMethods = false;
+    lazyClassId = -1;
+    lazyMethodCount = 0;
+    signalTypeAnalyzer = null;
+    costTierResolver = null;
+    classAccess = 0;
+    innerClassAccess = new HashMap<String, Integer>();
+    outerClassNames = new HashMap<String, String>();
+    readOnlyMethods = Collections.emptySet();
+    immutableInvariantAnalyzer = new ImmutableInvariantAnalyzer();
+    immutableInvariants = null;
+    trackDirtyInvariants = false;
+    dirtyTrackable = true;
+    trackingDirtyInvariants = null;
+  }
+
+  /**
+   * Sets whether all contract methods are injected into the class,
+   * even those that are not called. This keeps the set of methods of
+   * the class independent of the activation rules and of lazy
+   * weaving, as required for retransformation.
+   */
+  public void setInjectAllContractMethods(boolean injectAllContractMethods) {
+    this.injectAllContractMethods = injectAllContractMethods;
+  }
+
+  /**
+   * Makes this adapter weave contracted methods with a trampoline to
+   * {@link LazyWeaver} instead of their contracts. Also implies that
+   * all contract methods are injected.
+   *
+   * @param classId the identifier of the class in the
+   * {@link LazyWeaver} registry
+   */
+  @Requires("classId >= 0")
+  public void setLazy(int classId) {
+    lazyClassId = classId;
+    injectAllContractMethods = true;
+  }
+
+  /**
+   * Sets the analyzer used to filter the exceptions passed to
+   * exceptional postconditions. If {@code null}, all exceptions are.
+   */
+  public void setSignalTypeAnalyzer(SignalTypeAnalyzer analyzer) {
+    signalTypeAnalyzer = analyzer;
+  }
+
+  /**
+   * Sets the methods, as names followed by descriptors, that cannot
+   * change the state of their receiver, and therefore need not check
+   * invariants on exit.
+   *
+   * @see ReadOnlyMethodAnalyzer
+   */
+  @Requires("readOnlyMethods != null")
+  public void setReadOnlyMethods(Set<String> readOnlyMethods) {
+    this.readOnlyMethods = readOnlyMethods;
+  }
+
+  /**
+   * Sets whether invariant checks are skipped on objects none of
+   * whose fields has been written since their last check, for the
+   * classes that allow it.
+   *
+   * @see #isTrackingDirtyInvariants()
+   */
+  public void setTrackDirtyInvariants(boolean trackDirtyInvariants) {
+    this.trackDirtyInvariants = trackDirtyInvariants;
   }
 
   @Override
@@ -59,6 +181,46 @@ class SpecificationClassAdapter extends ClassVisitor {
                     String superName, String[] interfaces) {
     super.visit(version, access, name, signature, superName, interfaces);
     className = name;
+    classAccess = access;
+    immutableInvariantAnalyzer.visitClass(name, superName);
+    if ((access & Opcodes.ACC_INTERFACE) != 0
+        || !"java/lang/Object".equals(superName)) {
+      dirtyTrackable = false;
+    }
+  }
+
+  @Override
+  public void visitInnerClass(String name, String outerName,
+                              String innerName, int access) {
+    innerClassAccess.put(name, access);
+    outerClassNames.put(name, outerName);
+    /*
+     * Nestmates are listed here too, whether or not the class file
+     * also has nest attributes.
+     */
+    if (name.equals(className) || className.equals(outerName)
+        || name.startsWith(className + "$")) {
+      dirtyTrackable = false;
+    }
+    super.visitInnerClass(name, outerName, innerName, access);
+  }
+
+  @Override
+  public FieldVisitor visitField(int access, String name, String desc,
+                                 String signature, Object value) {
+    immutableInvariantAnalyzer.visitField(access, name, desc);
+    if ((access & (Opcodes.ACC_STATIC | Opcodes.ACC_PRIVATE)) == 0) {
+      dirtyTrackable = false;
+    }
+    return super.visitField(access, name, desc, signature, value);
+  }
+
+  @Override
+  public void visitAttribute(Attribute attr) {
+    /* Embedded contracts are not needed once woven. */
+    if (!ContractsAttribute.isContractsAttribute(attr)) {
+      super.visitAttribute(attr);
+    }
   }
 
   @Override
@@ -70,6 +232,21 @@ class SpecificationClassAdapter extends ClassVisitor {
       return mv;
     }
 
+    if (isTrackingDirtyInvariants() && !isLazy()) {
+      mv = new DirtyTrackingMethodAdapter(mv, className);
+    }
+
+    /*
+     * Bridge methods and synthetic accessors delegate to a real
+     * method, which carries the contracts; instrumenting them too
+     * would evaluate the same contracts twice per call.
+     */
+    if ((access & (Opcodes.ACC_BRIDGE | Opcodes.ACC_SYNTHETIC)) != 0) {
+      DebugUtils.info("instrument", "skipping synthetic method "
+                      + className + "." + name + desc);
+      return mv;
+    }
+
     return new SpecificationMethodAdapter(this, mv, access, name, desc);
   }
 
@@ -95,13 +272,189 @@ class SpecificationClassAdapter extends ClassVisitor {
         if (lineNumbers != null) {
           visitor = new LineNumberingClassAdapter(visitor, lineNumbers);
         }
+        getCostTierResolver().resolve(methodNode);
         methodNode.accept(new ContractFixingClassAdapter(visitor));
         h.setInjected(true);
       }
+
+      if (injectAllContractMethods) {
+        for (ContractHandle h : contracts.getAllHandles()) {
+          ContractKind kind = h.getKind();
+          if (!h.isInjected() && kind != ContractKind.HELPER
+              && kind != ContractKind.ACCESS && kind != ContractKind.LAMBDA) {
+            injectContractMethod(h);
+          }
+        }
+      }
+    }
+
+    if (isTrackingDirtyInvariants()) {
+      FieldVisitor fv =
+          cv.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_TRANSIENT
+                        | Opcodes.ACC_SYNTHETIC,
+                        DirtyTrackingMethodAdapter.CLEAN_FIELD, "Z",
+                        null, null);
+      fv.visitEnd();
+    }
+
+    if (isLazy()) {
+      LazyWeaver.getInstance().register(lazyClassId, className,
+                                        lazyMethodCount);
     }
     super.visitEnd();
   }
 
+  /**
+   * Injects the specified contract method code into the current
+   * class, unless already done, and returns a new Method object
+   * representing the injected method. This is done by bypassing this
+   * adapter and talking directly to its parent (usually, a class
+   * writer).
+   *
+   * @param handle the handle from the code pool that holds code and
+   * meta-information about the contract method
+   * @return the method node to invoke
+   */
+  @Requires("handle != null")
+  @Ensures({
+    "result != null",
+    "handle.isInjected()"
+  })
+  MethodNode injectContractMethod(ContractHandle handle) {
+    MethodNode methodNode = handle.getContractMethod();
+
+    if (!handle.isInjected()) {
+      DebugUtils.info("instrument", "contract method "
+                      + className + "." + methodNode.name
+                      + methodNode.desc);
+      ClassVisitor visitor = cv;
+      List<Long> lineNumbers = handle.getLineNumbers();
+      if (lineNumbers != null) {
+        visitor = new LineNumberingClassAdapter(visitor, lineNumbers);
+      }
+      getCostTierResolver().resolve(methodNode);
+      methodNode.accept(new ContractFixingClassAdapter(visitor));
+      handle.setInjected(true);
+    }
+
+    return methodNode;
+  }
+
+  /**
+   * Returns the internal names of the exception types checked by the
+   * signal contract method {@code method}, or {@code null} if any
+   * exception may need to be checked.
+   *
+   * @see SignalTypeAnalyzer#getSignalTypes(MethodNode)
+   */
+  @Requires("method != null")
+  Set<String> getSignalTypes(MethodNode method) {
+    if (signalTypeAnalyzer == null) {
+      return null;
+    }
+    return signalTypeAnalyzer.getSignalTypes(method);
+  }
+
+  /**
+   * Returns {@code true} if the specified method cannot change the
+   * state of its receiver.
+   */
+  @Requires({
+    "name != null",
+    "desc != null"
+  })
+  boolean isReadOnlyMethod(String name, String desc) {
+    return readOnlyMethods.contains(name + desc);
+  }
+
+  /**
+   * Returns {@code true} if the invariants of this class can only
+   * change during construction, and need not be checked elsewhere.
+   *
+   * @see ImmutableInvariantAnalyzer
+   */
+  boolean hasImmutableInvariants() {
+    if (immutableInvariants == null) {
+      immutableInvariants =
+          immutableInvariantAnalyzer.hasImmutableInvariants(contracts);
+      if (immutableInvariants) {
+        DebugUtils.info("instrument", "invariants of " + className
+                        + " only checked by constructors");
+      }
+    }
+    return immutableInvariants;
+  }
+
+  /**
+   * Returns {@code true} if invariant checks on instances of this
+   * class are skipped until a field is written. This requires that
+   * the class be directly derived from {@link Object}, that all its
+   * instance fields be private, and that it be neither nested nor
+   * enclosing other classes, so that only its own code, which is
+   * instrumented to that effect, can write them; nestmates may write
+   * private fields directly, without an accessor. Changes to
+   * objects referenced by these fields are only noticed if made from
+   * a method of the class that is not read-only.
+   */
+  boolean isTrackingDirtyInvariants() {
+    if (trackingDirtyInvariants == null) {
+      trackingDirtyInvariants = trackDirtyInvariants && dirtyTrackable
+          && contracts.getClassHandle(ContractKind.INVARIANT) != null
+          && !hasImmutableInvariants();
+      if (trackingDirtyInvariants) {
+        DebugUtils.info("instrument", "invariants of " + className
+                        + " only checked when dirty");
+      }
+    }
+    return trackingDirtyInvariants;
+  }
+
+  /**
+   * Returns {@code true} if the visited class can be named from other
+   * packages, that is, if it and all its enclosing classes are public
+   * or protected. Only valid once methods are being visited, after
+   * nested class information.
+   */
+  boolean isPublicClass() {
+    if ((classAccess & Opcodes.ACC_PUBLIC) == 0) {
+      return false;
+    }
+    String name = className;
+    while (innerClassAccess.containsKey(name)) {
+      int access = innerClassAccess.get(name);
+      if ((access & (Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED)) == 0) {
+        return false;
+      }
+      name = outerClassNames.get(name);
+      if (name == null) {
+        /* Local and anonymous classes. */
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if contracted methods are woven with
+   * trampolines only.
+   */
+  boolean isLazy() {
+    return lazyClassId != -1;
+  }
+
+  int getLazyClassId() {
+    return lazyClassId;
+  }
+
+  /**
+   * Returns the index of a new trampoline.
+   */
+  @Requires("isLazy()")
+  @Ensures("result >= 0")
+  int newLazyMethodIndex() {
+    return lazyMethodCount++;
+  }
+
   /**
    * Returns the name of the visited class.
    */
@@ -109,6 +462,40 @@ class SpecificationClassAdapter extends ClassVisitor {
     return className;
   }
 
+  /**
+   * Returns the activation profile to weave contracts for, or
+   * {@code null} if the activation rules in effect apply.
+   */
+  ActivationProfile getProfile() {
+    return profile;
+  }
+
+  /**
+   * Returns the resolver of the cost tier tests in contract code
+   * injected into the visited class. Tiers are enabled according to
+   * the rules of the visited class, or all enabled if weaving for a
+   * profile.
+   */
+  @Ensures("result != null")
+  CostTierResolver getCostTierResolver() {
+    if (costTierResolver == null) {
+      costTierResolver = profile != null
+          ? CostTierResolver.ALL
+          : CostTierResolver.forClass(className);
+    }
+    return costTierResolver;
+  }
+
+  /**
+   * Returns {@code true} if some of the clauses of the contract
+   * method of {@code handle} may be checked in the visited class,
+   * according to their cost tiers.
+   */
+  @Requires("handle != null")
+  boolean isCostTierEnabled(ContractHandle handle) {
+    return getCostTierResolver().isAnyEnabled(handle.getCosts());
+  }
+
   /**
    * Returns the class visitor this one delegates to.
    */
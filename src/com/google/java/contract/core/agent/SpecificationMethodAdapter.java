@@ -25,10 +25,8 @@ import com.google.java.contract.Invariant;
 import com.google.java.contract.Requires;
 import com.google.java.contract.core.model.ClassName;
 import com.google.java.contract.core.model.ContractKind;
-import com.google.java.contract.core.util.DebugUtils;
 import com.google.java.contract.util.Iterables;
 import com.google.java.contract.util.Predicates;
-import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
@@ -39,7 +37,9 @@ import org.objectweb.asm.tree.MethodNode;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A bytecode method visitor that instruments the original method to
@@ -70,6 +70,12 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
       Type.getObjectType("java/lang/Exception");
   private static final Type CONTRACT_RUNTIME_TYPE =
       Type.getObjectType("com/google/java/contract/core/runtime/ContractRuntime");
+  private static final Type ASYNC_CONTRACT_RUNTIME_TYPE =
+      Type.getObjectType(
+          "com/google/java/contract/core/runtime/AsyncContractRuntime");
+  private static final Type STREAM_CONTRACT_RUNTIME_TYPE =
+      Type.getObjectType(
+          "com/google/java/contract/core/runtime/StreamContractRuntime");
   private static final Type CONTRACT_CONTEXT_TYPE =
       Type.getObjectType("com/google/java/contract/core/runtime/ContractContext");
   private static final Method GET_CLASS_METHOD =
@@ -82,9 +88,25 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
   private static final Method LEAVE_CONTRACT_METHOD =
       Method.getMethod("void leaveContract()");
   private static final Method TRY_ENTER_METHOD =
-      Method.getMethod("boolean tryEnter(Object)");
+      Method.getMethod("boolean tryEnter(Object, Class)");
   private static final Method LEAVE_METHOD =
       Method.getMethod("void leave(Object)");
+  private static final Method ATTACH_COMPLETION_CHECKS_METHOD =
+      Method.getMethod("java.util.concurrent.CompletableFuture "
+                       + "attachCompletionChecks("
+                       + "java.util.concurrent.CompletableFuture)");
+  private static final Method ATTACH_STREAM_CHECKS_METHOD =
+      Method.getMethod("java.util.stream.Stream "
+                       + "attachElementChecks(java.util.stream.Stream)");
+  private static final Method ATTACH_ITERABLE_CHECKS_METHOD =
+      Method.getMethod("Iterable attachElementChecks(Iterable)");
+  private static final Method ATTACH_ITERATOR_CHECKS_METHOD =
+      Method.getMethod("java.util.Iterator "
+                       + "attachElementChecks(java.util.Iterator)");
+  private static final Type LAZY_WEAVER_TYPE =
+      Type.getObjectType("com/google/java/contract/core/agent/LazyWeaver");
+  private static final Method ENTER_METHOD =
+      Method.getMethod("void enter(Class, int, int)");
 
   /*
    * Used to bracket the entire original method to catch any exception
@@ -114,6 +136,18 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
   protected boolean withPostconditions;
   protected boolean withInvariants;
 
+  /*
+   * Whether invariants are checked on exit. Methods that cannot
+   * change the state of their receiver only check them on entry.
+   */
+  protected boolean withExitInvariants;
+
+  /*
+   * The index of the trampoline of this method, if the class is
+   * being lazily woven and this method has contracts, or -1.
+   */
+  protected int lazyMethodIndex;
+
   /**
    * Constructs a new SpecificationClassAdapter.
    *
@@ -155,10 +189,73 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
 
     classAdapter = ca;
 
-    ActivationRuleManager am = ActivationRuleManager.getInstance();
-    withPreconditions = am.hasPreconditionsEnabled(className);
-    withPostconditions = am.hasPostconditionsEnabled(className);
-    withInvariants = am.hasInvariantsEnabled(className);
+    ActivationProfile profile = ca.getProfile();
+    if (profile != null) {
+      withPreconditions = profile.hasPreconditionsEnabled();
+      withPostconditions = profile.hasPostconditionsEnabled();
+      withInvariants = profile.hasInvariantsEnabled();
+    } else {
+      ActivationRuleManager am = ActivationRuleManager.getInstance();
+      withPreconditions = am.hasPreconditionsEnabled(className);
+      withPostconditions = am.hasPostconditionsEnabled(className);
+      withInvariants = am.hasInvariantsEnabled(className);
+
+      /*
+       * Internal methods are only called from within the class (or
+       * package), where invariants need not hold; if so configured,
+       * no invariant code is woven into them at all, nor any code if
+       * they have no contracts of their own. Constructors must still
+       * establish the invariant.
+       */
+      if (withInvariants && !isConstructor) {
+        if ((access & ACC_PRIVATE) != 0) {
+          withInvariants = am.hasPrivateInvariantsEnabled(className);
+        } else if ((access & (ACC_PUBLIC | ACC_PROTECTED)) == 0) {
+          withInvariants = am.hasPackageInvariantsEnabled(className);
+        }
+        if (!withInvariants && !contracts.hasMethodHandles(methodName)) {
+          withPreconditions = false;
+          withPostconditions = false;
+        }
+      }
+
+      /*
+       * If restricted to the API boundary, only methods that other
+       * packages can call are contracted; calls within the package
+       * are trusted.
+       */
+      if (!am.hasInternalContractsEnabled(className)
+          && ((access & ACC_PUBLIC) == 0 || !ca.isPublicClass())) {
+        withPreconditions = false;
+        withPostconditions = false;
+        withInvariants = false;
+      }
+    }
+
+    /*
+     * Invariants that only depend on immutable state are established
+     * once and for all by constructors.
+     */
+    if (withInvariants && !isConstructor && ca.hasImmutableInvariants()) {
+      withInvariants = false;
+      if (!contracts.hasMethodHandles(methodName)) {
+        withPreconditions = false;
+        withPostconditions = false;
+      }
+    }
+
+    withExitInvariants = withInvariants && !statik
+        && !ca.isReadOnlyMethod(methodName, methodDesc);
+
+    lazyMethodIndex = -1;
+    if (ca.isLazy() && !isStaticInit
+        && (withPreconditions || withPostconditions || withInvariants)) {
+      lazyMethodIndex = ca.newLazyMethodIndex();
+      withPreconditions = false;
+      withPostconditions = false;
+      withInvariants = false;
+      withExitInvariants = false;
+    }
   }
 
   /**
@@ -198,6 +295,13 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
    */
   @Override
   protected void onMethodEnter() {
+    if (lazyMethodIndex != -1) {
+      push(thisType);
+      push(classAdapter.getLazyClassId());
+      push(lazyMethodIndex);
+      invokeStatic(LAZY_WEAVER_TYPE, ENTER_METHOD);
+    }
+
     if (withPreconditions || withPostconditions || withInvariants) {
       enterContractedMethod();
 
@@ -224,6 +328,17 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
       }
 
       leaveBusySection(skip);
+
+      /*
+       * Methods that may change the object, including through other
+       * objects it references, make it dirty for their exit check.
+       */
+      if (withExitInvariants && !isConstructor && tracksDirtyInvariants()) {
+        loadThis();
+        push(false);
+        putField(thisType, DirtyTrackingMethodAdapter.CLEAN_FIELD,
+                 Type.BOOLEAN_TYPE);
+      }
     }
   }
 
@@ -235,7 +350,7 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
   protected void onMethodExit(int opcode) {
     if ((withPreconditions || withPostconditions || withInvariants)
         && opcode != ATHROW) {
-      if (withPostconditions || withInvariants) {
+      if (withPostconditions || withExitInvariants) {
         Label skip = enterBusySection();
 
         if (withPostconditions) {
@@ -250,11 +365,23 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
             returnIndex = newLocal(returnType);
             storeLocal(returnIndex);
           }
-          invokeCommonPostconditions(ContractKind.POST, oldValueLocals,
-                                     returnIndex);
+          boolean invoked =
+              invokeCommonPostconditions(ContractKind.POST, oldValueLocals,
+                                         returnIndex);
+
+          /*
+           * Asynchronous and element-wise postconditions are checked
+           * by a wrapper of the result, returned instead.
+           */
+          Method attachMethod = getAttachChecksMethod(returnType);
+          if (invoked && attachMethod != null) {
+            pop();
+            loadLocal(returnIndex);
+            invokeStatic(getAttachChecksOwner(returnType), attachMethod);
+          }
         }
 
-        if (withInvariants && !statik) {
+        if (withExitInvariants) {
           invokeInvariants();
         }
 
@@ -264,6 +391,49 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
     }
   }
 
+  /**
+   * Returns the runtime method that wraps results of type
+   * {@code type} so as to check postconditions on their completion
+   * value or elements later, or {@code null} if there is none.
+   */
+  @Requires("type != null")
+  protected static Method getAttachChecksMethod(Type type) {
+    if (type.getSort() != Type.OBJECT) {
+      return null;
+    }
+    String name = type.getInternalName();
+    if (name.equals("java/util/concurrent/CompletableFuture")) {
+      return ATTACH_COMPLETION_CHECKS_METHOD;
+    } else if (name.equals("java/util/stream/Stream")) {
+      return ATTACH_STREAM_CHECKS_METHOD;
+    } else if (name.equals("java/lang/Iterable")) {
+      return ATTACH_ITERABLE_CHECKS_METHOD;
+    } else if (name.equals("java/util/Iterator")) {
+      return ATTACH_ITERATOR_CHECKS_METHOD;
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the runtime class that declares the method returned by
+   * {@link #getAttachChecksMethod(Type)}. Classes that depend on Java
+   * types newer than those of the core runtime are only referenced
+   * from methods that return these types.
+   */
+  @Requires("getAttachChecksMethod(type) != null")
+  @Ensures("result != null")
+  protected static Type getAttachChecksOwner(Type type) {
+    if (type.getInternalName().equals(
+            "java/util/concurrent/CompletableFuture")) {
+      return ASYNC_CONTRACT_RUNTIME_TYPE;
+    } else if (type.getInternalName().equals("java/util/stream/Stream")) {
+      return STREAM_CONTRACT_RUNTIME_TYPE;
+    } else {
+      return CONTRACT_RUNTIME_TYPE;
+    }
+  }
+
   /**
    * Advises the method by injecting exceptional postconditions and
    * invariants after the original code. This code only gets executed
@@ -276,8 +446,23 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
       mark(methodEnd);
       catchException(methodStart, methodEnd, null);
 
+      Set<String> signalTypes = null;
       if (withPostconditions) {
+        signalTypes = getSignalFilter();
+      }
+      if (withPostconditions
+          && (signalTypes == null || !signalTypes.isEmpty())) {
         Label skipEx = new Label();
+        if (signalTypes != null) {
+          Label handle = new Label();
+          for (String type : signalTypes) {
+            dup();
+            instanceOf(Type.getObjectType(type));
+            ifZCmp(NE, handle);
+          }
+          goTo(skipEx);
+          mark(handle);
+        }
         dup();
         instanceOf(EXCEPTION_TYPE);
         ifZCmp(EQ, skipEx);
@@ -289,7 +474,7 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
 
         invokeCommonPostconditions(ContractKind.SIGNAL, signalOldValueLocals,
                                    throwIndex);
-        if (withInvariants && !statik) {
+        if (withExitInvariants) {
           invokeInvariants();
         }
 
@@ -309,6 +494,29 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
     super.visitMaxs(maxStack, maxLocals);
   }
 
+  /**
+   * Returns the exception types for which the exceptional
+   * postconditions of this method must be evaluated on throw, or
+   * {@code null} if all exceptions must be. Other exceptions are
+   * rethrown directly. Invariants are checked on all exceptional
+   * exits of methods that may change their receiver, so no filtering
+   * takes place if there are any.
+   */
+  protected Set<String> getSignalFilter() {
+    if (withExitInvariants
+        && isEnabled(contracts.getClassHandle(ContractKind.INVARIANT))) {
+      return null;
+    }
+    /* The exception comes before the old values. */
+    MethodContractHandle h =
+        contracts.getMethodHandle(ContractKind.SIGNAL, methodName, methodDesc,
+                                  1 + signalOldValueLocals.size());
+    if (!isEnabled(h)) {
+      return Collections.emptySet();
+    }
+    return classAdapter.getSignalTypes(h.getContractMethod());
+  }
+
   /**
    * Injects code to allocate the local variables needed to hold old
    * values for the postconditions of the method. These variables are
@@ -365,6 +573,10 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
     }
 
     for (MethodContractHandle h : olds) {
+      /* Disabled old values are left null. */
+      if (!isEnabled(h)) {
+        continue;
+      }
       MethodNode contractMethod = injectContractMethod(h);
       int k = h.getKey();
 
@@ -384,7 +596,7 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
    */
   protected void invokeInvariants() {
     ClassContractHandle h = contracts.getClassHandle(ContractKind.INVARIANT);
-    if (h == null) {
+    if (!isEnabled(h)) {
       return;
     }
 
@@ -399,6 +611,12 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
     } else {
       loadLocal(checkInvariantsLocal);
       ifZCmp(EQ, skipInvariants);
+      if (tracksDirtyInvariants()) {
+        loadThis();
+        getField(thisType, DirtyTrackingMethodAdapter.CLEAN_FIELD,
+                 Type.BOOLEAN_TYPE);
+        ifZCmp(NE, skipInvariants);
+      }
     }
 
     if (!statik) {
@@ -406,9 +624,24 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
     }
     invokeContractMethod(contractMethod);
 
+    if (tracksDirtyInvariants()) {
+      loadThis();
+      push(true);
+      putField(thisType, DirtyTrackingMethodAdapter.CLEAN_FIELD,
+               Type.BOOLEAN_TYPE);
+    }
+
     mark(skipInvariants);
   }
 
+  /**
+   * Returns {@code true} if invariant checks of this method are
+   * skipped while the object is clean.
+   */
+  protected boolean tracksDirtyInvariants() {
+    return !statik && classAdapter.isTrackingDirtyInvariants();
+  }
+
   /**
    * Injects calls to precondition contract methods. Precondition
    * contract methods get called with, in this order:
@@ -421,7 +654,7 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
   protected void invokePreconditions() {
     MethodContractHandle h =
         contracts.getMethodHandle(ContractKind.PRE, methodName, methodDesc, 0);
-    if (h == null) {
+    if (!isEnabled(h)) {
       return;
     }
 
@@ -450,6 +683,7 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
    * @param oldLocals a list of old value variables
    * @param extraIndex the index of the local variable that holds the
    * return value, or exception object, of the method, or -1 if none
+   * @return {@code true} if a contract method was invoked
    */
   @Requires({
     "kind != null",
@@ -457,13 +691,13 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
     "oldLocals != null",
     "extraIndex >= -1"
   })
-  protected void invokeCommonPostconditions(ContractKind kind,
+  protected boolean invokeCommonPostconditions(ContractKind kind,
       List<Integer> oldLocals, int extraIndex) {
     MethodContractHandle h =
         contracts.getMethodHandle(kind, methodName, methodDesc,
                                   getPostDescOffset(oldLocals, extraIndex));
-    if (h == null) {
-      return;
+    if (!isEnabled(h)) {
+      return false;
     }
 
     MethodNode contractMethod = injectContractMethod(h);
@@ -482,6 +716,7 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
     }
 
     invokeContractMethod(contractMethod);
+    return true;
   }
 
   /**
@@ -508,35 +743,25 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
     return off;
   }
 
+  /**
+   * Returns {@code true} if {@code handle} is not {@code null} and
+   * some of its clauses belong to enabled cost tiers.
+   */
+  protected boolean isEnabled(ContractHandle handle) {
+    return handle != null && classAdapter.isCostTierEnabled(handle);
+  }
+
   /**
    * Injects the specified contract method code into the current
    * class, and returns a new Method object representing the injected
-   * method. This is done by bypassing the SpecificationClassAdapter
-   * and talking directly to its parent (usually, a class writer).
+   * method.
    *
-   * @param handle the handle from the code pool that holds code and
-   * meta-information about the contract method
-   * @return the method node to invoke
+   * @see SpecificationClassAdapter#injectContractMethod(ContractHandle)
    */
   @Requires("handle != null")
   @Ensures("result != null")
   protected MethodNode injectContractMethod(ContractHandle handle) {
-    MethodNode methodNode = handle.getContractMethod();
-
-    if (!handle.isInjected()) {
-      DebugUtils.info("instrument", "contract method "
-                      + className + "." + methodNode.name
-                      + methodNode.desc);
-      ClassVisitor cv = classAdapter.getParent();
-      List<Long> lineNumbers = handle.getLineNumbers();
-      if (lineNumbers != null) {
-        cv = new LineNumberingClassAdapter(cv, lineNumbers);
-      }
-      methodNode.accept(new ContractFixingClassAdapter(cv));
-      handle.setInjected(true);
-    }
-
-    return methodNode;
+    return classAdapter.injectContractMethod(handle);
   }
 
   @Requires("contractMethod != null")
@@ -589,7 +814,9 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
   }
 
   /**
-   * Retrieves busy state of the current object.
+   * Retrieves busy state of the current object. The class of this
+   * method is passed along only if its invariants are woven in, so
+   * that deferral scopes do not record calls that check none.
    */
   @Ensures({
     "contextLocal >= 0",
@@ -606,6 +833,12 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
     } else {
       loadThis();
     }
+    if (withInvariants && !statik
+        && isEnabled(contracts.getClassHandle(ContractKind.INVARIANT))) {
+      loadThisClass();
+    } else {
+      push((Type) null);
+    }
     invokeVirtual(CONTRACT_CONTEXT_TYPE, TRY_ENTER_METHOD);
     storeLocal(checkInvariantsLocal);
   }
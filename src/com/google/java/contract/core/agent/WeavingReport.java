@@ -0,0 +1,298 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.agent;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+import org.objectweb.asm.ClassReader;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A comparison of the methods of a class before and after weaving,
+ * with respect to the size limits HotSpot applies when compiling and
+ * inlining methods.
+ *
+ * <p>Methods larger than {@link #HUGE_METHOD_LIMIT} bytes of bytecode
+ * are never compiled by default; methods larger than
+ * {@link #MAX_INLINE_SIZE} or {@link #FREQ_INLINE_SIZE} bytes are not
+ * inlined at cold or hot call sites, respectively. A woven method that
+ * crosses one of these limits may run much slower than its original
+ * size suggests.
+ */
+@Invariant({
+  "getClassName() != null",
+  "getMethods() != null"
+})
+public class WeavingReport {
+  /**
+   * HotSpot's default {@code HugeMethodLimit}.
+   */
+  public static final int HUGE_METHOD_LIMIT = 8000;
+
+  /**
+   * HotSpot's default {@code FreqInlineSize}.
+   */
+  public static final int FREQ_INLINE_SIZE = 325;
+
+  /**
+   * HotSpot's default {@code MaxInlineSize}.
+   */
+  public static final int MAX_INLINE_SIZE = 35;
+
+  private static final int[] LIMITS = {
+    MAX_INLINE_SIZE, FREQ_INLINE_SIZE, HUGE_METHOD_LIMIT
+  };
+
+  private static final String[] LIMIT_NAMES = {
+    "MaxInlineSize", "FreqInlineSize", "HugeMethodLimit"
+  };
+
+  /**
+   * The code metrics of a single method, as read from its
+   * {@code Code} attribute.
+   */
+  public static class MethodMetrics {
+    /**
+     * The size of the bytecode, in bytes.
+     */
+    public final int codeLength;
+
+    /**
+     * The number of exception handlers.
+     */
+    public final int handlers;
+
+    /**
+     * The number of local variable slots.
+     */
+    public final int maxLocals;
+
+    MethodMetrics(int codeLength, int handlers, int maxLocals) {
+      this.codeLength = codeLength;
+      this.handlers = handlers;
+      this.maxLocals = maxLocals;
+    }
+  }
+
+  /**
+   * A method present after weaving, with its metrics before weaving,
+   * if it existed then.
+   */
+  public static class MethodEntry {
+    /**
+     * The name and descriptor of the method.
+     */
+    public final String method;
+
+    /**
+     * The metrics before weaving, or {@code null} if the method was
+     * added by the weaver.
+     */
+    public final MethodMetrics before;
+
+    /**
+     * The metrics after weaving.
+     */
+    public final MethodMetrics after;
+
+    MethodEntry(String method, MethodMetrics before, MethodMetrics after) {
+      this.method = method;
+      this.before = before;
+      this.after = after;
+    }
+
+    /**
+     * Returns {@code true} if this method has been modified or added
+     * by the weaver.
+     */
+    public boolean isChanged() {
+      return before == null
+          || before.codeLength != after.codeLength
+          || before.handlers != after.handlers
+          || before.maxLocals != after.maxLocals;
+    }
+
+    /**
+     * Returns the names of the limits this method has crossed.
+     */
+    @Ensures("result != null")
+    public List<String> getCrossedLimits() {
+      List<String> crossed = new ArrayList<String>();
+      int oldLength = before == null ? 0 : before.codeLength;
+      for (int i = 0; i < LIMITS.length; ++i) {
+        if (oldLength <= LIMITS[i] && after.codeLength > LIMITS[i]) {
+          crossed.add(LIMIT_NAMES[i]);
+        }
+      }
+      return crossed;
+    }
+  }
+
+  protected String className;
+  protected List<MethodEntry> methods;
+
+  /**
+   * Constructs a new WeavingReport comparing the class file
+   * {@code bytecode} with its instrumented version
+   * {@code instrumented}.
+   */
+  @Requires({
+    "bytecode != null",
+    "instrumented != null"
+  })
+  public WeavingReport(byte[] bytecode, byte[] instrumented) {
+    ClassReader after = new ClassReader(instrumented);
+    className = after.getClassName();
+    Map<String, MethodMetrics> old = readMethods(new ClassReader(bytecode));
+    methods = new ArrayList<MethodEntry>();
+    for (Map.Entry<String, MethodMetrics> entry
+         : readMethods(after).entrySet()) {
+      if (entry.getValue() != null) {
+        methods.add(new MethodEntry(entry.getKey(), old.get(entry.getKey()),
+                                    entry.getValue()));
+      }
+    }
+  }
+
+  public String getClassName() {
+    return className;
+  }
+
+  /**
+   * Returns the entries of all concrete methods of the instrumented
+   * class, in class file order.
+   */
+  public List<MethodEntry> getMethods() {
+    return Collections.unmodifiableList(methods);
+  }
+
+  /**
+   * Returns {@code true} if any method of the class has crossed a
+   * HotSpot limit because of weaving.
+   */
+  public boolean hasCrossedLimits() {
+    for (MethodEntry entry : methods) {
+      if (!entry.getCrossedLimits().isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@code true} if weaving has made any method of the class
+   * too large to be compiled.
+   */
+  public boolean hasCrossedHugeMethodLimit() {
+    for (MethodEntry entry : methods) {
+      if (entry.getCrossedLimits().contains("HugeMethodLimit")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Prints this report to {@code out}: a line for the class, with its
+   * total bytecode size before and after weaving, followed by a line
+   * for each method changed by the weaver. Lines for methods that
+   * have crossed a limit start with {@code !}.
+   */
+  @Requires("out != null")
+  public void print(PrintWriter out) {
+    int oldTotal = 0;
+    int newTotal = 0;
+    for (MethodEntry entry : methods) {
+      if (entry.before != null) {
+        oldTotal += entry.before.codeLength;
+      }
+      newTotal += entry.after.codeLength;
+    }
+    out.println("class " + className.replace('/', '.')
+                + " size " + oldTotal + " -> " + newTotal);
+
+    for (MethodEntry entry : methods) {
+      if (!entry.isChanged()) {
+        continue;
+      }
+      List<String> crossed = entry.getCrossedLimits();
+      StringBuilder line = new StringBuilder();
+      line.append(crossed.isEmpty() ? "  " : "! ");
+      line.append(entry.method);
+      if (entry.before == null) {
+        line.append(" added size ").append(entry.after.codeLength);
+      } else {
+        line.append(" size ").append(entry.before.codeLength)
+            .append(" -> ").append(entry.after.codeLength)
+            .append(" handlers +")
+            .append(entry.after.handlers - entry.before.handlers)
+            .append(" locals +")
+            .append(entry.after.maxLocals - entry.before.maxLocals);
+      }
+      for (String limit : crossed) {
+        line.append(" crosses ").append(limit);
+      }
+      out.println(line);
+    }
+  }
+
+  /**
+   * Returns the metrics of the methods of the class read by
+   * {@code reader}, keyed by name and descriptor. Abstract and native
+   * methods map to {@code null}.
+   *
+   * <p>This method only walks the class file structure; it does not
+   * visit the class.
+   */
+  @Requires("reader != null")
+  @Ensures("result != null")
+  public static Map<String, MethodMetrics> readMethods(ClassReader reader) {
+    char[] buf = new char[reader.getMaxStringLength()];
+    int u = ClassFileOffsets.getMethodsOffset(reader);
+
+    Map<String, MethodMetrics> result =
+        new LinkedHashMap<String, MethodMetrics>();
+    int n = reader.readUnsignedShort(u);
+    u += 2;
+    for (; n > 0; --n) {
+      String key = reader.readUTF8(u + 2, buf) + reader.readUTF8(u + 4, buf);
+      MethodMetrics metrics = null;
+      int m = reader.readUnsignedShort(u + 6);
+      u += 8;
+      for (; m > 0; --m) {
+        int len = reader.readInt(u + 2);
+        if ("Code".equals(reader.readUTF8(u, buf))) {
+          int maxLocals = reader.readUnsignedShort(u + 8);
+          int codeLength = reader.readInt(u + 10);
+          int handlers = reader.readUnsignedShort(u + 14 + codeLength);
+          metrics = new MethodMetrics(codeLength, handlers, maxLocals);
+        }
+        u += 6 + len;
+      }
+      result.put(key, metrics);
+    }
+    return result;
+  }
+}
@@ -18,6 +18,7 @@
  */
 package com.google.java.contract.core.apt;
 
+import com.google.java.contract.Cost;
 import com.google.java.contract.Ensures;
 import com.google.java.contract.Invariant;
 import com.google.java.contract.Requires;
@@ -31,12 +32,14 @@ import com.google.java.contract.core.util.JavaUtils;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.VariableElement;
 import javax.lang.model.util.ElementScanner6;
 
 /**
@@ -154,8 +157,15 @@ abstract class AbstractTypeBuilder
     }
 
     AnnotationValue lastAnnotationValue = null;
-    for (AnnotationValue annotationValue :
-         annotation.getElementValues().values()) {
+    AnnotationValue costAnnotationValue = null;
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue>
+             entry : annotation.getElementValues().entrySet()) {
+      AnnotationValue annotationValue = entry.getValue();
+      if (entry.getKey().getSimpleName().contentEquals("cost")) {
+        costAnnotationValue = annotationValue;
+        continue;
+      }
+
       @SuppressWarnings("unchecked")
       List<? extends AnnotationValue> values =
           (List<? extends AnnotationValue>) annotationValue.getValue();
@@ -181,6 +191,14 @@ abstract class AbstractTypeBuilder
                                 parent, annotation, lastAnnotationValue);
       return null;
     }
+    if (costAnnotationValue == null) {
+      estimateCosts(model);
+    } else if (!setCosts(model, costAnnotationValue)) {
+      diagnosticManager.error(
+          "cost tiers must be specified either once or for each clause",
+          null, 0, 0, 0, parent, annotation, costAnnotationValue);
+      return null;
+    }
     AnnotationSourceInfo sourceInfo =
         new AnnotationSourceInfo(parent, annotation, lastAnnotationValue,
                                  model.getValues());
@@ -188,6 +206,68 @@ abstract class AbstractTypeBuilder
     return model;
   }
 
+  /**
+   * Sets the cost tiers of the clauses of {@code model} from the
+   * {@code cost} element of its annotation, {@code costValue}. A
+   * single tier applies to all clauses. The tier of an exceptional
+   * postcondition applies to both its exception type and its
+   * predicate. Tiers are estimated if none is given.
+   *
+   * @return {@code false} if there are neither one tier nor as many
+   * tiers as there are clauses
+   */
+  @Requires({
+    "model != null",
+    "costValue != null"
+  })
+  private boolean setCosts(ContractAnnotationModel model,
+                           AnnotationValue costValue) {
+    @SuppressWarnings("unchecked")
+    List<? extends AnnotationValue> costs =
+        (List<? extends AnnotationValue>) costValue.getValue();
+    if (costs.isEmpty()) {
+      estimateCosts(model);
+      return true;
+    }
+
+    int stride = model.getKind() == ElementKind.THROW_ENSURES ? 2 : 1;
+    int count = model.getValues().size();
+    if (costs.size() != 1 && costs.size() != (count + stride - 1) / stride) {
+      return false;
+    }
+    for (int i = 0; i < count; ++i) {
+      AnnotationValue cost = costs.get(costs.size() == 1 ? 0 : i / stride);
+      String name = ((VariableElement) cost.getValue()).getSimpleName()
+          .toString();
+      model.setCost(i, Cost.valueOf(name));
+    }
+    return true;
+  }
+
+  /**
+   * Sets the cost tiers of the clauses of {@code model} to their
+   * estimates. The tier of an exceptional postcondition is estimated
+   * from its predicate.
+   *
+   * @see CostEstimator
+   */
+  @Requires("model != null")
+  private void estimateCosts(ContractAnnotationModel model) {
+    List<String> values = model.getValues();
+    int count = values.size();
+    if (model.getKind() == ElementKind.THROW_ENSURES) {
+      for (int i = 1; i < count; i += 2) {
+        Cost cost = CostEstimator.estimate(values.get(i));
+        model.setCost(i - 1, cost);
+        model.setCost(i, cost);
+      }
+    } else {
+      for (int i = 0; i < count; ++i) {
+        model.setCost(i, CostEstimator.estimate(values.get(i)));
+      }
+    }
+  }
+
   /**
    * Visits an annotation and adds a corresponding node to the
    * specified Element.
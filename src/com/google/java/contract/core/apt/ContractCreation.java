@@ -18,6 +18,7 @@
  */
 package com.google.java.contract.core.apt;
 
+import com.google.java.contract.Cost;
 import com.google.java.contract.Ensures;
 import com.google.java.contract.Requires;
 import com.google.java.contract.core.model.ClassName;
@@ -50,6 +51,9 @@ import java.util.Set;
 public class ContractCreation {
   static final String RAISE_METHOD =
       "com.google.java.contract.core.runtime.ContractRuntime.raise";
+  static final String COST_TIER_METHOD =
+      "com.google.java.contract.core.runtime.ContractRuntime.isCostTierEnabled";
+  static final String COST_TYPE = "com.google.java.contract.Cost";
 
   /**
    * Returns {@code code} with all unqualified or this-qualified
@@ -116,6 +120,7 @@ public class ContractCreation {
     Iterator<String> itCode = trait.getExpressions().iterator();
     Iterator<String> itMsg = trait.getMessages().iterator();
     Iterator<String> itComment = trait.getSourceExpressions().iterator();
+    Iterator<Cost> itCost = trait.getCosts().iterator();
     int successVariableCount = 0;
     int exceptionVariableCount = 0;
     while (itCode.hasNext()) {
@@ -123,6 +128,19 @@ public class ContractCreation {
       String expr = itCode.next();
       String exprMsg = itMsg.next();
       String exprComment = itComment.next();
+      Cost cost = itCost.next();
+
+      /*
+       * Skip the clause if its cost tier is disabled. The test is
+       * resolved when the contract is woven.
+       */
+      buffer.append("if (");
+      buffer.append(COST_TIER_METHOD);
+      buffer.append("(");
+      buffer.append(COST_TYPE);
+      buffer.append(".");
+      buffer.append(cost.name());
+      buffer.append(")) { ");
 
       /*
        * Evaluate predicate. The success variable is first assigned a
@@ -186,6 +204,7 @@ public class ContractCreation {
         buffer.append("));");
       }
       buffer.append("} ");
+      buffer.append("} ");
 
       contract.addStatement(buffer.toString());
     }
@@ -236,6 +255,7 @@ public class ContractCreation {
       case REQUIRES:
         return ContractKind.PRE;
       case ENSURES:
+      case ASYNC_ENSURES:
         return ContractKind.POST;
       case THROW_ENSURES:
         return ContractKind.SIGNAL;
@@ -244,6 +264,22 @@ public class ContractCreation {
     }
   }
 
+  /**
+   * Returns the suffix that distinguishes the names of the helper
+   * methods created for {@code annotation} from those created for
+   * other annotations of the same contract kind.
+   */
+  @Requires("annotation != null")
+  @Ensures("result != null")
+  static String getHelperSuffix(ContractAnnotationModel annotation) {
+    switch (annotation.getKind()) {
+      case ASYNC_ENSURES:
+        return "$async";
+      default:
+        return "";
+    }
+  }
+
   /**
    * Visits the specified trait and creates or augment contract and
    * helper methods as needed.
@@ -344,6 +380,9 @@ public class ContractCreation {
 
     if (annotation.isPrimary()) {
       contract.setSourceInfo(annotation.getSourceInfo());
+      contract.addCosts(annotation.getCosts());
+    } else {
+      contract.setInheriting();
     }
 
     String code = getHelperCallCode(helper, annotation) + ";";
@@ -448,7 +487,8 @@ public class ContractCreation {
   static MethodModel createContractHelper(ContractCreationTrait trait,
                                           ContractAnnotationModel annotation) {
     ContractKind kind = getContractKind(annotation);
-    MethodModel method = createBlankContractHelper(kind, annotation, null);
+    MethodModel method = createBlankContractHelper(kind, annotation,
+                                                   getHelperSuffix(annotation));
 
     TypeName returnType =
         new TypeName(kind.getVariance() == ContractVariance.CONTRAVARIANT
@@ -473,6 +513,7 @@ public class ContractCreation {
       Elements.copyParameters(contract, trait.getExtraParameters());
 
       addContractClauses(contract, trait, annotation);
+      contract.addCosts(trait.getCosts());
       if (kind.getVariance() == ContractVariance.CONTRAVARIANT) {
         contract.setEpilogue("return null;");
       }
@@ -18,6 +18,7 @@
 package com.google.java.contract.core.apt;
 
 import com.google.java.contract.AllowUnusedImport;
+import com.google.java.contract.Cost;
 import com.google.java.contract.Ensures;
 import com.google.java.contract.Requires;
 import com.google.java.contract.core.model.ClassName;
@@ -65,6 +66,13 @@ interface ContractCreationTrait {
   @Ensures("result != null")
   public List<String> getSourceExpressions();
 
+  /**
+   * Returns the list of cost tiers of the expressions returned by
+   * {@link #getExpressions()}.
+   */
+  @Ensures("result != null")
+  public List<Cost> getCosts();
+
   /**
    * Returns the list of extra parameters to add to the end of the
    * contract method parameter list. These parameters are only added
@@ -49,6 +49,8 @@ import java.util.List;
  * <li>Comments are replaced by whitespace.
  * <li>{@code old()} expressions are extracted and replaced with old
  * value variable references. (Optional.)
+ * <li>{@code each()} expressions are replaced with calls that
+ * register element-wise checks on the result. (Optional.)
  * </ul>
  *
  * <p>All generated code is marked up with the appropriate tags, as
@@ -66,7 +68,9 @@ import java.util.List;
   "oldParameters == null || !oldParametersCode.contains(null)",
   "oldParameters == null || oldParameters.size() == oldParametersCode.size()",
   "oldParameters == null " +
-      "|| oldParameters.size() == oldParametersLineNumbers.size()"
+      "|| oldParameters.size() == oldParametersLineNumbers.size()",
+  "oldParameters == null " +
+      "|| oldParameters.size() == oldParametersClauses.size()"
 })
 public class ContractExpressionTransformer {
   private static final String MAGIC_CAST_METHOD =
@@ -83,6 +87,13 @@ public class ContractExpressionTransformer {
    */
   protected boolean acceptOld;
 
+  /**
+   * The name of the runtime method each expressions are replaced
+   * with, which depends on the type of the result. If {@code null},
+   * each constructs are ignored.
+   */
+  protected String eachMethod;
+
   /**
    * The extra parameters needed to hold the extracted old values.
    */
@@ -98,6 +109,12 @@ public class ContractExpressionTransformer {
    */
   protected List<Long> oldParametersLineNumbers;
 
+  /**
+   * The indexes of the clauses the old parameters were extracted
+   * from.
+   */
+  protected List<Integer> oldParametersClauses;
+
   /**
    * The processed code, free of {@code old()} expressions.
    */
@@ -124,9 +141,11 @@ public class ContractExpressionTransformer {
                                        boolean acceptOld) {
     this.diagnosticManager = diagnosticManager;
     this.acceptOld = acceptOld;
+    eachMethod = null;
     oldParameters = null;
     oldParametersCode = null;
     oldParametersLineNumbers = null;
+    oldParametersClauses = null;
     newCode = null;
     parsed = false;
     oldId = 0;
@@ -136,6 +155,10 @@ public class ContractExpressionTransformer {
     this.acceptOld = acceptOld;
   }
 
+  public void setEachMethod(String eachMethod) {
+    this.eachMethod = eachMethod;
+  }
+
   @Requires({
     "currentBuffer != null",
     "tokenizer != null",
@@ -180,14 +203,17 @@ public class ContractExpressionTransformer {
     oldParameters = new ArrayList<VariableModel>();
     oldParametersCode = new ArrayList<String>();
     oldParametersLineNumbers = new ArrayList<Long>();
+    oldParametersClauses = new ArrayList<Integer>();
     newCode = new ArrayList<String>();
     parsed = true;
 
     Iterator<Long> iterLineNumber = lineNumbers.iterator();
+    int clause = -1;
 
    code:
     for (String expr : code) {
       Long lineNumber = iterLineNumber.hasNext() ? iterLineNumber.next() : null;
+      ++clause;
 
       BalancedTokenizer tokenizer =
           new BalancedTokenizer(new StringReader(expr));
@@ -200,6 +226,8 @@ public class ContractExpressionTransformer {
       String oldName = null;
       int oldContext = -1;
 
+      int eachContext = -1;
+
       while (tokenizer.hasNext()) {
         Token token = tokenizer.next();
         newLevel = tokenizer.getCurrentLevel();
@@ -225,6 +253,7 @@ public class ContractExpressionTransformer {
                                   new ClassName("java/lang/Object")));
             oldParametersCode.add(oldExpr);
             oldParametersLineNumbers.add(lineNumber);
+            oldParametersClauses.add(clause);
 
             /* Pad buffer (for error reporting purposes). */
             buffer.append("(   ");
@@ -264,9 +293,68 @@ public class ContractExpressionTransformer {
                 transformCommon(oldBuffer, tokenizer, token);
             }
           }
+        } else if (eachContext != -1 && newLevel == eachContext) {
+          /* End of each expression; pass the clause as message. */
+          buffer.append(JavaUtils.BEGIN_GENERATED_CODE);
+          buffer.append(", \"");
+          buffer.append(ContractWriter.quoteString(expr));
+          buffer.append("\"");
+          buffer.append(JavaUtils.END_GENERATED_CODE);
+          buffer.append(token.text);
+
+          /* Exit each context. */
+          eachContext = -1;
         } else {
           switch (token.kind) {
             case WORD:
+              if (eachMethod != null && token.text.equals("each")) {
+                /* Start of each expression. */
+                if (eachContext != -1) {
+                  diagnosticManager.error("nested each expression",
+                      expr, token.offset, token.offset, token.offset,
+                      sourceInfo);
+                  parsed = false;
+                  continue code;
+                }
+                Token afterEach = null;
+                if (!tokenizer.hasNext()
+                    || !((afterEach = tokenizer.next()).text.equals("(")
+                         || (afterEach.kind == TokenKind.SPACE
+                             && tokenizer.hasNext()
+                             && tokenizer.next().text.equals("(")))) {
+                  int errorPos = afterEach != null ? afterEach.offset
+                      : tokenizer.getCurrentOffset();
+                  diagnosticManager.error("'(' expected",
+                      expr, errorPos, errorPos, errorPos,
+                      sourceInfo);
+                  parsed = false;
+                  continue code;
+                }
+
+                /*
+                 * Replace the each keyword with a call that registers
+                 * the element-wise predicate on the result.
+                 */
+                buffer.append(JavaUtils.BEGIN_GENERATED_CODE);
+                buffer.append(eachMethod);
+                buffer.append(JavaUtils.END_GENERATED_CODE);
+
+                /* Pad buffer (for error reporting purposes). */
+                buffer.append("    ");
+                if (afterEach.kind == TokenKind.SPACE) {
+                  buffer.append(afterEach.text);
+                }
+                buffer.append("(");
+
+                buffer.append(JavaUtils.BEGIN_GENERATED_CODE);
+                buffer.append(JavaUtils.RESULT_VARIABLE);
+                buffer.append(", ");
+                buffer.append(JavaUtils.END_GENERATED_CODE);
+
+                /* Enter each context. */
+                eachContext = currentLevel;
+                break;
+              }
               if (acceptOld && token.text.equals("old")) {
                 /* Start of old expression. */
                 Token afterOld = null;
@@ -361,6 +449,15 @@ public class ContractExpressionTransformer {
     return oldParametersLineNumbers;
   }
 
+  @Requires("canQueryResults()")
+  @Ensures({
+    "result != null",
+    "result.size() == getOldParameters().size()"
+  })
+  public List<Integer> getOldParametersClauses() {
+    return oldParametersClauses;
+  }
+
   @Requires("canQueryResults()")
   @Ensures("result != null")
   public List<String> getTransformedCode() {
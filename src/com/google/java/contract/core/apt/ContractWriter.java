@@ -19,6 +19,7 @@
 package com.google.java.contract.core.apt;
 
 import com.google.java.contract.AllowUnusedImport;
+import com.google.java.contract.Cost;
 import com.google.java.contract.Ensures;
 import com.google.java.contract.Invariant;
 import com.google.java.contract.Requires;
@@ -72,6 +73,8 @@ public class ContractWriter extends ElementScanner {
       "com.google.java.contract.core.agent.ContractMethodSignature";
   private static final String CONTRACT_KIND =
       "com.google.java.contract.core.model.ContractKind";
+  private static final String COST =
+      "com.google.java.contract.Cost";
 
   private static final Pattern VARIADIC_REGEX =
       Pattern.compile("\\[\\p{javaWhitespace}*\\]\\p{javaWhitespace}*$");
@@ -356,6 +359,22 @@ public class ContractWriter extends ElementScanner {
       append(" }");
     }
 
+    Set<Cost> costs = contract.getCosts();
+    if (!costs.isEmpty()) {
+      append(", costs = { ");
+      Iterator<Cost> it = costs.iterator();
+      for (;;) {
+        append(COST);
+        append(".");
+        append(it.next().name());
+        if (!it.hasNext()) {
+          break;
+        }
+        append(", ");
+      }
+      append(" }");
+    }
+
     append(")");
     appendEndOfLine();
   }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.apt;
+
+import com.google.java.contract.Cost;
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.util.JavaTokenizer;
+import com.google.java.contract.core.util.JavaTokenizer.Token;
+import com.google.java.contract.core.util.JavaTokenizer.TokenKind;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Estimates the cost tier of contract clauses from their source
+ * code, for clauses that are not given one explicitly.
+ *
+ * <p>Clauses fall into one of four cost classes, mapped to tiers as
+ * follows:
+ *
+ * <ul>
+ * <li>constants, and field, argument and array accesses:
+ * {@link Cost#CHEAP};
+ * <li>method calls and allocations: {@link Cost#NORMAL};
+ * <li>loops over collections, streams and quantifiers:
+ * {@link Cost#EXPENSIVE}.
+ * </ul>
+ *
+ * <p>The estimate is syntactic: it only relies on the tokens of the
+ * clause, so calls to methods that scan collections under names not
+ * listed here are classified as plain method calls.
+ */
+class CostEstimator {
+  /**
+   * Methods that iterate over their receiver or arguments.
+   */
+  private static final Set<String> LOOP_METHODS =
+      new HashSet<String>(Arrays.asList(
+          "all",
+          "allCached",
+          "allMatch",
+          "any",
+          "anyCached",
+          "anyMatch",
+          "containsAll",
+          "containsValue",
+          "each",
+          "exists",
+          "existsLong",
+          "forAll",
+          "forAllLong",
+          "forEach",
+          "noneMatch",
+          "parallelStream",
+          "stream"));
+
+  /**
+   * Classes whose static methods are quantifiers.
+   */
+  private static final Set<String> LOOP_CLASSES =
+      new HashSet<String>(Arrays.asList(
+          "Iterables",
+          "Predicates",
+          "Quantifiers"));
+
+  private CostEstimator() {
+  }
+
+  /**
+   * Returns the estimated cost tier of contract clause {@code expr}.
+   */
+  @Requires("expr != null")
+  @Ensures("result != null")
+  static Cost estimate(String expr) {
+    List<Token> tokens = new ArrayList<Token>();
+    JavaTokenizer tokenizer = new JavaTokenizer(new StringReader(expr));
+    while (tokenizer.hasNext()) {
+      Token token = tokenizer.next();
+      if (token.kind != TokenKind.SPACE && token.kind != TokenKind.COMMENT) {
+        tokens.add(token);
+      }
+    }
+
+    Cost cost = Cost.CHEAP;
+    int size = tokens.size();
+    for (int i = 0; i < size; ++i) {
+      Token token = tokens.get(i);
+      Token next = i + 1 < size ? tokens.get(i + 1) : null;
+      switch (token.kind) {
+        case WORD:
+          if (LOOP_CLASSES.contains(token.text)) {
+            return Cost.EXPENSIVE;
+          }
+          if (token.text.equals("new")) {
+            cost = Cost.NORMAL;
+          } else if (next != null && next.text.equals("(")
+                     && !token.text.equals("old")) {
+            if (LOOP_METHODS.contains(token.text)) {
+              return Cost.EXPENSIVE;
+            }
+            cost = Cost.NORMAL;
+          }
+          break;
+        case SYMBOL:
+          /* Lambda arrows and method references. */
+          if (next != null && next.offset == token.offset + 1
+              && ((token.text.equals("-") && next.text.equals(">"))
+                  || (token.text.equals(":") && next.text.equals(":")))) {
+            return Cost.EXPENSIVE;
+          }
+          break;
+        default:
+          break;
+      }
+    }
+    return cost;
+  }
+}
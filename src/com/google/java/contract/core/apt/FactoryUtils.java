@@ -154,6 +154,8 @@ class FactoryUtils {
       kind = ElementKind.ENSURES;
     } else if (annotationName.equals("com.google.java.contract.ThrowEnsures")) {
       kind = ElementKind.THROW_ENSURES;
+    } else if (annotationName.equals("com.google.java.contract.AsyncEnsures")) {
+      kind = ElementKind.ASYNC_ENSURES;
     } else {
       kind = null;
     }
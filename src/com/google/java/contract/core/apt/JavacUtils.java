@@ -73,9 +73,17 @@ class JavacUtils {
     SourcePositions positions = treeUtils.getSourcePositions();
 
     AnnotationTree annotationTree = (AnnotationTree) path.getLeaf();
-    AssignmentTree assignTree =
-        (AssignmentTree) annotationTree.getArguments().get(0);
-    ExpressionTree exprTree = assignTree.getExpression();
+    ExpressionTree exprTree = null;
+    for (ExpressionTree argTree : annotationTree.getArguments()) {
+      AssignmentTree assignTree = (AssignmentTree) argTree;
+      if (assignTree.getVariable().toString().equals("value")) {
+        exprTree = assignTree.getExpression();
+        break;
+      }
+    }
+    if (exprTree == null) {
+      return Collections.emptyList();
+    }
 
     ArrayList<Long> lines = new ArrayList<Long>();
     if (exprTree.getKind() == Kind.STRING_LITERAL) {
@@ -20,6 +20,7 @@ package com.google.java.contract.core.apt;
 
 import static com.google.java.contract.core.apt.ContractCreation.createContractMethods;
 
+import com.google.java.contract.Cost;
 import com.google.java.contract.Ensures;
 import com.google.java.contract.Invariant;
 import com.google.java.contract.Requires;
@@ -34,9 +35,14 @@ import com.google.java.contract.core.model.TypeModel;
 import com.google.java.contract.core.model.TypeName;
 import com.google.java.contract.core.model.VariableModel;
 import com.google.java.contract.core.util.ElementScanner;
+import com.google.java.contract.core.util.JavaTokenizer.Token;
+import com.google.java.contract.core.util.JavaTokenizer.TokenKind;
 import com.google.java.contract.core.util.JavaUtils;
+import com.google.java.contract.core.util.PushbackTokenizer;
 
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -53,6 +59,23 @@ import java.util.NoSuchElementException;
   "transformer != null"
 })
 public class MethodContractCreator extends ElementScanner {
+  private static final String COMPLETABLE_FUTURE_TYPE =
+      "java.util.concurrent.CompletableFuture";
+
+  private static final String WHEN_COMPLETED_METHOD =
+      "com.google.java.contract.core.runtime.AsyncContractRuntime.whenCompleted";
+
+  private static final String STREAM_TYPE = "java.util.stream.Stream";
+
+  private static final List<String> ELEMENT_CHECKED_TYPES =
+      Arrays.asList(STREAM_TYPE, "java.lang.Iterable", "java.util.Iterator");
+
+  private static final String EACH_METHOD =
+      "com.google.java.contract.core.runtime.ContractRuntime.each";
+
+  private static final String STREAM_EACH_METHOD =
+      "com.google.java.contract.core.runtime.StreamContractRuntime.each";
+
   /**
    * Creation trait for preconditions.
    */
@@ -68,6 +91,7 @@ public class MethodContractCreator extends ElementScanner {
     public boolean transform(List<String> code, List<Long> lineNumbers,
                              Object sourceInfo) {
       transformer.setAcceptOld(false);
+      transformer.setEachMethod(null);
       return super.transform(code, lineNumbers, sourceInfo);
     }
 
@@ -94,6 +118,7 @@ public class MethodContractCreator extends ElementScanner {
                               Object sourceInfo) {
       int id = transformer.getNextOldId();
       transformer.setAcceptOld(true);
+      transformer.setEachMethod(getEachMethod());
       boolean success = super.transform(code, lineNumbers, sourceInfo);
 
       if (success) {
@@ -103,15 +128,28 @@ public class MethodContractCreator extends ElementScanner {
             transformer.getOldParametersCode().iterator();
         Iterator<Long> iterLineNumber =
             transformer.getOldParametersLineNumbers().iterator();
+        Iterator<Integer> iterClause =
+            transformer.getOldParametersClauses().iterator();
+        List<Cost> costs = getCosts();
         int pos = 0;
         while (iterCode.hasNext()) {
           createOldMethods(oldKind, pos++, id++, iterCode.next(), annotation,
-                           iterLineNumber.next());
+                           iterLineNumber.next(),
+                           costs.get(iterClause.next()));
         }
       }
       return success;
     }
 
+    /**
+     * Returns the name of the runtime method element-wise
+     * {@code each()} expressions are replaced with in these
+     * postconditions, or {@code null} if they are not allowed.
+     */
+    protected String getEachMethod() {
+      return null;
+    }
+
     @Override
     public List<? extends VariableModel> getExtraParameters() {
       return transformer.getOldParameters();
@@ -134,6 +172,27 @@ public class MethodContractCreator extends ElementScanner {
       super(transformer);
     }
 
+    /**
+     * Element-wise postconditions are only allowed on methods that
+     * return a stream, iterable or iterator, which can be wrapped so
+     * that elements are checked as they are consumed. Streams are
+     * handled by a separate runtime class, so that other contracts do
+     * not depend on them.
+     */
+    @Override
+    protected String getEachMethod() {
+      TypeName returnType = annotation.getReturnType();
+      if (returnType == null
+          || !ELEMENT_CHECKED_TYPES.contains(returnType.getDeclaredName())) {
+        return null;
+      }
+      if (returnType.getDeclaredName().equals(STREAM_TYPE)) {
+        return STREAM_EACH_METHOD;
+      } else {
+        return EACH_METHOD;
+      }
+    }
+
     @Override
     public List<? extends VariableModel> getInitialParameters() {
       if (method.isConstructor()
@@ -164,6 +223,7 @@ public class MethodContractCreator extends ElementScanner {
       extends CommonPostMethodCreationTrait {
     protected List<String> messages;
     protected List<String> sourceCode;
+    protected List<Cost> costs;
 
     @Requires("transformer != null")
     public PostSignalMethodCreationTrait(
@@ -182,9 +242,11 @@ public class MethodContractCreator extends ElementScanner {
       ArrayList<String> msg = new ArrayList<String>(n);
       ArrayList<String> src = new ArrayList<String>(n);
       ArrayList<Long> lines = new ArrayList<Long>(n);
+      ArrayList<Cost> tiers = new ArrayList<Cost>(n);
 
       Iterator<String> it = assocs.iterator();
       Iterator<Long> itLineNumber = annotation.getLineNumbers().iterator();
+      Iterator<Cost> itCost = annotation.getCosts().iterator();
       try {
         while (it.hasNext()) {
           String exceptionType = it.next();
@@ -200,6 +262,8 @@ public class MethodContractCreator extends ElementScanner {
            */
           itLineNumber.next();
           lines.add(itLineNumber.next());
+          itCost.next();
+          tiers.add(itCost.next());
         }
       } catch (NoSuchElementException e) {
         diagnosticManager.warning(
@@ -210,6 +274,7 @@ public class MethodContractCreator extends ElementScanner {
             annotation.getSourceInfo());
       }
 
+      costs = tiers;
       if (!transform(code, lines, annotation.getSourceInfo())) {
         return false;
       }
@@ -233,6 +298,55 @@ public class MethodContractCreator extends ElementScanner {
     public List<String> getSourceExpressions() {
       return sourceCode;
     }
+
+    @Override
+    public List<Cost> getCosts() {
+      return costs;
+    }
+  }
+
+  /**
+   * Creation trait for postconditions on the completion value of a
+   * returned future. Each clause is turned into a postcondition that
+   * registers a check of the original clause, with {@code result}
+   * rebound to the completion value, and always succeeds.
+   */
+  protected class AsyncPostMethodCreationTrait
+      extends PostMethodCreationTrait {
+    @Requires("transformer != null")
+    public AsyncPostMethodCreationTrait(
+        ContractExpressionTransformer transformer) {
+      super(transformer);
+    }
+
+    @Override
+    public boolean visit(ContractAnnotationModel annotation) {
+      this.annotation = annotation;
+
+      List<String> values = annotation.getValues();
+      TypeName returnType = annotation.getReturnType();
+      if (returnType == null
+          || !returnType.getDeclaredName().equals(COMPLETABLE_FUTURE_TYPE)) {
+        if (annotation.isPrimary()) {
+          diagnosticManager.error(
+              "'com.google.java.contract.AsyncEnsures' requires a method "
+              + "returning '" + COMPLETABLE_FUTURE_TYPE + "'",
+              values.get(0), 0, 0, 0, annotation.getSourceInfo());
+        }
+        return false;
+      }
+
+      ArrayList<String> code = new ArrayList<String>(values.size());
+      for (String expr : values) {
+        code.add(WHEN_COMPLETED_METHOD + "(" + JavaUtils.RESULT_VARIABLE
+                 + ", (" + JavaUtils.COMPLETED_VARIABLE + ") -> ("
+                 + rebaseResult(expr) + "), \""
+                 + ContractWriter.quoteString(expr) + "\")");
+      }
+
+      return transform(code, annotation.getLineNumbers(),
+                       annotation.getSourceInfo());
+    }
   }
 
   protected DiagnosticManager diagnosticManager;
@@ -281,6 +395,10 @@ public class MethodContractCreator extends ElementScanner {
           new PostSignalMethodCreationTrait(transformer);
       postSignalMethod = createContractMethods(trait, postSignalMethod,
                                                annotation);
+    } else if (annotation.getKind().equals(ElementKind.ASYNC_ENSURES)) {
+      AsyncPostMethodCreationTrait trait =
+          new AsyncPostMethodCreationTrait(transformer);
+      postMethod = createContractMethods(trait, postMethod, annotation);
     } else {
       throw new IllegalArgumentException();
     }
@@ -305,6 +423,30 @@ public class MethodContractCreator extends ElementScanner {
     return var;
   }
 
+  /**
+   * Returns {@code code} with all unqualified occurrences of the
+   * {@code result} keyword replaced with the completion value
+   * variable.
+   */
+  @Requires("code != null")
+  @Ensures("result != null")
+  private static String rebaseResult(String code) {
+    StringBuilder buffer = new StringBuilder();
+    PushbackTokenizer tokenizer = new PushbackTokenizer(new StringReader(code));
+    boolean qualified = false;
+    while (tokenizer.hasNext()) {
+      Token token = tokenizer.next();
+      if (!qualified && token.kind == TokenKind.WORD
+          && token.text.equals(JavaUtils.RESULT_VARIABLE)) {
+        buffer.append(JavaUtils.COMPLETED_VARIABLE);
+      } else {
+        buffer.append(token.text);
+      }
+      qualified = token.text.equals(".");
+    }
+    return buffer.toString();
+  }
+
   /**
    * Creates contract and helper methods according to the parameters,
    * and adds it to the parent type.
@@ -316,6 +458,7 @@ public class MethodContractCreator extends ElementScanner {
    * @param expr the expression computing the old value
    * @param annotation the annotation value from which this contract
    * is created
+   * @param cost the cost tier of the clause {@code expr} belongs to
    */
   @Requires({
     "kind != null",
@@ -325,14 +468,16 @@ public class MethodContractCreator extends ElementScanner {
     "expr != null",
     "annotation != null",
     "kind.isOld()",
-    "lineNumber == null || lineNumber >= 1"
+    "lineNumber == null || lineNumber >= 1",
+    "cost != null"
   })
   private void createOldMethods(ContractKind kind,
       int pos, int id, String expr, ContractAnnotationModel annotation,
-      Long lineNumber) {
+      Long lineNumber, Cost cost) {
     MethodModel helper =
         ContractCreation.createBlankContractHelper(kind, annotation,
-                                                   "$" + Integer.toString(pos));
+            ContractCreation.getHelperSuffix(annotation)
+            + "$" + Integer.toString(pos));
     helper.setReturnType(new ClassName("java/lang/Object"));
 
     if (helper.getKind() == ElementKind.CONTRACT_METHOD) {
@@ -346,12 +491,14 @@ public class MethodContractCreator extends ElementScanner {
             .rebaseLocalCalls(expr, JavaUtils.THAT_VARIABLE, null);
       }
       helperContract.addStatement("return " + code + ";");
+      helperContract.addCosts(Collections.singleton(cost));
     }
 
     ContractMethodModel contract =
         ContractCreation.createBlankContractMethod(kind, annotation, "$" + id);
     contract.setReturnType(new ClassName("java/lang/Object"));
     contract.setId(id);
+    contract.addCosts(Collections.singleton(cost));
 
     contract.addStatement("return "
         + ContractCreation.getHelperCallCode(helper, annotation) + ";");
@@ -17,6 +17,7 @@
  */
 package com.google.java.contract.core.apt;
 
+import com.google.java.contract.Cost;
 import com.google.java.contract.core.model.ContractAnnotationModel;
 import com.google.java.contract.core.model.VariableModel;
 
@@ -53,6 +54,11 @@ class SimpleContractCreationTrait implements ContractCreationTrait {
     return annotation.getValues();
   }
 
+  @Override
+  public List<Cost> getCosts() {
+    return annotation.getCosts();
+  }
+
   @Override
   public List<? extends VariableModel> getInitialParameters() {
     return Collections.emptyList();
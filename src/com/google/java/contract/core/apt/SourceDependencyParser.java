@@ -83,7 +83,8 @@ public class SourceDependencyParser {
   private static final List<String> TYPE_KEYWORDS =
       Arrays.asList("class", "enum", "interface");
   private static final List<String> CONTRACT_TYPES =
-      Arrays.asList("Requires", "Ensures", "ThrowEnsures", "Invariant");
+      Arrays.asList("Requires", "Ensures", "ThrowEnsures", "AsyncEnsures",
+                    "Invariant");
 
   /**
    * Constructs a new SourceDependencyParser.
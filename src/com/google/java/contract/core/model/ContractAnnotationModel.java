@@ -19,6 +19,7 @@
 package com.google.java.contract.core.model;
 
 import com.google.java.contract.AllowUnusedImport;
+import com.google.java.contract.Cost;
 import com.google.java.contract.Ensures;
 import com.google.java.contract.Invariant;
 import com.google.java.contract.Requires;
@@ -42,6 +43,9 @@ import java.util.List;
   "Iterables.all(getLineNumbers(), " +
       "Predicates.or(Predicates.isNull(), Predicates.between(1L, null)))",
   "getValues().size() == getLineNumbers().size()",
+  "getCosts() != null",
+  "!getCosts().contains(null)",
+  "getValues().size() == getCosts().size()",
   "getOwner() != null"
 })
 public class ContractAnnotationModel extends ElementModel {
@@ -91,6 +95,11 @@ public class ContractAnnotationModel extends ElementModel {
    */
   protected List<Long> lineNumbers;
 
+  /**
+   * The cost tiers associated with the values of this expression.
+   */
+  protected List<Cost> costs;
+
   /**
    * Constructs a new ContractAnnotationModel.
    *
@@ -120,6 +129,7 @@ public class ContractAnnotationModel extends ElementModel {
     this.returnType = returnType;
     values = new ArrayList<String>();
     lineNumbers = new ArrayList<Long>();
+    costs = new ArrayList<Cost>();
   }
 
   /**
@@ -137,6 +147,7 @@ public class ContractAnnotationModel extends ElementModel {
     returnType = that.returnType;
     values = new ArrayList<String>(that.values);
     lineNumbers = new ArrayList<Long>(that.lineNumbers);
+    costs = new ArrayList<Cost>(that.costs);
   }
 
   @Override
@@ -176,13 +187,19 @@ public class ContractAnnotationModel extends ElementModel {
     return Collections.unmodifiableList(lineNumbers);
   }
 
+  public List<Cost> getCosts() {
+    return Collections.unmodifiableList(costs);
+  }
+
   @Ensures({
     "getValues().isEmpty()",
-    "getLineNumbers().isEmpty()"
+    "getLineNumbers().isEmpty()",
+    "getCosts().isEmpty()"
   })
   public void clearValues() {
     values.clear();
     lineNumbers.clear();
+    costs.clear();
   }
 
   @Requires("value != null")
@@ -195,6 +212,20 @@ public class ContractAnnotationModel extends ElementModel {
   public void addValue(String value, Long lineNumber) {
     values.add(value.replace('\r', ' ').replace('\n', ' '));
     lineNumbers.add(lineNumber);
+    costs.add(Cost.NORMAL);
+  }
+
+  /**
+   * Sets the cost tier of the value at index {@code index}.
+   */
+  @Requires({
+    "index >= 0",
+    "index < getValues().size()",
+    "cost != null"
+  })
+  @Ensures("getCosts().get(index) == cost")
+  public void setCost(int index, Cost cost) {
+    costs.set(index, cost);
   }
 
   /**
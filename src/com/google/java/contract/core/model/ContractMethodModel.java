@@ -18,15 +18,18 @@
  */
 package com.google.java.contract.core.model;
 
+import com.google.java.contract.Cost;
 import com.google.java.contract.Ensures;
 import com.google.java.contract.Invariant;
 import com.google.java.contract.Requires;
 import com.google.java.contract.core.util.Elements;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A model element representing a contract method. Contrary to other
@@ -37,6 +40,7 @@ import java.util.List;
   "getContractKind() != null",
   "getId() >= -1",
   "getStatements() != null",
+  "getCosts() != null",
   "!getStatements().contains(null)",
   "!getContractKind().isClassContract() || getContractedMethod() == null",
   "!getContractKind().isMethodContract() || getContractedMethod() != null"
@@ -82,6 +86,18 @@ public class ContractMethodModel extends MethodModel {
    */
   protected List<Long> lineNumbers;
 
+  /**
+   * The cost tiers of the clauses this contract method evaluates,
+   * directly or through helper contract methods.
+   */
+  protected EnumSet<Cost> costs;
+
+  /**
+   * Whether this contract method calls inherited helper methods,
+   * which resolve their own cost tiers, so that its own are unknown.
+   */
+  protected boolean inheriting;
+
   /**
    * Constructs a new ContractMethodModel.
    *
@@ -116,6 +132,8 @@ public class ContractMethodModel extends MethodModel {
 
     contractedMethod = contracted;
     lineNumbers = null;
+    costs = EnumSet.noneOf(Cost.class);
+    inheriting = false;
   }
 
   /**
@@ -136,6 +154,7 @@ public class ContractMethodModel extends MethodModel {
 
     contractedMethod = that.contractedMethod;
     lineNumbers = that.lineNumbers;
+    costs = EnumSet.copyOf(that.costs);
   }
 
   @Override
@@ -177,6 +196,32 @@ public class ContractMethodModel extends MethodModel {
     this.lineNumbers = lineNumbers;
   }
 
+  /**
+   * Returns the cost tiers of the clauses of this contract method, or
+   * an empty set if unknown.
+   */
+  public Set<Cost> getCosts() {
+    if (inheriting) {
+      return Collections.emptySet();
+    }
+    return Collections.unmodifiableSet(costs);
+  }
+
+  @Requires("costs != null")
+  @Ensures("isInheriting() || getCosts().containsAll(costs)")
+  public void addCosts(Collection<Cost> costs) {
+    this.costs.addAll(costs);
+  }
+
+  public boolean isInheriting() {
+    return inheriting;
+  }
+
+  @Ensures("isInheriting()")
+  public void setInheriting() {
+    inheriting = true;
+  }
+
   @Ensures("result != null")
   public String getCode() {
     StringBuilder buffer = new StringBuilder();
@@ -97,6 +97,11 @@ public enum ElementKind {
    */
   THROW_ENSURES,
 
+  /**
+   * An @AsyncEnsures annotation. Source-only, not present in output.
+   */
+  ASYNC_ENSURES,
+
   /*
    * Output elements.
    */
@@ -164,6 +169,7 @@ public enum ElementKind {
       case REQUIRES:
       case ENSURES:
       case THROW_ENSURES:
+      case ASYNC_ENSURES:
       case CONTRACT_SIGNATURE:
         return true;
       default:
@@ -187,6 +193,7 @@ public enum ElementKind {
       case REQUIRES:
       case ENSURES:
       case THROW_ENSURES:
+      case ASYNC_ENSURES:
         return true;
       default:
         return false;
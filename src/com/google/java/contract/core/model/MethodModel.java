@@ -185,7 +185,8 @@ public class MethodModel extends GenericElementModel {
         EnumSet.of(ElementKind.PARAMETER,
                    ElementKind.REQUIRES,
                    ElementKind.ENSURES,
-                   ElementKind.THROW_ENSURES);
+                   ElementKind.THROW_ENSURES,
+                   ElementKind.ASYNC_ENSURES);
     allowed.addAll(super.getAllowedEnclosedKinds());
     return allowed;
   }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.runtime;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * Utility methods for use in the contract code of methods that
+ * return a {@link CompletableFuture}. These are kept apart from
+ * {@link ContractRuntime} so that classes without asynchronous
+ * postconditions run on Java versions that lack futures.
+ */
+public class AsyncContractRuntime {
+  /**
+   * The action run on completion of a future returned by a method
+   * with asynchronous postconditions.
+   */
+  private static class CompletionChecker<T>
+      implements BiConsumer<T, Throwable> {
+    private final List<Object> checks;
+
+    CompletionChecker(List<Object> checks) {
+      this.checks = checks;
+    }
+
+    @Override
+    public void accept(T value, Throwable exception) {
+      if (exception == null) {
+        ContractRuntime.runChecks(checks, value);
+      }
+    }
+  }
+
+  /**
+   * Registers {@code condition} as a postcondition on the value
+   * {@code future} completes with. Called from the contract code of
+   * {@link com.google.java.contract.AsyncEnsures} annotations, while
+   * postconditions are evaluated; the check is only attached to the
+   * future by {@link #attachCompletionChecks(CompletableFuture)}.
+   *
+   * @param future the future returned by the contracted method
+   * @param condition the postcondition to check
+   * @param message the postcondition source, used as error message
+   * @return {@code true}
+   */
+  public static <T> boolean whenCompleted(CompletableFuture<T> future,
+      ContractRuntime.Condition<? super T> condition, String message) {
+    ContractRuntime.addResultCheck(future, condition, message);
+    return true;
+  }
+
+  /**
+   * Attaches the checks registered for {@code future} by
+   * {@link #whenCompleted(CompletableFuture,ContractRuntime.Condition,String)}
+   * and returns the resulting dependent future, or {@code future}
+   * itself if there are none. Called on exit from methods that return
+   * a future, after their postconditions.
+   */
+  public static <T> CompletableFuture<T> attachCompletionChecks(
+      CompletableFuture<T> future) {
+    List<Object> checks =
+        ContractRuntime.getContext().takeResultChecks(future);
+    if (checks == null) {
+      return future;
+    }
+    return future.whenComplete(new CompletionChecker<T>(checks));
+  }
+}
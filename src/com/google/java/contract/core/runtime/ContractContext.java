@@ -19,7 +19,10 @@
  */
 package com.google.java.contract.core.runtime;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.IdentityHashMap;
+import java.util.List;
 
 /**
  * A helper to evaluate and enable method specifications. At runtime
@@ -30,7 +33,10 @@ import java.util.IdentityHashMap;
  *
  * <ul>
  * <li>Disabling contract checking inside of contracts.
+ * <li>Enabling and disabling contract checking in activation scopes.
  * <li>Storage for failed predicate information.
+ * <li>Recording objects whose invariant checks are deferred.
+ * <li>Recording checks to attach to a returned value.
  * </ul>
  *
  * @author nhat.minh.le@huoc.org (Nhat Minh Lê)
@@ -42,6 +48,12 @@ public class ContractContext {
    */
   private static final int ENTERED_DEFAULT_SIZE = 100;
 
+  /**
+   * Whether contracts are checked outside of activation scopes.
+   */
+  static final boolean ACTIVE_BY_DEFAULT =
+      !Boolean.getBoolean("com.google.java.contract.scoped");
+
   static ThreadLocal<ContractContext> context =
       new ThreadLocal<ContractContext>() {
     @Override
@@ -53,8 +65,39 @@ public class ContractContext {
   protected boolean busy;
   protected IdentityHashMap<Object, Void> entered;
 
+  /*
+   * Whether contract checking is disabled by the innermost activation
+   * scope; busy rests at this value outside of contract evaluation,
+   * so that woven code only tests busy. The enclosing scopes are
+   * saved in scopes, up to scopeDepth.
+   */
+  protected boolean suppressed;
+  protected boolean[] scopes;
+  protected int scopeDepth;
+
+  /*
+   * The nesting depth of invariant deferral scopes, and the objects
+   * whose invariant checks have been deferred, in order, while it is
+   * not zero. Each object in deferredList is followed by the class
+   * whose invariants are to be checked on it; deferred maps each
+   * object to the classes recorded for it so far.
+   */
+  protected int deferralDepth;
+  protected IdentityHashMap<Object, ArrayList<Class<?>>> deferred;
+  protected ArrayList<Object> deferredList;
+
+  /*
+   * The value returned by the method whose postconditions are being
+   * evaluated, and the checks to run later on its completion value or
+   * elements.
+   */
+  protected Object checkedResult;
+  protected ArrayList<Object> resultChecks;
+
   protected ContractContext() {
     entered = new IdentityHashMap<Object, Void>(ENTERED_DEFAULT_SIZE);
+    suppressed = !ACTIVE_BY_DEFAULT;
+    busy = suppressed;
   }
 
   /**
@@ -73,10 +116,57 @@ public class ContractContext {
   }
 
   /**
-   * Marks the start of a contract evaluation block.
+   * Marks the end of a contract evaluation block.
    */
   public void leaveContract() {
-    busy = false;
+    busy = suppressed;
+  }
+
+  /**
+   * Opens an activation scope, in which contracts are checked if
+   * {@code enabled} is {@code true}, and not checked otherwise, until
+   * the matching call to {@link #popActivation()}.
+   */
+  public void pushActivation(boolean enabled) {
+    if (scopes == null) {
+      scopes = new boolean[8];
+    } else if (scopeDepth == scopes.length) {
+      scopes = Arrays.copyOf(scopes, scopeDepth * 2);
+    }
+    scopes[scopeDepth++] = suppressed;
+    setSuppressed(!enabled);
+  }
+
+  /**
+   * Closes the innermost activation scope.
+   *
+   * @throws IllegalStateException if no scope is open
+   */
+  public void popActivation() {
+    if (scopeDepth == 0) {
+      throw new IllegalStateException("no activation scope to close");
+    }
+    setSuppressed(scopes[--scopeDepth]);
+  }
+
+  /**
+   * Returns {@code true} if contracts are checked in the innermost
+   * activation scope, or by default if none is open.
+   */
+  public boolean isActive() {
+    return !suppressed;
+  }
+
+  /**
+   * Sets the resting busy state to {@code suppressed}, and applies it
+   * now unless contracts are being evaluated.
+   */
+  private void setSuppressed(boolean suppressed) {
+    boolean evaluating = busy && !this.suppressed;
+    this.suppressed = suppressed;
+    if (!evaluating) {
+      busy = suppressed;
+    }
   }
 
   /**
@@ -84,10 +174,28 @@ public class ContractContext {
    * method call. If it returns {@code true}, {@link #leave(Object)}
    * must be called on method exit.
    *
+   * <p>Inside an invariant deferral scope, it returns {@code false}
+   * and records {@code obj} to be checked against the invariants of
+   * {@code invariantClass} when the scope closes, unless
+   * {@code invariantClass} is {@code null}, which denotes a method
+   * woven without invariants.
+   *
+   * @param obj the receiver, or the class of a static method
+   * @param invariantClass the class whose invariants the method
+   * checks, or {@code null}
    * @return {@code true} if invariants should be evaluated,
    * {@code false} otherwise
    */
-  public boolean tryEnter(Object obj) {
+  public boolean tryEnter(Object obj, Class<?> invariantClass) {
+    if (suppressed) {
+      return false;
+    }
+    if (deferralDepth != 0) {
+      if (invariantClass != null) {
+        defer(obj, invariantClass);
+      }
+      return false;
+    }
     if (entered.containsKey(obj)) {
       return false;
     } else {
@@ -97,7 +205,24 @@ public class ContractContext {
   }
 
   /**
-   * Must be called if and only if {@link #tryEnter(Object)}
+   * Records that the invariants of {@code invariantClass} must be
+   * checked on {@code obj}, once per pair.
+   */
+  private void defer(Object obj, Class<?> invariantClass) {
+    ArrayList<Class<?>> classes = deferred.get(obj);
+    if (classes == null) {
+      classes = new ArrayList<Class<?>>(1);
+      deferred.put(obj, classes);
+    } else if (classes.contains(invariantClass)) {
+      return;
+    }
+    classes.add(invariantClass);
+    deferredList.add(obj);
+    deferredList.add(invariantClass);
+  }
+
+  /**
+   * Must be called if and only if {@link #tryEnter(Object, Class)}
    * previously returned {@code true} for this call frame.
    */
   public void leave(Object obj) {
@@ -105,9 +230,69 @@ public class ContractContext {
   }
 
   /**
-   * Resets the busy state of this context.
+   * Opens an invariant deferral scope. Until the matching call to
+   * {@link #leaveDeferral()}, invariants are not checked; instead,
+   * the objects on which they would have been are recorded.
+   */
+  public void enterDeferral() {
+    if (deferralDepth++ == 0) {
+      deferred = new IdentityHashMap<Object, ArrayList<Class<?>>>();
+      deferredList = new ArrayList<Object>();
+    }
+  }
+
+  /**
+   * Closes an invariant deferral scope.
+   *
+   * @return the objects whose invariants must now be checked, each
+   * followed by the class whose invariants apply, if this closes the
+   * outermost scope, or {@code null}
+   */
+  public List<Object> leaveDeferral() {
+    if (--deferralDepth != 0) {
+      return null;
+    }
+    List<Object> objects = deferredList;
+    deferred = null;
+    deferredList = null;
+    return objects;
+  }
+
+  /**
+   * Records {@code check} as a check to attach to {@code result}
+   * once it is returned. Checks recorded for another value are
+   * discarded.
+   */
+  public void addResultCheck(Object result, Object check) {
+    if (result != checkedResult) {
+      checkedResult = result;
+      resultChecks = new ArrayList<Object>();
+    }
+    resultChecks.add(check);
+  }
+
+  /**
+   * Returns and forgets the checks recorded for {@code result}.
+   *
+   * @return the recorded checks, or {@code null} if none
+   */
+  public List<Object> takeResultChecks(Object result) {
+    List<Object> checks = null;
+    if (result == checkedResult) {
+      checks = resultChecks;
+    }
+    checkedResult = null;
+    resultChecks = null;
+    return checks;
+  }
+
+  /**
+   * Resets the busy state of this context, and discards pending
+   * result checks. Activation scopes are kept.
    */
   public void clear() {
-    busy = false;
+    busy = suppressed;
+    checkedResult = null;
+    resultChecks = null;
   }
 }
@@ -19,13 +19,133 @@
 package com.google.java.contract.core.runtime;
 
 import com.google.java.contract.ContractAssertionError;
+import com.google.java.contract.Cost;
+import com.google.java.contract.PostconditionError;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 
 /**
- * Utility methods for use in generated contract code.
+ * Utility methods for use in generated contract code, and by
+ * clients that need to control when contracts are checked.
  *
  * @author nhat.minh.le@huoc.org (Nhat Minh Lê)
  */
 public class ContractRuntime {
+  /**
+   * A condition on a value derived from the result of a method: the
+   * value a returned future completes with, or an element of a
+   * returned stream, iterable or iterator.
+   *
+   * @see AsyncContractRuntime
+   * @see StreamContractRuntime
+   *
+   * @param <T> the type of the value
+   */
+  public interface Condition<T> {
+    /**
+     * Returns {@code true} if {@code value} satisfies this condition.
+     */
+    public boolean check(T value) throws Throwable;
+  }
+
+  /**
+   * A condition, together with the postcondition it stands for.
+   */
+  private static class ValueCheck {
+    final Condition<Object> condition;
+    final String message;
+
+    @SuppressWarnings("unchecked")
+    ValueCheck(Condition<?> condition, String message) {
+      this.condition = (Condition<Object>) condition;
+      this.message = message;
+    }
+
+    /**
+     * Checks {@code value}, and throws a PostconditionError if it
+     * does not satisfy the condition.
+     */
+    void check(Object value) {
+      boolean success = false;
+      Throwable exception = null;
+      try {
+        success = condition.check(value);
+      } catch (Throwable e) {
+        exception = e;
+      }
+      if (!success) {
+        throw new PostconditionError(message, exception);
+      }
+    }
+  }
+
+  /**
+   * An iterator that checks each element before returning it.
+   */
+  private static class CheckedIterator<T> implements Iterator<T> {
+    private final Iterator<T> delegate;
+    private final List<Object> checks;
+
+    CheckedIterator(Iterator<T> delegate, List<Object> checks) {
+      this.delegate = delegate;
+      this.checks = checks;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return delegate.hasNext();
+    }
+
+    @Override
+    public T next() {
+      T value = delegate.next();
+      runChecks(checks, value);
+      return value;
+    }
+
+    @Override
+    public void remove() {
+      delegate.remove();
+    }
+  }
+
+  /**
+   * An iterable whose iterators check each element before returning
+   * it.
+   */
+  private static class CheckedIterable<T> implements Iterable<T> {
+    private final Iterable<T> delegate;
+    private final List<Object> checks;
+
+    CheckedIterable(Iterable<T> delegate, List<Object> checks) {
+      this.delegate = delegate;
+      this.checks = checks;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+      return new CheckedIterator<T>(delegate.iterator(), checks);
+    }
+  }
+
+  /**
+   * The name of the method that checks the invariants of a class,
+   * including inherited ones.
+   */
+  private static final String INVARIANT_METHOD_NAME =
+      "com$google$java$contract$I";
+
+  /**
+   * The number of elements from which quantifiers are evaluated in
+   * parallel, or 0 if they never are.
+   */
+  private static volatile int parallelThreshold =
+      Integer.getInteger("com.google.java.contract.parallel", 0);
+
   /**
    * Retrieves the contract context associated with the current
    * thread.
@@ -34,6 +154,31 @@ public class ContractRuntime {
     return ContractContext.context.get();
   }
 
+  /**
+   * Returns the number of elements from which the quantifiers of
+   * {@link com.google.java.contract.util.Quantifiers} and
+   * {@link com.google.java.contract.util.Iterables} split their scan
+   * across the threads of the common fork-join pool, or 0 if they
+   * always scan sequentially. The initial value is taken from the
+   * {@code com.google.java.contract.parallel} system property.
+   */
+  public static int getParallelThreshold() {
+    return parallelThreshold;
+  }
+
+  /**
+   * Sets the number of elements from which quantifiers are evaluated
+   * in parallel; 0 disables parallel evaluation.
+   *
+   * @see #getParallelThreshold()
+   */
+  public static void setParallelThreshold(int threshold) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException();
+    }
+    parallelThreshold = threshold;
+  }
+
   /**
    * Resets the contract context and throws this assertion.
    */
@@ -43,6 +188,249 @@ public class ContractRuntime {
     throw ex;
   }
 
+  /**
+   * Runs {@code body} with invariant checks deferred. The invariants
+   * of each object on which a contracted method is called from
+   * within {@code body}, in the current thread, are checked exactly
+   * once, when {@code body} returns or throws, instead of on entry
+   * to and exit from every such method. Preconditions and
+   * postconditions are checked as usual, and so are invariants at
+   * the end of constructors.
+   *
+   * <p>Scopes may be nested; objects are only checked when the
+   * outermost scope closes. An {@link com.google.java.contract.InvariantError}
+   * raised then takes precedence over any exception thrown by
+   * {@code body}.
+   */
+  public static void deferInvariants(Runnable body) {
+    ContractContext context = getContext();
+    context.enterDeferral();
+    try {
+      body.run();
+    } finally {
+      List<Object> objects = context.leaveDeferral();
+      if (objects != null) {
+        checkInvariants(context, objects);
+      }
+    }
+  }
+
+  /**
+   * Opens an activation scope in the current thread. Until the
+   * matching call to {@link #popActivation()}, contracts of methods
+   * called in the current thread are checked if {@code enabled} is
+   * {@code true}, and skipped otherwise, whatever the enclosing
+   * scopes. Outside of any scope, contracts are checked unless the
+   * {@code com.google.java.contract.scoped} system property is set
+   * to {@code true}.
+   *
+   * <p>Only contracts woven into classes, according to the activation
+   * rules, can be checked. A scope should be closed by the method
+   * that opened it, preferably in a {@code finally} block: methods
+   * that enter and exit under different settings may see old values
+   * that were never computed.
+   */
+  public static void pushActivation(boolean enabled) {
+    getContext().pushActivation(enabled);
+  }
+
+  /**
+   * Closes the innermost activation scope of the current thread.
+   *
+   * @throws IllegalStateException if no scope is open
+   * @see #pushActivation(boolean)
+   */
+  public static void popActivation() {
+    getContext().popActivation();
+  }
+
+  /**
+   * Runs {@code body} in an activation scope that enables contract
+   * checking if {@code enabled} is {@code true}, and disables it
+   * otherwise.
+   *
+   * @see #pushActivation(boolean)
+   */
+  public static void runWithActivation(boolean enabled, Runnable body) {
+    ContractContext context = getContext();
+    context.pushActivation(enabled);
+    try {
+      body.run();
+    } finally {
+      context.popActivation();
+    }
+  }
+
+  /**
+   * Checks the invariants of {@code objects}, unless contracts are
+   * being evaluated already. Each object in {@code objects} is
+   * followed by the class whose invariants are checked on it.
+   */
+  private static void checkInvariants(ContractContext context,
+                                      List<Object> objects) {
+    if (!context.tryEnterContract()) {
+      return;
+    }
+    try {
+      HashMap<Class<?>, Method> methods = new HashMap<Class<?>, Method>();
+      for (int i = 0; i < objects.size(); i += 2) {
+        Object obj = objects.get(i);
+        Class<?> clazz = (Class<?>) objects.get(i + 1);
+        Method method;
+        if (methods.containsKey(clazz)) {
+          method = methods.get(clazz);
+        } else {
+          method = findInvariantMethod(clazz);
+          methods.put(clazz, method);
+        }
+        if (method != null) {
+          invokeInvariantMethod(method, obj);
+        }
+      }
+    } finally {
+      context.leaveContract();
+    }
+  }
+
+  /**
+   * Returns the invariant method declared by {@code clazz}, or
+   * {@code null}. Superclasses are not searched: only the class that
+   * woven code designates had its invariants activated.
+   */
+  private static Method findInvariantMethod(Class<?> clazz) {
+    try {
+      Method method = clazz.getDeclaredMethod(INVARIANT_METHOD_NAME);
+      method.setAccessible(true);
+      return method;
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  private static void invokeInvariantMethod(Method method, Object obj) {
+    try {
+      method.invoke(obj);
+    } catch (InvocationTargetException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException(cause);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Registers {@code condition} as a postcondition on each element of
+   * {@code result}. Called from the contract code generated for
+   * {@code each()} expressions; the check is only attached to the
+   * iterable by {@link #attachElementChecks(Iterable)}.
+   *
+   * @return {@code true}
+   * @see StreamContractRuntime#each
+   */
+  public static <T> boolean each(Iterable<T> result,
+      Condition<? super T> condition, String message) {
+    addResultCheck(result, condition, message);
+    return true;
+  }
+
+  /**
+   * Registers {@code condition} as a postcondition on each element of
+   * {@code result}.
+   *
+   * @see #each(Iterable,Condition,String)
+   */
+  public static <T> boolean each(Iterator<T> result,
+      Condition<? super T> condition, String message) {
+    addResultCheck(result, condition, message);
+    return true;
+  }
+
+  /**
+   * Registers {@code condition} as a check on {@code result}, to be
+   * attached to it on exit from the method that returns it.
+   */
+  static void addResultCheck(Object result, Condition<?> condition,
+                             String message) {
+    if (result != null) {
+      getContext().addResultCheck(result,
+                                  new ValueCheck(condition, message));
+    }
+  }
+
+  /**
+   * Runs {@code checks} on {@code value}. Contracts are disabled
+   * while they run, but checks run even if contracts are already
+   * being evaluated on this thread, since a future may complete, or
+   * an element be consumed, from within a contract. Checks are
+   * skipped within activation scopes that disable contracts.
+   */
+  static void runChecks(List<Object> checks, Object value) {
+    ContractContext context = getContext();
+    if (!context.isActive()) {
+      return;
+    }
+    boolean entered = context.tryEnterContract();
+    try {
+      for (Object check : checks) {
+        ((ValueCheck) check).check(value);
+      }
+    } finally {
+      if (entered) {
+        context.leaveContract();
+      }
+    }
+  }
+
+  /**
+   * Attaches the checks registered for {@code result} by
+   * {@link #each(Iterable,Condition,String)} and returns an iterable
+   * whose iterators check each element as it is consumed, or
+   * {@code result} itself if there are none. Called on exit from
+   * methods that return an iterable, after their postconditions.
+   */
+  public static <T> Iterable<T> attachElementChecks(Iterable<T> result) {
+    List<Object> checks = getContext().takeResultChecks(result);
+    if (checks == null) {
+      return result;
+    }
+    return new CheckedIterable<T>(result, checks);
+  }
+
+  /**
+   * Attaches the checks registered for {@code result}, and returns an
+   * iterator that checks each element as it is consumed.
+   *
+   * @see #attachElementChecks(Iterable)
+   */
+  public static <T> Iterator<T> attachElementChecks(Iterator<T> result) {
+    List<Object> checks = getContext().takeResultChecks(result);
+    if (checks == null) {
+      return result;
+    }
+    return new CheckedIterator<T>(result, checks);
+  }
+
+  /**
+   * Returns {@code true} if contract clauses of cost tier
+   * {@code tier} are checked.
+   *
+   * <p>This method guards each clause in generated contract code.
+   * Calls to it are replaced with the answer of the activation rules
+   * when contracts are woven into a class, so that clauses of
+   * disabled tiers are skipped at no cost. This method is only called
+   * from code that has not been woven, for which all tiers are
+   * enabled.
+   */
+  public static boolean isCostTierEnabled(Cost tier) {
+    return true;
+  }
+
   /**
    * Magically casts the first argument to the type of the second
    * argument.
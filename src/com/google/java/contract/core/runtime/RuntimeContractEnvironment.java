@@ -18,6 +18,7 @@
 package com.google.java.contract.core.runtime;
 
 import com.google.java.contract.ContractEnvironment;
+import com.google.java.contract.Cost;
 
 /**
  * A contract environment running under the Cofoja Java agent.
@@ -61,6 +62,46 @@ public class RuntimeContractEnvironment implements ContractEnvironment {
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public void enablePrivateInvariants(String pattern) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void disablePrivateInvariants(String pattern) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void enablePackageInvariants(String pattern) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void disablePackageInvariants(String pattern) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void enableInternalContracts(String pattern) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void disableInternalContracts(String pattern) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void enableCostTier(String pattern, Cost tier) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void disableCostTier(String pattern, Cost tier) {
+    throw new UnsupportedOperationException();
+  }
+
   @Override
   public boolean hasPreconditionsEnabled(Class<?> clazz) {
     return false;
@@ -91,6 +132,26 @@ public class RuntimeContractEnvironment implements ContractEnvironment {
     return false;
   }
 
+  @Override
+  public boolean hasPrivateInvariantsEnabled(String pattern) {
+    return false;
+  }
+
+  @Override
+  public boolean hasPackageInvariantsEnabled(String pattern) {
+    return false;
+  }
+
+  @Override
+  public boolean hasInternalContractsEnabled(String pattern) {
+    return false;
+  }
+
+  @Override
+  public boolean hasCostTierEnabled(String pattern, Cost tier) {
+    return false;
+  }
+
   @Override
   public void ignore(String pattern) {
     blacklistManager.ignore(pattern);
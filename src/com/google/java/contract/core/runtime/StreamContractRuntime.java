@@ -0,0 +1,77 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.runtime;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Utility methods for use in the contract code of methods that
+ * return a {@link Stream}. These are kept apart from
+ * {@link ContractRuntime} so that classes without element-wise
+ * postconditions on streams run on Java versions that lack them.
+ */
+public class StreamContractRuntime {
+  /**
+   * The action run on each element of a stream returned by a method
+   * with element-wise postconditions.
+   */
+  private static class ElementChecker<T> implements Consumer<T> {
+    private final List<Object> checks;
+
+    ElementChecker(List<Object> checks) {
+      this.checks = checks;
+    }
+
+    @Override
+    public void accept(T value) {
+      ContractRuntime.runChecks(checks, value);
+    }
+  }
+
+  /**
+   * Registers {@code condition} as a postcondition on each element of
+   * {@code result}. Called from the contract code generated for
+   * {@code each()} expressions on streams; the check is only attached
+   * to the stream by {@link #attachElementChecks(Stream)}.
+   *
+   * @return {@code true}
+   */
+  public static <T> boolean each(Stream<T> result,
+      ContractRuntime.Condition<? super T> condition, String message) {
+    ContractRuntime.addResultCheck(result, condition, message);
+    return true;
+  }
+
+  /**
+   * Attaches the checks registered for {@code result} by
+   * {@link #each(Stream,ContractRuntime.Condition,String)} and returns
+   * a stream that checks each element as it is consumed, or
+   * {@code result} itself if there are none. Called on exit from
+   * methods that return a stream, after their postconditions.
+   */
+  public static <T> Stream<T> attachElementChecks(Stream<T> result) {
+    List<Object> checks =
+        ContractRuntime.getContext().takeResultChecks(result);
+    if (checks == null) {
+      return result;
+    }
+    return result.peek(new ElementChecker<T>(checks));
+  }
+}
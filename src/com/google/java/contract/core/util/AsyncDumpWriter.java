@@ -0,0 +1,295 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.util;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.tools.JavaFileObject;
+
+/**
+ * A dump writer that moves file output off the calling thread. Files
+ * are queued and written in batches by a background daemon thread,
+ * either to a directory tree or, if the dump path ends in
+ * {@code .zip}, to a single ZIP archive.
+ *
+ * <p>Memory use is bounded: files submitted while the queue holds
+ * more than the configured number of pending bytes are dropped
+ * rather than blocking the caller. The number of dropped files is
+ * reported when the writer is closed.
+ */
+@Invariant({
+  "path != null",
+  "maxPendingBytes > 0",
+  "queue != null"
+})
+public class AsyncDumpWriter implements Runnable {
+  /**
+   * A file waiting to be written.
+   */
+  protected static class Entry {
+    final String name;
+    final byte[] data;
+
+    Entry(String name, byte[] data) {
+      this.name = name;
+      this.data = data;
+    }
+  }
+
+  /**
+   * The maximum number of files written in a single batch.
+   */
+  private static final int BATCH_SIZE = 64;
+
+  /**
+   * Marks the end of the queue.
+   */
+  private static final Entry END = new Entry(null, null);
+
+  protected String path;
+  protected long maxPendingBytes;
+
+  protected LinkedBlockingQueue<Entry> queue;
+  protected AtomicLong pendingBytes;
+  protected AtomicLong dropped;
+
+  protected ZipOutputStream zip;
+  protected Set<String> zipNames;
+
+  protected Thread thread;
+  protected Thread shutdownHook;
+  protected volatile boolean closed;
+
+  /**
+   * Constructs and starts a new AsyncDumpWriter.
+   *
+   * @param path the dump directory, or ZIP file if it ends in
+   * {@code .zip}
+   * @param maxPendingBytes the maximum number of bytes waiting to be
+   * written at any time
+   */
+  @Requires({
+    "path != null",
+    "maxPendingBytes > 0"
+  })
+  public AsyncDumpWriter(String path, long maxPendingBytes) {
+    this.path = path;
+    this.maxPendingBytes = maxPendingBytes;
+    queue = new LinkedBlockingQueue<Entry>();
+    pendingBytes = new AtomicLong();
+    dropped = new AtomicLong();
+    zip = null;
+    zipNames = null;
+    closed = false;
+
+    thread = new Thread(this, "com.google.java.contract.dump");
+    thread.setDaemon(true);
+    thread.start();
+
+    shutdownHook = new Thread() {
+      @Override
+      public void run() {
+        close();
+      }
+    };
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+  }
+
+  /**
+   * Returns {@code true} if {@code path} designates a ZIP archive.
+   */
+  @Requires("path != null")
+  public static boolean isZipPath(String path) {
+    return path.endsWith(".zip");
+  }
+
+  /**
+   * Queues the specified file for dumping. Never blocks.
+   *
+   * @param name the qualified class name of the file to dump
+   * @param data the file content
+   * @param kind the kind of file to dump
+   * @return {@code true} if the file was queued, {@code false} if it
+   * was dropped
+   */
+  @Requires({
+    "name != null",
+    "data != null",
+    "kind != null"
+  })
+  public boolean dump(String name, byte[] data, JavaFileObject.Kind kind) {
+    long size = data.length;
+    if (pendingBytes.addAndGet(size) <= maxPendingBytes) {
+      /* Only entries queued before END are written. */
+      synchronized (this) {
+        if (!closed) {
+          queue.add(new Entry(name + kind.extension, data));
+          return true;
+        }
+      }
+    }
+    pendingBytes.addAndGet(-size);
+    dropped.incrementAndGet();
+    return false;
+  }
+
+  /**
+   * Returns the number of files dropped so far.
+   */
+  @Ensures("result >= 0")
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /**
+   * Writes out all queued files and stops the background thread.
+   * Files submitted after this call are dropped.
+   */
+  public void close() {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      queue.add(END);
+    }
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (Thread.currentThread() != shutdownHook) {
+      try {
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      } catch (IllegalStateException e) {
+        /* Shutting down; the hook will find this writer closed. */
+      }
+    }
+    long n = dropped.get();
+    if (n != 0) {
+      DebugUtils.warn("dump", n + " files dropped (queue full)");
+    }
+  }
+
+  @Override
+  public void run() {
+    ArrayList<Entry> batch = new ArrayList<Entry>(BATCH_SIZE);
+    try {
+      for (;;) {
+        batch.add(queue.take());
+        queue.drainTo(batch, BATCH_SIZE - 1);
+        if (!writeBatch(batch)) {
+          break;
+        }
+        batch.clear();
+      }
+    } catch (InterruptedException e) {
+      /* Exit silently; remaining files are lost. */
+    } finally {
+      closeZip();
+    }
+  }
+
+  /**
+   * Writes the files in {@code batch}.
+   *
+   * @return {@code false} if the end of the queue has been reached
+   */
+  @Requires("batch != null")
+  protected boolean writeBatch(List<Entry> batch) {
+    for (Entry entry : batch) {
+      if (entry == END) {
+        return false;
+      }
+      try {
+        if (isZipPath(path)) {
+          writeZipEntry(entry);
+        } else {
+          DebugUtils.writeDumpFile(new File(path + "/" + entry.name),
+                                   entry.data);
+        }
+      } catch (IOException e) {
+        DebugUtils.warn("dump", "while dumping " + entry.name
+                        + ": " + e.getMessage());
+      }
+      pendingBytes.addAndGet(-entry.data.length);
+    }
+    if (zip != null) {
+      try {
+        zip.flush();
+      } catch (IOException e) {
+        DebugUtils.warn("dump", "while flushing " + path
+                        + ": " + e.getMessage());
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes {@code entry} to the dump archive, opening it if
+   * necessary. Entries with a name that has already been written
+   * (for example, from class redefinitions) are skipped.
+   */
+  @Requires("entry != null")
+  protected void writeZipEntry(Entry entry) throws IOException {
+    if (zip == null) {
+      File f = new File(path);
+      File parent = f.getAbsoluteFile().getParentFile();
+      if (parent != null) {
+        parent.mkdirs();
+      }
+      zip = new ZipOutputStream(
+          new BufferedOutputStream(new FileOutputStream(f)));
+      zipNames = new HashSet<String>();
+    }
+    if (!zipNames.add(entry.name)) {
+      DebugUtils.info("dump", "skipping duplicate entry " + entry.name);
+      return;
+    }
+    DebugUtils.info("dump", "dumping entry " + entry.name);
+    zip.putNextEntry(new ZipEntry(entry.name));
+    zip.write(entry.data);
+    zip.closeEntry();
+  }
+
+  private void closeZip() {
+    if (zip == null) {
+      return;
+    }
+    try {
+      zip.close();
+    } catch (IOException e) {
+      DebugUtils.warn("dump", "while closing " + path + ": " + e.getMessage());
+    }
+    zip = null;
+  }
+}
@@ -64,15 +64,30 @@ public class DebugUtils {
   })
   public static void dump(String name, byte[] data, JavaFileObject.Kind kind) {
     File f = new File(dumpDirectory + "/" + name + kind.extension);
+    try {
+      writeDumpFile(f, data);
+    } catch (IOException e) {
+      warn("dump", "while dumping " + f + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Writes {@code data} to {@code f}, creating parent directories as
+   * needed.
+   */
+  @Requires({
+    "f != null",
+    "data != null"
+  })
+  static void writeDumpFile(File f, byte[] data) throws IOException {
     info("dump", "dumping file " + f);
     f.getParentFile().mkdirs();
+    OutputStream out = new FileOutputStream(f);
     try {
-      OutputStream out = new FileOutputStream(f);
       out.write(data);
       out.flush();
+    } finally {
       out.close();
-    } catch (IOException e) {
-      warn("dump", "while dumping " + f + ": " + e.getMessage());
     }
   }
 
@@ -22,7 +22,10 @@ import com.google.java.contract.Ensures;
 import com.google.java.contract.Requires;
 import com.google.java.contract.core.model.ClassName;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.net.MalformedURLException;
@@ -67,6 +70,12 @@ public class JavaUtils {
    */
   public static final String CONTRACTED_EXTENSION = ".class.contracted";
 
+  /**
+   * File name extension prefix of pre-woven class variants; followed
+   * by the name of the activation profile.
+   */
+  public static final String WOVEN_EXTENSION = ".class.woven.";
+
   /**
    * File name extension of source dependency information files.
    */
@@ -154,6 +163,13 @@ public class JavaUtils {
   public static final String THAT_VARIABLE =
       "com$google$java$contract$local$that";
 
+  /**
+   * The name of the parameter holding the value a future completes
+   * with, in asynchronous postconditions.
+   */
+  public static final String COMPLETED_VARIABLE =
+      "com$google$java$contract$local$completed";
+
   /**
    * Returns {@code true} if {@code obj} can be cast to class
    * {@code className}, at run time, using reflection.
@@ -553,4 +569,34 @@ public class JavaUtils {
       return ClassLoader.getSystemResource(className) != null;
     }
   }
+
+  /**
+   * Reads {@code in} until its end and returns the bytes read. The
+   * stream is not closed.
+   */
+  @Requires("in != null")
+  @Ensures("result != null")
+  public static byte[] getBytes(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int len;
+    while ((len = in.read(buffer)) != -1) {
+      out.write(buffer, 0, len);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Returns the contents of the file at {@code path}.
+   */
+  @Requires("path != null")
+  @Ensures("result != null")
+  public static byte[] getBytes(File path) throws IOException {
+    InputStream in = new FileInputStream(path);
+    try {
+      return getBytes(in);
+    } finally {
+      in.close();
+    }
+  }
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.util;
+
+import com.google.java.contract.core.runtime.ContractContext;
+import com.google.java.contract.core.runtime.ContractRuntime;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A universal quantifier over a range of indexes, evaluated in
+ * parallel on the common fork-join pool. The range is split in
+ * halves until pieces are small enough to be scanned sequentially;
+ * the scan of all pieces stops as soon as one of them finds an index
+ * that does not satisfy the predicate.
+ *
+ * <p>Pieces are scanned with contracts disabled on the thread that
+ * scans them, so that contracted methods called by the predicate are
+ * not checked, just as they would not be if the quantifier were
+ * evaluated sequentially from within a contract.
+ *
+ * <p>The common fork-join pool requires Java 8; this class is only
+ * used through {@link ParallelScan}, which checks that it links.
+ */
+class ForkJoinScan extends RecursiveAction {
+  /**
+   * The smallest number of indexes scanned sequentially.
+   */
+  private static final long MIN_PIECE_SIZE = 1024;
+
+  /**
+   * The number of indexes after which a sequential scan checks
+   * whether another piece has failed, minus one.
+   */
+  private static final long POLL_MASK = 1023;
+
+  private final long from;
+  private final long to;
+  private final long pieceSize;
+  private final ParallelScan.IndexPredicate p;
+  private final AtomicBoolean failed;
+
+  private ForkJoinScan(long from, long to, long pieceSize,
+                       ParallelScan.IndexPredicate p,
+                       AtomicBoolean failed) {
+    this.from = from;
+    this.to = to;
+    this.pieceSize = pieceSize;
+    this.p = p;
+    this.failed = failed;
+  }
+
+  /**
+   * Returns the number of threads of the common fork-join pool. This
+   * method fails with a {@link LinkageError} if the pool is not
+   * available.
+   */
+  static int getParallelism() {
+    return ForkJoinPool.commonPool().getParallelism();
+  }
+
+  /**
+   * Returns {@code true} if all indexes between {@code from}
+   * (inclusive) and {@code to} (exclusive) satisfy {@code p}.
+   */
+  static boolean forAll(long from, long to,
+                        ParallelScan.IndexPredicate p) {
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    long pieceSize =
+        Math.max(MIN_PIECE_SIZE, (to - from) / (4 * pool.getParallelism()));
+    ForkJoinScan scan =
+        new ForkJoinScan(from, to, pieceSize, p, new AtomicBoolean());
+    pool.invoke(scan);
+    return !scan.failed.get();
+  }
+
+  @Override
+  protected void compute() {
+    if (failed.get()) {
+      return;
+    }
+    if (to - from <= pieceSize) {
+      scan();
+    } else {
+      long middle = from + (to - from) / 2;
+      invokeAll(new ForkJoinScan(from, middle, pieceSize, p, failed),
+                new ForkJoinScan(middle, to, pieceSize, p, failed));
+    }
+  }
+
+  private void scan() {
+    ContractContext context = ContractRuntime.getContext();
+    boolean entered = context.tryEnterContract();
+    try {
+      for (long i = from; i < to; ++i) {
+        if (!p.test(i)) {
+          failed.set(true);
+          return;
+        }
+        if ((i & POLL_MASK) == 0 && failed.get()) {
+          return;
+        }
+      }
+    } finally {
+      if (entered) {
+        context.leaveContract();
+      }
+    }
+  }
+}
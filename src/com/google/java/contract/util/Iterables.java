@@ -17,6 +17,9 @@
  */
 package com.google.java.contract.util;
 
+import java.util.List;
+import java.util.RandomAccess;
+
 /**
  * Utilities for iterables.
  *
@@ -24,6 +27,14 @@ package com.google.java.contract.util;
  * {@link com.google.common.collect.Iterables}, so as to make it easy
  * to switch between them.
  *
+ * <p>Large random-access lists are scanned in parallel, as
+ * configured by
+ * {@link com.google.java.contract.core.runtime.ContractRuntime#setParallelThreshold(int)}.
+ *
+ * <p>The {@code Cached} variants of quantifiers remember their
+ * result, and only scan a collection again once it has been
+ * modified. See {@link #allCached(Iterable, Predicate)}.
+ *
  * @author nhat.minh.le@huoc.org (Nhat Minh Lê)
  */
 public final class Iterables {
@@ -38,10 +49,20 @@ public final class Iterables {
    * {@link com.google.common.collect.Iterables} does <em>not</em> take
    * {@code null} as input.
    */
-  public static <T> boolean all(Iterable<T> it, Predicate<? super T> p) {
+  public static <T> boolean all(Iterable<T> it, final Predicate<? super T> p) {
     if (it == null) {
       return false;
     }
+    if (isParallelList(it)) {
+      final List<T> list = (List<T>) it;
+      return ParallelScan.forAll(0, list.size(),
+                                 new ParallelScan.IndexPredicate() {
+        @Override
+        public boolean test(long i) {
+          return p.apply(list.get((int) i));
+        }
+      });
+    }
     for (T elem : it) {
       if (!p.apply(elem)) {
         return false;
@@ -58,10 +79,20 @@ public final class Iterables {
    * {@link com.google.common.collect.Iterables} does <em>not</em> take
    * {@code null} as input.
    */
-  public static <T> boolean any(Iterable<T> it, Predicate<? super T> p) {
+  public static <T> boolean any(Iterable<T> it, final Predicate<? super T> p) {
     if (it == null) {
       return false;
     }
+    if (isParallelList(it)) {
+      final List<T> list = (List<T>) it;
+      return !ParallelScan.forAll(0, list.size(),
+                                  new ParallelScan.IndexPredicate() {
+        @Override
+        public boolean test(long i) {
+          return !p.apply(list.get((int) i));
+        }
+      });
+    }
     for (T elem : it) {
       if (p.apply(elem)) {
         return true;
@@ -69,4 +100,58 @@ public final class Iterables {
     }
     return false;
   }
+
+  /**
+   * Applies {@code all(p)} to {@code it}, or returns the result of a
+   * previous call with the same iterable object and predicate if the
+   * iterable has not been modified since.
+   *
+   * <p>Modifications are detected through the version of
+   * {@link Versioned} objects, such as {@link SnapshotList}; other
+   * iterables, including standard collections, are scanned each
+   * time. Changes to the elements themselves go unnoticed.
+   *
+   * <p>Results are cached per predicate object: predicates should be
+   * constants, such as lambda expressions that do not capture any
+   * variable.
+   */
+  public static <T> boolean allCached(Iterable<T> it,
+                                      Predicate<? super T> p) {
+    return cached(it, p, QuantifierCache.ALL);
+  }
+
+  /**
+   * Applies {@code any(p)} to {@code it}, or returns the result of a
+   * previous call with the same iterable object and predicate if the
+   * iterable has not been modified since.
+   *
+   * @see #allCached(Iterable, Predicate)
+   */
+  public static <T> boolean anyCached(Iterable<T> it,
+                                      Predicate<? super T> p) {
+    return cached(it, p, QuantifierCache.ANY);
+  }
+
+  private static <T> boolean cached(Iterable<T> it, Predicate<? super T> p,
+                                    int kind) {
+    if (it == null) {
+      return false;
+    }
+    long version = QuantifierCache.versionOf(it);
+    Boolean result = QuantifierCache.get(it, p, kind, version);
+    if (result == null) {
+      result = kind == QuantifierCache.ALL ? all(it, p) : any(it, p);
+      QuantifierCache.put(it, p, kind, version, result);
+    }
+    return result;
+  }
+
+  /**
+   * Returns {@code true} if {@code it} is a random-access list large
+   * enough to be scanned in parallel.
+   */
+  private static boolean isParallelList(Iterable<?> it) {
+    return it instanceof RandomAccess && it instanceof List
+        && ParallelScan.isWorthIt(((List<?>) it).size());
+  }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.util;
+
+import com.google.java.contract.core.runtime.ContractRuntime;
+
+/**
+ * Entry point to the parallel evaluation of quantifiers. Scans are
+ * delegated to {@link ForkJoinScan}, which is only loaded once a
+ * range is large enough to be scanned in parallel. If it cannot be
+ * linked, as on Java versions without the common fork-join pool,
+ * all ranges are scanned sequentially.
+ */
+class ParallelScan {
+  /**
+   * A predicate on an index.
+   */
+  interface IndexPredicate {
+    boolean test(long i);
+  }
+
+  /**
+   * Holder of the availability flag, initialized on first use only.
+   */
+  private static class Support {
+    static final boolean AVAILABLE = isAvailable();
+
+    private static boolean isAvailable() {
+      try {
+        return ForkJoinScan.getParallelism() > 0;
+      } catch (LinkageError e) {
+        return false;
+      }
+    }
+  }
+
+  private ParallelScan() {
+  }
+
+  /**
+   * Returns {@code true} if {@code size} elements should be scanned
+   * in parallel, according to the policy of
+   * {@link ContractRuntime#getParallelThreshold()}, and parallel
+   * scans are supported by this JVM.
+   */
+  static boolean isWorthIt(long size) {
+    int threshold = ContractRuntime.getParallelThreshold();
+    return threshold != 0 && size >= threshold && Support.AVAILABLE;
+  }
+
+  /**
+   * Returns {@code true} if all indexes between {@code from}
+   * (inclusive) and {@code to} (exclusive) satisfy {@code p}. Must
+   * only be called if {@link #isWorthIt(long)} holds.
+   */
+  static boolean forAll(long from, long to, IndexPredicate p) {
+    return ForkJoinScan.forAll(from, to, p);
+  }
+}
@@ -28,6 +28,11 @@ import java.util.Set;
  * {@link com.google.common.base.Predicates}, so as to make it easy
  * to switch between them.
  *
+ * <p>The {@code Cached} variants of map predicates remember their
+ * result for each map, and only evaluate it again once the map has
+ * been modified, as {@link Iterables#allCached(Iterable, Predicate)}
+ * does.
+ *
  * @author nhat.minh.le@huoc.org (Nhat Minh Lê)
  */
 public final class Predicates {
@@ -324,4 +329,101 @@ public final class Predicates {
   public static <K, V> Predicate<Map<K, V>> allValues(Predicate<? super V> p) {
     return forValues(Predicates.<V>all(p));
   }
+
+  /**
+   * Returns a cached variant of {@link #forEntries(Predicate)}.
+   */
+  public static <K, V> Predicate<Map<K, V>> forEntriesCached(
+      Predicate<? super Set<Map.Entry<K, V>>> p) {
+    return cached(QuantifierCache.FOR_ENTRIES, p,
+                  Predicates.<K, V>forEntries(p));
+  }
+
+  /**
+   * Returns a cached variant of {@link #forKeys(Predicate)}.
+   */
+  public static <K, V> Predicate<Map<K, V>> forKeysCached(
+      Predicate<? super Set<K>> p) {
+    return cached(QuantifierCache.FOR_KEYS, p, Predicates.<K, V>forKeys(p));
+  }
+
+  /**
+   * Returns a cached variant of {@link #forValues(Predicate)}.
+   */
+  public static <K, V> Predicate<Map<K, V>> forValuesCached(
+      Predicate<? super Collection<V>> p) {
+    return cached(QuantifierCache.FOR_VALUES, p,
+                  Predicates.<K, V>forValues(p));
+  }
+
+  /**
+   * Returns a cached variant of {@link #anyEntry(Predicate)}.
+   */
+  public static <K, V> Predicate<Map<K, V>> anyEntryCached(
+      Predicate<? super Map.Entry<K, V>> p) {
+    return cached(QuantifierCache.ANY_ENTRY, p, Predicates.<K, V>anyEntry(p));
+  }
+
+  /**
+   * Returns a cached variant of {@link #anyKey(Predicate)}.
+   */
+  public static <K, V> Predicate<Map<K, V>> anyKeyCached(
+      Predicate<? super K> p) {
+    return cached(QuantifierCache.ANY_KEY, p, Predicates.<K, V>anyKey(p));
+  }
+
+  /**
+   * Returns a cached variant of {@link #anyValue(Predicate)}.
+   */
+  public static <K, V> Predicate<Map<K, V>> anyValueCached(
+      Predicate<? super V> p) {
+    return cached(QuantifierCache.ANY_VALUE, p, Predicates.<K, V>anyValue(p));
+  }
+
+  /**
+   * Returns a cached variant of {@link #allEntries(Predicate)}.
+   */
+  public static <K, V> Predicate<Map<K, V>> allEntriesCached(
+      Predicate<? super Map.Entry<K, V>> p) {
+    return cached(QuantifierCache.ALL_ENTRIES, p,
+                  Predicates.<K, V>allEntries(p));
+  }
+
+  /**
+   * Returns a cached variant of {@link #allKeys(Predicate)}.
+   */
+  public static <K, V> Predicate<Map<K, V>> allKeysCached(
+      Predicate<? super K> p) {
+    return cached(QuantifierCache.ALL_KEYS, p, Predicates.<K, V>allKeys(p));
+  }
+
+  /**
+   * Returns a cached variant of {@link #allValues(Predicate)}.
+   */
+  public static <K, V> Predicate<Map<K, V>> allValuesCached(
+      Predicate<? super V> p) {
+    return cached(QuantifierCache.ALL_VALUES, p,
+                  Predicates.<K, V>allValues(p));
+  }
+
+  /**
+   * Returns a predicate that evaluates {@code p} on maps, and caches
+   * its result under {@code key} and {@code kind} until the map is
+   * modified.
+   */
+  private static <K, V> Predicate<Map<K, V>> cached(
+      final int kind, final Object key, final Predicate<Map<K, V>> p) {
+    return new Predicate<Map<K, V>>() {
+      @Override
+      public boolean apply(Map<K, V> obj) {
+        long version = QuantifierCache.versionOf(obj);
+        Boolean result = QuantifierCache.get(obj, key, kind, version);
+        if (result == null) {
+          result = p.apply(obj);
+          QuantifierCache.put(obj, key, kind, version, result);
+        }
+        return result;
+      }
+    };
+  }
 }
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A cache of quantifier results. Results are keyed on the identity
+ * of the quantified object and of the predicate, and on the kind of
+ * quantifier, and are only valid for the version of the quantified
+ * object they were computed for.
+ *
+ * <p>The version of an object is its {@link Versioned#version()}.
+ * Objects that do not implement {@link Versioned}, including standard
+ * collections, are not cached: their modification counts are neither
+ * accessible nor bumped by all changes.
+ *
+ * <p>Keys are weakly referenced: entries are dropped once either the
+ * quantified object or the predicate is collected.
+ */
+final class QuantifierCache {
+  static final int ALL = 0;
+  static final int ANY = 1;
+  static final int FOR_ENTRIES = 2;
+  static final int FOR_KEYS = 3;
+  static final int FOR_VALUES = 4;
+  static final int ALL_ENTRIES = 5;
+  static final int ALL_KEYS = 6;
+  static final int ALL_VALUES = 7;
+  static final int ANY_ENTRY = 8;
+  static final int ANY_KEY = 9;
+  static final int ANY_VALUE = 10;
+
+  /**
+   * The version of objects that have none.
+   */
+  static final long NO_VERSION = Long.MIN_VALUE;
+
+  /**
+   * A key, as stored or looked up.
+   */
+  private interface Key {
+    Object target();
+    Object predicate();
+    int kind();
+  }
+
+  /**
+   * A stored key. The target is weakly referenced by the key itself,
+   * and the predicate, by a reference that points back to the key.
+   */
+  private static final class StoredKey extends WeakReference<Object>
+      implements Key {
+    private final PredicateReference predicate;
+    private final int kind;
+    private final int hash;
+
+    StoredKey(Object target, Object predicate, int kind, int hash) {
+      super(target, QUEUE);
+      this.predicate = new PredicateReference(predicate, this);
+      this.kind = kind;
+      this.hash = hash;
+    }
+
+    @Override
+    public Object target() {
+      return get();
+    }
+
+    @Override
+    public Object predicate() {
+      return predicate.get();
+    }
+
+    @Override
+    public int kind() {
+      return kind;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj == this || (obj instanceof Key && sameAs((Key) obj));
+    }
+
+    private boolean sameAs(Key key) {
+      Object target = get();
+      Object predicate = this.predicate.get();
+      return target != null && predicate != null
+          && target == key.target() && predicate == key.predicate()
+          && kind == key.kind();
+    }
+  }
+
+  private static final class PredicateReference
+      extends WeakReference<Object> {
+    final StoredKey key;
+
+    PredicateReference(Object predicate, StoredKey key) {
+      super(predicate, QUEUE);
+      this.key = key;
+    }
+  }
+
+  /**
+   * A key being looked up.
+   */
+  private static final class Probe implements Key {
+    private final Object target;
+    private final Object predicate;
+    private final int kind;
+
+    Probe(Object target, Object predicate, int kind) {
+      this.target = target;
+      this.predicate = predicate;
+      this.kind = kind;
+    }
+
+    @Override
+    public Object target() {
+      return target;
+    }
+
+    @Override
+    public Object predicate() {
+      return predicate;
+    }
+
+    @Override
+    public int kind() {
+      return kind;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash(target, predicate, kind);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) obj;
+      return target == key.target() && predicate == key.predicate()
+          && kind == key.kind();
+    }
+  }
+
+  /**
+   * A cached result.
+   */
+  private static final class Result {
+    final long version;
+    final boolean value;
+
+    Result(long version, boolean value) {
+      this.version = version;
+      this.value = value;
+    }
+  }
+
+  private static final ReferenceQueue<Object> QUEUE =
+      new ReferenceQueue<Object>();
+
+  private static final Map<Key, Result> RESULTS = new HashMap<Key, Result>();
+
+  private QuantifierCache() {
+  }
+
+  /**
+   * Returns the version of {@code obj}, or {@link #NO_VERSION} if it
+   * has none.
+   */
+  static long versionOf(Object obj) {
+    if (obj instanceof Versioned) {
+      return ((Versioned) obj).version();
+    }
+    return NO_VERSION;
+  }
+
+  /**
+   * Returns the cached result of the quantifier of kind {@code kind}
+   * over {@code target} with {@code predicate}, or {@code null} if
+   * none is cached for version {@code version} of {@code target}.
+   */
+  static Boolean get(Object target, Object predicate, int kind,
+                     long version) {
+    if (version == NO_VERSION) {
+      return null;
+    }
+    Result result;
+    synchronized (RESULTS) {
+      result = RESULTS.get(new Probe(target, predicate, kind));
+    }
+    if (result == null || result.version != version) {
+      return null;
+    }
+    return result.value;
+  }
+
+  /**
+   * Caches {@code value} as the result of the quantifier of kind
+   * {@code kind} over version {@code version} of {@code target} with
+   * {@code predicate}.
+   */
+  static void put(Object target, Object predicate, int kind,
+                  long version, boolean value) {
+    if (version == NO_VERSION) {
+      return;
+    }
+    Result result = new Result(version, value);
+    synchronized (RESULTS) {
+      expunge();
+      Probe probe = new Probe(target, predicate, kind);
+      if (RESULTS.containsKey(probe)) {
+        RESULTS.put(probe, result);
+      } else {
+        RESULTS.put(new StoredKey(target, predicate, kind, probe.hashCode()),
+                    result);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of cached results.
+   */
+  static int size() {
+    synchronized (RESULTS) {
+      expunge();
+      return RESULTS.size();
+    }
+  }
+
+  private static void expunge() {
+    Object ref;
+    while ((ref = QUEUE.poll()) != null) {
+      if (ref instanceof PredicateReference) {
+        RESULTS.remove(((PredicateReference) ref).key);
+      } else {
+        RESULTS.remove(ref);
+      }
+    }
+  }
+
+  private static int hash(Object target, Object predicate, int kind) {
+    return (System.identityHashCode(target) * 31
+            + System.identityHashCode(predicate)) * 31 + kind;
+  }
+}
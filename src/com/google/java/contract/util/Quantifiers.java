@@ -0,0 +1,437 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.util;
+
+/**
+ * Quantifiers over primitive arrays and integer ranges, for use in
+ * contracts.
+ *
+ * <p>Unlike {@link Iterables} and {@link Predicates}, these methods
+ * do not box elements, and do not allocate any object: they can be
+ * used in invariants that are checked very often without creating
+ * garbage. Predicates written as lambda expressions that do not
+ * capture any variable are not allocated either.
+ *
+ * <p>{@code forAll} and {@code exists} scan large arrays and ranges
+ * in parallel, as configured by
+ * {@link com.google.java.contract.core.runtime.ContractRuntime#setParallelThreshold(int)};
+ * their predicate must then be safe to call from several threads at
+ * once. Contracted methods it calls are not checked.
+ *
+ * <p>Quantifiers over {@code long} ranges have distinct names, since
+ * calls with a lambda expression would be ambiguous otherwise.
+ *
+ * <p><b>Warning:</b> as with {@link Iterables}, quantifiers over a
+ * {@code null} array return {@code false}.
+ */
+public final class Quantifiers {
+  private Quantifiers() {
+  }
+
+  /**
+   * Returns {@code true} if all values between {@code from}
+   * (inclusive) and {@code to} (exclusive) satisfy {@code p}.
+   */
+  public static boolean forAll(int from, int to,
+                               final IntPredicate p) {
+    if (ParallelScan.isWorthIt(to - from)) {
+      return ParallelScan.forAll(from, to, new ParallelScan.IndexPredicate() {
+        @Override
+        public boolean test(long i) {
+          return p.test((int) i);
+        }
+      });
+    }
+    for (int i = from; i < to; ++i) {
+      if (!p.test(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if any value between {@code from}
+   * (inclusive) and {@code to} (exclusive) satisfies {@code p}.
+   */
+  public static boolean exists(int from, int to,
+                               final IntPredicate p) {
+    if (ParallelScan.isWorthIt(to - from)) {
+      return !ParallelScan.forAll(from, to, new ParallelScan.IndexPredicate() {
+        @Override
+        public boolean test(long i) {
+          return !p.test((int) i);
+        }
+      });
+    }
+    for (int i = from; i < to; ++i) {
+      if (p.test(i)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@code true} if all values between {@code from}
+   * (inclusive) and {@code to} (exclusive) satisfy {@code p}.
+   */
+  public static boolean forAllLong(long from, long to,
+                                   final LongPredicate p) {
+    if (ParallelScan.isWorthIt(to - from)) {
+      return ParallelScan.forAll(from, to, new ParallelScan.IndexPredicate() {
+        @Override
+        public boolean test(long i) {
+          return p.test(i);
+        }
+      });
+    }
+    for (long i = from; i < to; ++i) {
+      if (!p.test(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if any value between {@code from}
+   * (inclusive) and {@code to} (exclusive) satisfies {@code p}.
+   */
+  public static boolean existsLong(long from, long to,
+                                   final LongPredicate p) {
+    if (ParallelScan.isWorthIt(to - from)) {
+      return !ParallelScan.forAll(from, to, new ParallelScan.IndexPredicate() {
+        @Override
+        public boolean test(long i) {
+          return !p.test(i);
+        }
+      });
+    }
+    for (long i = from; i < to; ++i) {
+      if (p.test(i)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@code true} if all elements of {@code a} satisfy
+   * {@code p}.
+   */
+  public static boolean forAll(int[] a, IntPredicate p) {
+    if (a == null) {
+      return false;
+    }
+    return forAll(a, 0, a.length, p);
+  }
+
+  /**
+   * Returns {@code true} if all elements of {@code a} between indexes
+   * {@code from} (inclusive) and {@code to} (exclusive) satisfy
+   * {@code p}.
+   */
+  public static boolean forAll(final int[] a, int from, int to,
+                               final IntPredicate p) {
+    if (a == null) {
+      return false;
+    }
+    if (ParallelScan.isWorthIt(to - from)) {
+      return ParallelScan.forAll(from, to, new ParallelScan.IndexPredicate() {
+        @Override
+        public boolean test(long i) {
+          return p.test(a[(int) i]);
+        }
+      });
+    }
+    for (int i = from; i < to; ++i) {
+      if (!p.test(a[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if any element of {@code a} satisfies
+   * {@code p}.
+   */
+  public static boolean exists(int[] a, IntPredicate p) {
+    if (a == null) {
+      return false;
+    }
+    return exists(a, 0, a.length, p);
+  }
+
+  /**
+   * Returns {@code true} if any element of {@code a} between indexes
+   * {@code from} (inclusive) and {@code to} (exclusive) satisfies
+   * {@code p}.
+   */
+  public static boolean exists(final int[] a, int from, int to,
+                               final IntPredicate p) {
+    if (a == null) {
+      return false;
+    }
+    if (ParallelScan.isWorthIt(to - from)) {
+      return !ParallelScan.forAll(from, to, new ParallelScan.IndexPredicate() {
+        @Override
+        public boolean test(long i) {
+          return !p.test(a[(int) i]);
+        }
+      });
+    }
+    for (int i = from; i < to; ++i) {
+      if (p.test(a[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@code true} if {@code a} is sorted in ascending order.
+   */
+  public static boolean sorted(int[] a) {
+    if (a == null) {
+      return false;
+    }
+    return sorted(a, 0, a.length);
+  }
+
+  /**
+   * Returns {@code true} if the elements of {@code a} between indexes
+   * {@code from} (inclusive) and {@code to} (exclusive) are sorted in
+   * ascending order.
+   */
+  public static boolean sorted(int[] a, int from, int to) {
+    if (a == null) {
+      return false;
+    }
+    for (int i = from + 1; i < to; ++i) {
+      if (a[i - 1] > a[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if all elements of {@code a} satisfy
+   * {@code p}.
+   */
+  public static boolean forAll(long[] a, LongPredicate p) {
+    if (a == null) {
+      return false;
+    }
+    return forAll(a, 0, a.length, p);
+  }
+
+  /**
+   * Returns {@code true} if all elements of {@code a} between indexes
+   * {@code from} (inclusive) and {@code to} (exclusive) satisfy
+   * {@code p}.
+   */
+  public static boolean forAll(final long[] a, int from, int to,
+                               final LongPredicate p) {
+    if (a == null) {
+      return false;
+    }
+    if (ParallelScan.isWorthIt(to - from)) {
+      return ParallelScan.forAll(from, to, new ParallelScan.IndexPredicate() {
+        @Override
+        public boolean test(long i) {
+          return p.test(a[(int) i]);
+        }
+      });
+    }
+    for (int i = from; i < to; ++i) {
+      if (!p.test(a[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if any element of {@code a} satisfies
+   * {@code p}.
+   */
+  public static boolean exists(long[] a, LongPredicate p) {
+    if (a == null) {
+      return false;
+    }
+    return exists(a, 0, a.length, p);
+  }
+
+  /**
+   * Returns {@code true} if any element of {@code a} between indexes
+   * {@code from} (inclusive) and {@code to} (exclusive) satisfies
+   * {@code p}.
+   */
+  public static boolean exists(final long[] a, int from, int to,
+                               final LongPredicate p) {
+    if (a == null) {
+      return false;
+    }
+    if (ParallelScan.isWorthIt(to - from)) {
+      return !ParallelScan.forAll(from, to, new ParallelScan.IndexPredicate() {
+        @Override
+        public boolean test(long i) {
+          return !p.test(a[(int) i]);
+        }
+      });
+    }
+    for (int i = from; i < to; ++i) {
+      if (p.test(a[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@code true} if {@code a} is sorted in ascending order.
+   */
+  public static boolean sorted(long[] a) {
+    if (a == null) {
+      return false;
+    }
+    return sorted(a, 0, a.length);
+  }
+
+  /**
+   * Returns {@code true} if the elements of {@code a} between indexes
+   * {@code from} (inclusive) and {@code to} (exclusive) are sorted in
+   * ascending order.
+   */
+  public static boolean sorted(long[] a, int from, int to) {
+    if (a == null) {
+      return false;
+    }
+    for (int i = from + 1; i < to; ++i) {
+      if (a[i - 1] > a[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if all elements of {@code a} satisfy
+   * {@code p}.
+   */
+  public static boolean forAll(double[] a, DoublePredicate p) {
+    if (a == null) {
+      return false;
+    }
+    return forAll(a, 0, a.length, p);
+  }
+
+  /**
+   * Returns {@code true} if all elements of {@code a} between indexes
+   * {@code from} (inclusive) and {@code to} (exclusive) satisfy
+   * {@code p}.
+   */
+  public static boolean forAll(final double[] a, int from, int to,
+                               final DoublePredicate p) {
+    if (a == null) {
+      return false;
+    }
+    if (ParallelScan.isWorthIt(to - from)) {
+      return ParallelScan.forAll(from, to, new ParallelScan.IndexPredicate() {
+        @Override
+        public boolean test(long i) {
+          return p.test(a[(int) i]);
+        }
+      });
+    }
+    for (int i = from; i < to; ++i) {
+      if (!p.test(a[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if any element of {@code a} satisfies
+   * {@code p}.
+   */
+  public static boolean exists(double[] a, DoublePredicate p) {
+    if (a == null) {
+      return false;
+    }
+    return exists(a, 0, a.length, p);
+  }
+
+  /**
+   * Returns {@code true} if any element of {@code a} between indexes
+   * {@code from} (inclusive) and {@code to} (exclusive) satisfies
+   * {@code p}.
+   */
+  public static boolean exists(final double[] a, int from, int to,
+                               final DoublePredicate p) {
+    if (a == null) {
+      return false;
+    }
+    if (ParallelScan.isWorthIt(to - from)) {
+      return !ParallelScan.forAll(from, to, new ParallelScan.IndexPredicate() {
+        @Override
+        public boolean test(long i) {
+          return !p.test(a[(int) i]);
+        }
+      });
+    }
+    for (int i = from; i < to; ++i) {
+      if (p.test(a[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@code true} if {@code a} is sorted in ascending order,
+   * as defined by {@link Double#compare(double,double)}.
+   */
+  public static boolean sorted(double[] a) {
+    if (a == null) {
+      return false;
+    }
+    return sorted(a, 0, a.length);
+  }
+
+  /**
+   * Returns {@code true} if the elements of {@code a} between indexes
+   * {@code from} (inclusive) and {@code to} (exclusive) are sorted in
+   * ascending order, as defined by {@link Double#compare(double,double)}.
+   */
+  public static boolean sorted(double[] a, int from, int to) {
+    if (a == null) {
+      return false;
+    }
+    for (int i = from + 1; i < to; ++i) {
+      if (Double.compare(a[i - 1], a[i]) > 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.util;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A random-access list that takes snapshots of itself in constant
+ * time.
+ *
+ * <p>Elements are stored in a tree of arrays of 32 elements. The
+ * nodes of the tree are shared between the list and its snapshots,
+ * and copied by the list when first written after a snapshot: a
+ * modification only copies the nodes on the path to the elements it
+ * changes, that is, a logarithmic number of nodes. Lists that are
+ * not snapshotted are modified in place.
+ *
+ * <p>Appending, removing the last element and replacing elements
+ * take logarithmic time. Inserting and removing elements elsewhere
+ * take time proportional to the number of elements moved, as for
+ * {@link java.util.ArrayList}.
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @param <E> the type of the elements
+ */
+public class SnapshotList<E> extends AbstractList<E>
+    implements RandomAccess, Snapshottable<List<E>>, Versioned {
+  private static final int BITS = 5;
+  private static final int WIDTH = 1 << BITS;
+  private static final int MASK = WIDTH - 1;
+
+  /**
+   * A node of the tree. Inner nodes hold nodes; leaves hold
+   * elements. A node may be modified in place only by the list
+   * whose edit token owns it.
+   */
+  private static final class Node {
+    final Object owner;
+    final Object[] slots;
+
+    Node(Object owner) {
+      this.owner = owner;
+      slots = new Object[WIDTH];
+    }
+
+    Node(Object owner, Object[] slots) {
+      this.owner = owner;
+      this.slots = slots;
+    }
+  }
+
+  /**
+   * An immutable view of a state of a list.
+   */
+  private static final class Snapshot<E> extends AbstractList<E>
+      implements RandomAccess {
+    private final Node root;
+    private final int shift;
+    private final int size;
+
+    Snapshot(Node root, int shift, int size) {
+      this.root = root;
+      this.shift = shift;
+      this.size = size;
+    }
+
+    @Override
+    public E get(int index) {
+      checkIndex(index, size);
+      return SnapshotList.<E>lookup(root, shift, index);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+
+  /*
+   * The token that owns the nodes this list may modify in place. A
+   * new token is made for each snapshot, so that all nodes reachable
+   * from the snapshot are copied before being written.
+   */
+  private Object edit;
+
+  private Node root;
+  private int shift;
+  private int size;
+  private long version;
+
+  /**
+   * Constructs a new, empty SnapshotList.
+   */
+  public SnapshotList() {
+    edit = new Object();
+    root = new Node(edit);
+    shift = 0;
+    size = 0;
+    version = 0;
+  }
+
+  /**
+   * Constructs a new SnapshotList containing the elements of
+   * {@code c}, in iteration order.
+   */
+  public SnapshotList(Collection<? extends E> c) {
+    this();
+    for (E elem : c) {
+      append(elem);
+    }
+  }
+
+  @Override
+  public E get(int index) {
+    checkIndex(index, size);
+    return SnapshotList.<E>lookup(root, shift, index);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public E set(int index, E elem) {
+    checkIndex(index, size);
+    Node leaf = editableLeaf(index);
+    @SuppressWarnings("unchecked")
+    E old = (E) leaf.slots[index & MASK];
+    leaf.slots[index & MASK] = elem;
+    ++version;
+    return old;
+  }
+
+  @Override
+  public boolean add(E elem) {
+    append(elem);
+    ++modCount;
+    return true;
+  }
+
+  @Override
+  public void add(int index, E elem) {
+    if (index < 0 || index > size) {
+      throw new IndexOutOfBoundsException("Index: " + index
+                                          + ", Size: " + size);
+    }
+    if (index == size) {
+      add(elem);
+      return;
+    }
+    append(get(size - 1));
+    for (int i = size - 2; i > index; --i) {
+      editableLeaf(i).slots[i & MASK] = get(i - 1);
+    }
+    editableLeaf(index).slots[index & MASK] = elem;
+    ++modCount;
+  }
+
+  @Override
+  public E remove(int index) {
+    checkIndex(index, size);
+    E old = get(index);
+    for (int i = index; i < size - 1; ++i) {
+      editableLeaf(i).slots[i & MASK] = get(i + 1);
+    }
+    editableLeaf(size - 1).slots[(size - 1) & MASK] = null;
+    --size;
+    ++version;
+    ++modCount;
+    return old;
+  }
+
+  @Override
+  public void clear() {
+    root = new Node(edit);
+    shift = 0;
+    size = 0;
+    ++version;
+    ++modCount;
+  }
+
+  /**
+   * Returns an unmodifiable view of the current elements of this
+   * list, in constant time. Later modifications of this list do not
+   * show through the returned list.
+   */
+  @Override
+  public List<E> snapshot() {
+    edit = new Object();
+    return new Snapshot<E>(root, shift, size);
+  }
+
+  @Override
+  public long version() {
+    return version;
+  }
+
+  /**
+   * Appends {@code elem}, growing the tree by one level if full.
+   */
+  private void append(E elem) {
+    if (size == 1 << (shift + BITS)) {
+      Node newRoot = new Node(edit);
+      newRoot.slots[0] = root;
+      root = newRoot;
+      shift += BITS;
+    }
+    ++size;
+    editableLeaf(size - 1).slots[(size - 1) & MASK] = elem;
+    ++version;
+  }
+
+  /**
+   * Returns the leaf holding index {@code index}, after making all
+   * nodes on its path owned by this list, copying or creating them as
+   * needed. {@code index} must be less than the capacity of the tree.
+   */
+  private Node editableLeaf(int index) {
+    root = editable(root);
+    Node node = root;
+    for (int level = shift; level > 0; level -= BITS) {
+      int i = (index >>> level) & MASK;
+      Node child = (Node) node.slots[i];
+      child = child == null ? new Node(edit) : editable(child);
+      node.slots[i] = child;
+      node = child;
+    }
+    return node;
+  }
+
+  /**
+   * Returns {@code node} if owned by this list, or a copy owned by
+   * this list otherwise.
+   */
+  private Node editable(Node node) {
+    if (node.owner == edit) {
+      return node;
+    }
+    return new Node(edit, node.slots.clone());
+  }
+
+  /**
+   * Returns the element at index {@code index} of the tree rooted at
+   * {@code root}, of height {@code shift}.
+   */
+  @SuppressWarnings("unchecked")
+  private static <E> E lookup(Node root, int shift, int index) {
+    Node node = root;
+    for (int level = shift; level > 0; level -= BITS) {
+      node = (Node) node.slots[(index >>> level) & MASK];
+    }
+    return (E) node.slots[index & MASK];
+  }
+
+  private static void checkIndex(int index, int size) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index
+                                          + ", Size: " + size);
+    }
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Snapshots of collections and arrays, for use in {@code old()}
+ * expressions:
+ *
+ * <pre>
+ * {@literal @}Ensures("list.size() == old(Snapshots.of(list)).size() + 1")
+ * </pre>
+ *
+ * <p>Objects that implement {@link Snapshottable}, such as
+ * {@link SnapshotList}, are snapshotted in constant time and later
+ * pay only for the elements they change. Other collections and
+ * arrays are copied. Snapshots are unmodifiable, and {@code null}
+ * is its own snapshot.
+ */
+public final class Snapshots {
+  private Snapshots() {
+  }
+
+  /**
+   * Returns a snapshot of {@code list}.
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> List<E> of(List<E> list) {
+    if (list == null) {
+      return null;
+    }
+    if (list instanceof Snapshottable) {
+      return ((Snapshottable<List<E>>) list).snapshot();
+    }
+    return Collections.unmodifiableList(new ArrayList<E>(list));
+  }
+
+  /**
+   * Returns a snapshot of {@code set}. Copies keep the iteration
+   * order of {@code set}.
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> Set<E> of(Set<E> set) {
+    if (set == null) {
+      return null;
+    }
+    if (set instanceof Snapshottable) {
+      return ((Snapshottable<Set<E>>) set).snapshot();
+    }
+    return Collections.unmodifiableSet(new LinkedHashSet<E>(set));
+  }
+
+  /**
+   * Returns a snapshot of {@code map}. Copies keep the iteration
+   * order of {@code map}.
+   */
+  @SuppressWarnings("unchecked")
+  public static <K, V> Map<K, V> of(Map<K, V> map) {
+    if (map == null) {
+      return null;
+    }
+    if (map instanceof Snapshottable) {
+      return ((Snapshottable<Map<K, V>>) map).snapshot();
+    }
+    return Collections.unmodifiableMap(new LinkedHashMap<K, V>(map));
+  }
+
+  /**
+   * Returns a snapshot of {@code c}, as a list of its elements in
+   * iteration order unless {@code c} is snapshottable.
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> Collection<E> of(Collection<E> c) {
+    if (c == null) {
+      return null;
+    }
+    if (c instanceof Snapshottable) {
+      return ((Snapshottable<Collection<E>>) c).snapshot();
+    }
+    return Collections.unmodifiableList(new ArrayList<E>(c));
+  }
+
+  /**
+   * Returns a snapshot of {@code array}, as a list.
+   */
+  public static <E> List<E> of(E[] array) {
+    if (array == null) {
+      return null;
+    }
+    return Collections.unmodifiableList(Arrays.asList(array.clone()));
+  }
+
+  /**
+   * Returns a copy of {@code array}.
+   */
+  public static int[] of(int[] array) {
+    return array == null ? null : array.clone();
+  }
+
+  /**
+   * Returns a copy of {@code array}.
+   */
+  public static long[] of(long[] array) {
+    return array == null ? null : array.clone();
+  }
+
+  /**
+   * Returns a copy of {@code array}.
+   */
+  public static double[] of(double[] array) {
+    return array == null ? null : array.clone();
+  }
+
+  /**
+   * Returns a copy of {@code array}.
+   */
+  public static byte[] of(byte[] array) {
+    return array == null ? null : array.clone();
+  }
+
+  /**
+   * Returns a copy of {@code array}.
+   */
+  public static char[] of(char[] array) {
+    return array == null ? null : array.clone();
+  }
+
+  /**
+   * Returns a copy of {@code array}.
+   */
+  public static boolean[] of(boolean[] array) {
+    return array == null ? null : array.clone();
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.util;
+
+/**
+ * An object that can take cheap snapshots of itself.
+ *
+ * <p>{@link Snapshots#of(java.util.List)} and its siblings take a
+ * snapshot of such objects instead of copying them, which makes
+ * them suitable for {@code old()} expressions over large
+ * collections.
+ *
+ * @param <T> the type of a snapshot
+ */
+public interface Snapshottable<T> {
+  /**
+   * Returns an unmodifiable view of the current state of this
+   * object, which later modifications of this object do not affect.
+   * This method should not take time proportional to the size of
+   * this object.
+   */
+  public T snapshot();
+}
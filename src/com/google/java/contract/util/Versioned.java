@@ -0,0 +1,34 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.util;
+
+/**
+ * An object that counts its own modifications.
+ *
+ * <p>Caching quantifiers, such as {@link Iterables#allCached}, only
+ * rescan collections whose version has changed since their last
+ * evaluation. Only collections that implement this interface, such
+ * as {@link SnapshotList}, are cached; others are scanned each time.
+ */
+public interface Versioned {
+  /**
+   * Returns the version of this object. The version must change
+   * whenever this object is modified.
+   */
+  public long version();
+}
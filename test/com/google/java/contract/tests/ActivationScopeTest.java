@@ -0,0 +1,146 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.PostconditionError;
+import com.google.java.contract.PreconditionError;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.runtime.ContractRuntime;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Tests per-thread activation scopes.
+ */
+public class ActivationScopeTest extends TestCase {
+  private static class A {
+    @Requires("x > 0")
+    public static void f(int x) {
+    }
+
+    @Ensures("result == old(x)")
+    public static int g(int x) {
+      return x + 1;
+    }
+
+    @Ensures("each(x -> x > 0)")
+    public static Iterator<Integer> h(Integer... xs) {
+      return Arrays.asList(xs).iterator();
+    }
+  }
+
+  @Invariant("value >= 0")
+  private static class B {
+    int value;
+
+    public void set(int v) {
+      value = v;
+    }
+  }
+
+  public void testDefault() {
+    assertTrue(ContractRuntime.getContext().isActive());
+    try {
+      A.f(0);
+      fail();
+    } catch (PreconditionError expected) {
+      /* Expected since contracts are checked outside of scopes. */
+    }
+  }
+
+  public void testDisabledScope() {
+    ContractRuntime.runWithActivation(false, new Runnable() {
+      @Override
+      public void run() {
+        assertFalse(ContractRuntime.getContext().isActive());
+        A.f(0);
+        A.g(0);
+        new B().set(-1);
+      }
+    });
+    assertTrue(ContractRuntime.getContext().isActive());
+  }
+
+  public void testDisabledScopeSkipsElementChecks() {
+    final Iterator<Integer> it = A.h(1, 0, 0);
+    assertEquals(1, (int) it.next());
+    ContractRuntime.runWithActivation(false, new Runnable() {
+      @Override
+      public void run() {
+        assertEquals(0, (int) it.next());
+      }
+    });
+    try {
+      it.next();
+      fail();
+    } catch (PostconditionError expected) {
+      /* Expected since checks resume outside of the scope. */
+    }
+  }
+
+  public void testNestedScopes() {
+    ContractRuntime.pushActivation(false);
+    try {
+      ContractRuntime.pushActivation(true);
+      try {
+        A.f(0);
+        fail();
+      } catch (PreconditionError expected) {
+        /* Expected since the inner scope enables contracts. */
+      } finally {
+        ContractRuntime.popActivation();
+      }
+      A.f(0);
+    } finally {
+      ContractRuntime.popActivation();
+    }
+  }
+
+  public void testScopeSurvivesFailure() {
+    ContractRuntime.pushActivation(true);
+    try {
+      try {
+        A.g(0);
+        fail();
+      } catch (PostconditionError expected) {
+        /* Expected since contracts are enabled. */
+      }
+      try {
+        A.f(0);
+        fail();
+      } catch (PreconditionError expected) {
+        /* Expected since the failure keeps the scope. */
+      }
+    } finally {
+      ContractRuntime.popActivation();
+    }
+  }
+
+  public void testUnbalancedPop() {
+    try {
+      ContractRuntime.popActivation();
+      fail();
+    } catch (IllegalStateException expected) {
+      /* Expected since no scope is open. */
+    }
+  }
+}
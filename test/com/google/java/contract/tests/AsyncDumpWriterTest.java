@@ -0,0 +1,197 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.core.util.AsyncDumpWriter;
+import com.google.java.contract.core.util.JavaUtils;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import javax.tools.JavaFileObject.Kind;
+
+/**
+ * Tests {@link AsyncDumpWriter}.
+ */
+public class AsyncDumpWriterTest extends TestCase {
+  /**
+   * Dumps a file and exits without closing the writer, which is then
+   * left to the shutdown hook.
+   */
+  public static class ExitWithoutClose {
+    public static void main(String[] args) {
+      AsyncDumpWriter writer = new AsyncDumpWriter(args[0], 1024);
+      writer.dump("a/B", new byte[] { 1, 2, 3 }, Kind.CLASS);
+    }
+  }
+
+  /**
+   * A writer that tells whether its shutdown hook is registered.
+   */
+  private static class HookedWriter extends AsyncDumpWriter {
+    HookedWriter(String path) {
+      super(path, 1024);
+    }
+
+    boolean isHookRegistered() {
+      if (!Runtime.getRuntime().removeShutdownHook(shutdownHook)) {
+        return false;
+      }
+      Runtime.getRuntime().addShutdownHook(shutdownHook);
+      return true;
+    }
+  }
+
+  private File dir;
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  @Override
+  protected void setUp() throws IOException {
+    dir = File.createTempFile("cofoja", "dump");
+    dir.delete();
+    dir.mkdir();
+  }
+
+  @Override
+  protected void tearDown() {
+    delete(dir);
+  }
+
+  public void testFlushOnClose() throws IOException {
+    AsyncDumpWriter writer = new AsyncDumpWriter(dir.getPath(), 1 << 20);
+    for (int i = 0; i < 200; ++i) {
+      assertTrue(writer.dump("a/B" + i, new byte[] { (byte) i }, Kind.CLASS));
+    }
+    writer.close();
+    for (int i = 0; i < 200; ++i) {
+      File file = new File(dir, "a/B" + i + ".class");
+      assertTrue(file.getPath(), file.isFile());
+      assertTrue(Arrays.equals(new byte[] { (byte) i },
+                               JavaUtils.getBytes(file)));
+    }
+    assertEquals(0, writer.getDroppedCount());
+  }
+
+  public void testDropWhenFull() {
+    AsyncDumpWriter writer = new AsyncDumpWriter(dir.getPath(), 4);
+    assertFalse(writer.dump("a/Big", new byte[5], Kind.CLASS));
+    assertTrue(writer.dump("a/Small", new byte[4], Kind.CLASS));
+    writer.close();
+    assertEquals(1, writer.getDroppedCount());
+    assertFalse(new File(dir, "a/Big.class").exists());
+    assertTrue(new File(dir, "a/Small.class").isFile());
+  }
+
+  public void testDropAfterClose() {
+    AsyncDumpWriter writer = new AsyncDumpWriter(dir.getPath(), 1024);
+    writer.close();
+    writer.close();
+    assertFalse(writer.dump("a/B", new byte[1], Kind.CLASS));
+    assertEquals(1, writer.getDroppedCount());
+  }
+
+  public void testConcurrentClose() throws InterruptedException {
+    final AsyncDumpWriter writer =
+        new AsyncDumpWriter(dir.getPath(), 1 << 20);
+    final boolean[] queued = new boolean[2000];
+    Thread[] threads = new Thread[4];
+    final int count = queued.length / threads.length;
+    for (int t = 0; t < threads.length; ++t) {
+      final int first = t * count;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = first; i < first + count; ++i) {
+            queued[i] = writer.dump("a/B" + i, new byte[] { 1 }, Kind.CLASS);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    writer.close();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    int written = 0;
+    for (int i = 0; i < queued.length; ++i) {
+      boolean exists = new File(dir, "a/B" + i + ".class").isFile();
+      assertEquals("a/B" + i, queued[i], exists);
+      if (exists) {
+        ++written;
+      }
+    }
+    assertEquals(queued.length, written + writer.getDroppedCount());
+  }
+
+  public void testZipDuplicates() throws IOException {
+    File zipFile = new File(dir, "dump.zip");
+    AsyncDumpWriter writer = new AsyncDumpWriter(zipFile.getPath(), 1024);
+    assertTrue(writer.dump("a/B", new byte[] { 1 }, Kind.CLASS));
+    assertTrue(writer.dump("a/B", new byte[] { 2 }, Kind.CLASS));
+    assertTrue(writer.dump("a/C", new byte[] { 3 }, Kind.CLASS));
+    writer.close();
+
+    ZipInputStream zin = new ZipInputStream(new FileInputStream(zipFile));
+    try {
+      ZipEntry entry = zin.getNextEntry();
+      assertEquals("a/B.class", entry.getName());
+      assertTrue(Arrays.equals(new byte[] { 1 }, JavaUtils.getBytes(zin)));
+      entry = zin.getNextEntry();
+      assertEquals("a/C.class", entry.getName());
+      assertNull(zin.getNextEntry());
+    } finally {
+      zin.close();
+    }
+  }
+
+  public void testHookRemovedOnClose() {
+    HookedWriter writer = new HookedWriter(dir.getPath());
+    assertTrue(writer.isHookRegistered());
+    writer.close();
+    assertFalse(writer.isHookRegistered());
+  }
+
+  public void testShutdownHook() throws IOException, InterruptedException {
+    String java = System.getProperty("java.home") + File.separator + "bin"
+        + File.separator + "java";
+    ProcessBuilder builder =
+        new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                           ExitWithoutClose.class.getName(), dir.getPath());
+    builder.redirectErrorStream(true);
+    Process process = builder.start();
+    JavaUtils.getBytes(process.getInputStream());
+    assertEquals(0, process.waitFor());
+    assertTrue(Arrays.equals(new byte[] { 1, 2, 3 },
+                             JavaUtils.getBytes(new File(dir, "a/B.class"))));
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.AsyncEnsures;
+import com.google.java.contract.Ensures;
+import com.google.java.contract.PostconditionError;
+import junit.framework.TestCase;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Tests postconditions on the completion value of returned futures.
+ */
+public class AsyncEnsuresTest extends TestCase {
+  private static interface Source {
+    @AsyncEnsures("result >= 0")
+    public CompletableFuture<Integer> next(int n);
+  }
+
+  private static class A implements Source {
+    protected int count;
+
+    @AsyncEnsures("result > 0")
+    public CompletableFuture<Integer> positive(int n) {
+      return CompletableFuture.completedFuture(n);
+    }
+
+    @AsyncEnsures("result == n")
+    public CompletableFuture<Integer> later(int n,
+                                            CompletableFuture<Integer> f) {
+      return f;
+    }
+
+    @Ensures("result != null")
+    @AsyncEnsures({
+      "result == old(count) + n",
+      "count == result"
+    })
+    public CompletableFuture<Integer> add(int n) {
+      count += n;
+      return CompletableFuture.completedFuture(count);
+    }
+
+    @Override
+    public CompletableFuture<Integer> next(int n) {
+      return CompletableFuture.completedFuture(n);
+    }
+
+    @AsyncEnsures("result.length() > 0")
+    public CompletableFuture<String> failing(RuntimeException e) {
+      CompletableFuture<String> f = new CompletableFuture<String>();
+      f.completeExceptionally(e);
+      return f;
+    }
+  }
+
+  protected A sample;
+
+  @Override
+  protected void setUp() {
+    sample = new A();
+  }
+
+  private static PostconditionError getViolation(CompletableFuture<?> f) {
+    try {
+      f.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof PostconditionError) {
+        return (PostconditionError) e.getCause();
+      }
+      throw e;
+    }
+    fail();
+    return null;
+  }
+
+  public void testSatisfied() {
+    assertEquals(Integer.valueOf(1), sample.positive(1).join());
+  }
+
+  public void testViolated() {
+    CompletableFuture<Integer> f = sample.positive(-1);
+    assertEquals("[result > 0]", getViolation(f).getMessages().toString());
+  }
+
+  public void testNotBlocking() {
+    CompletableFuture<Integer> source = new CompletableFuture<Integer>();
+    CompletableFuture<Integer> f = sample.later(2, source);
+    assertFalse(f.isDone());
+    source.complete(3);
+    assertEquals("[result == n]", getViolation(f).getMessages().toString());
+  }
+
+  public void testCompletedByOtherThread() throws InterruptedException {
+    final CompletableFuture<Integer> source = new CompletableFuture<Integer>();
+    CompletableFuture<Integer> f = sample.later(2, source);
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        source.complete(2);
+      }
+    };
+    thread.start();
+    thread.join();
+    assertEquals(Integer.valueOf(2), f.join());
+  }
+
+  public void testOldAndEnsures() {
+    assertEquals(Integer.valueOf(2), sample.add(2).join());
+    assertEquals(Integer.valueOf(5), sample.add(3).join());
+  }
+
+  public void testInherited() {
+    assertEquals(Integer.valueOf(0), sample.next(0).join());
+    CompletableFuture<Integer> f = sample.next(-1);
+    assertEquals("[result >= 0]", getViolation(f).getMessages().toString());
+  }
+
+  public void testExceptionalCompletion() {
+    IllegalStateException e = new IllegalStateException();
+    try {
+      sample.failing(e).join();
+      fail();
+    } catch (CompletionException expected) {
+      assertSame(e, expected.getCause());
+    }
+  }
+}
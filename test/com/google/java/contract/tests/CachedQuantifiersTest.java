@@ -0,0 +1,194 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.util.Iterables;
+import com.google.java.contract.util.Predicate;
+import com.google.java.contract.util.Predicates;
+import com.google.java.contract.util.SnapshotList;
+import com.google.java.contract.util.Versioned;
+import junit.framework.TestCase;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tests caching quantifiers.
+ */
+public class CachedQuantifiersTest extends TestCase {
+  private static class CountingPredicate implements Predicate<Integer> {
+    protected int count;
+
+    @Override
+    public boolean apply(Integer x) {
+      ++count;
+      return x >= 0;
+    }
+  }
+
+  private static class VersionedList extends AbstractList<Integer>
+      implements Versioned {
+    protected List<Integer> elements = new ArrayList<Integer>();
+    protected long version;
+
+    @Override
+    public Integer get(int i) {
+      return elements.get(i);
+    }
+
+    @Override
+    public int size() {
+      return elements.size();
+    }
+
+    @Override
+    public Integer set(int i, Integer x) {
+      ++version;
+      return elements.set(i, x);
+    }
+
+    @Override
+    public long version() {
+      return version;
+    }
+  }
+
+  private static class VersionedMap extends HashMap<String, Integer>
+      implements Versioned {
+    protected long version;
+
+    @Override
+    public Integer put(String key, Integer value) {
+      ++version;
+      return super.put(key, value);
+    }
+
+    @Override
+    public long version() {
+      return version;
+    }
+  }
+
+  protected CountingPredicate p;
+
+  @Override
+  protected void setUp() {
+    p = new CountingPredicate();
+  }
+
+  public void testList() {
+    List<Integer> xs = new SnapshotList<Integer>();
+    xs.add(1);
+    xs.add(2);
+    assertTrue(Iterables.allCached(xs, p));
+    assertTrue(Iterables.allCached(xs, p));
+    assertEquals(2, p.count);
+    xs.add(-1);
+    assertFalse(Iterables.allCached(xs, p));
+    assertFalse(Iterables.allCached(xs, p));
+    assertEquals(5, p.count);
+  }
+
+  public void testAllAndAny() {
+    List<Integer> xs = new SnapshotList<Integer>();
+    xs.add(-1);
+    xs.add(1);
+    assertFalse(Iterables.allCached(xs, p));
+    assertTrue(Iterables.anyCached(xs, p));
+    assertFalse(Iterables.allCached(xs, p));
+    assertTrue(Iterables.anyCached(xs, p));
+    assertEquals(3, p.count);
+  }
+
+  public void testPredicates() {
+    CountingPredicate q = new CountingPredicate();
+    List<Integer> xs = new SnapshotList<Integer>();
+    xs.add(1);
+    assertTrue(Iterables.allCached(xs, p));
+    assertTrue(Iterables.allCached(xs, q));
+    assertEquals(1, p.count);
+    assertEquals(1, q.count);
+  }
+
+  public void testSet() {
+    Set<Integer> xs = new HashSet<Integer>();
+    xs.add(1);
+    assertTrue(Iterables.allCached(xs, p));
+    assertTrue(Iterables.allCached(xs, p));
+    assertEquals(2, p.count);
+    xs.add(-1);
+    assertFalse(Iterables.allCached(xs, p));
+  }
+
+  public void testStandardList() {
+    List<Integer> xs = Arrays.asList(1, 2);
+    assertTrue(Iterables.allCached(xs, p));
+    xs.set(0, -1);
+    assertFalse(Iterables.allCached(xs, p));
+    assertEquals(3, p.count);
+  }
+
+  public void testVersioned() {
+    VersionedList xs = new VersionedList();
+    xs.elements.add(1);
+    assertTrue(Iterables.allCached(xs, p));
+    assertTrue(Iterables.allCached(xs, p));
+    assertEquals(1, p.count);
+    xs.set(0, -1);
+    assertFalse(Iterables.allCached(xs, p));
+  }
+
+  public void testUnversioned() {
+    List<Integer> xs = new CopyOnWriteArrayList<Integer>();
+    xs.add(1);
+    assertTrue(Iterables.allCached(xs, p));
+    assertTrue(Iterables.allCached(xs, p));
+    assertEquals(2, p.count);
+    assertFalse(Iterables.allCached(null, p));
+  }
+
+  public void testMap() {
+    Map<String, Integer> m = new VersionedMap();
+    m.put("a", 1);
+    Predicate<Map<String, Integer>> values =
+        Predicates.<String, Integer>allValuesCached(p);
+    assertTrue(values.apply(m));
+    assertTrue(Predicates.<String, Integer>allValuesCached(p).apply(m));
+    assertEquals(1, p.count);
+    m.put("b", -1);
+    assertFalse(values.apply(m));
+    assertTrue(Predicates.<String, Integer>anyValueCached(p).apply(m));
+  }
+
+  public void testStandardMap() {
+    Map<String, Integer> m = new HashMap<String, Integer>();
+    m.put("a", 1);
+    Predicate<Map<String, Integer>> values =
+        Predicates.<String, Integer>allValuesCached(p);
+    assertTrue(values.apply(m));
+    assertTrue(values.apply(m));
+    assertEquals(2, p.count);
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.agent.ContractClassFileTransformer;
+import com.google.java.contract.core.agent.ContractStripper;
+import com.google.java.contract.core.util.JavaUtils;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests {@link ContractStripper}.
+ */
+public class ContractStripperTest extends TestCase {
+  public static class Target {
+    @Requires("x > 0")
+    @Ensures("result == x")
+    public int f(int x) {
+      return x;
+    }
+  }
+
+  private static final String BASE_NAME =
+      Target.class.getName().replace('.', '/');
+  private static final String CLASS_NAME = BASE_NAME + ".class";
+  private static final String CONTRACTS_NAME =
+      BASE_NAME + JavaUtils.CONTRACTS_EXTENSION;
+  private static final String HELPER_NAME =
+      "x/Y" + JavaUtils.HELPER_CLASS_SUFFIX + ".class";
+
+  private byte[] bytecode;
+  private byte[] contractBytecode;
+  private ContractStripper stripper;
+
+  private static byte[] makeJar(Map<String, byte[]> entries)
+      throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ZipOutputStream zout = new ZipOutputStream(out);
+    for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+      zout.putNextEntry(new ZipEntry(entry.getKey()));
+      zout.write(entry.getValue());
+      zout.closeEntry();
+    }
+    zout.close();
+    return out.toByteArray();
+  }
+
+  private static Map<String, byte[]> readJar(byte[] jar) throws IOException {
+    HashMap<String, byte[]> entries = new HashMap<String, byte[]>();
+    ZipInputStream zin = new ZipInputStream(new ByteArrayInputStream(jar));
+    ZipEntry entry;
+    while ((entry = zin.getNextEntry()) != null) {
+      entries.put(entry.getName(), JavaUtils.getBytes(zin));
+    }
+    return entries;
+  }
+
+  private Map<String, byte[]> strip(Map<String, byte[]> entries)
+      throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    stripper.strip(new ByteArrayInputStream(makeJar(entries)), out);
+    return readJar(out.toByteArray());
+  }
+
+  private static int countAnnotations(byte[] bytecode) {
+    final int[] count = { 0 };
+    new ClassReader(bytecode).accept(new ClassVisitor(Opcodes.ASM5) {
+      @Override
+      public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+        ++count[0];
+        return null;
+      }
+
+      @Override
+      public MethodVisitor visitMethod(int access, String name, String desc,
+                                       String signature, String[] exceptions) {
+        return new MethodVisitor(Opcodes.ASM5) {
+          @Override
+          public AnnotationVisitor visitAnnotation(String desc,
+                                                   boolean visible) {
+            ++count[0];
+            return null;
+          }
+        };
+      }
+    }, 0);
+    return count[0];
+  }
+
+  @Override
+  protected void setUp() throws IOException {
+    bytecode = TestUtils.getResourceBytes(CLASS_NAME);
+    contractBytecode = TestUtils.getResourceBytes(CONTRACTS_NAME);
+    stripper = new ContractStripper();
+  }
+
+  public void testStrip() throws IOException {
+    HashMap<String, byte[]> entries = new HashMap<String, byte[]>();
+    entries.put(CLASS_NAME, bytecode);
+    entries.put(CONTRACTS_NAME, contractBytecode);
+    entries.put(HELPER_NAME, new byte[] { 0 });
+
+    Map<String, byte[]> stripped = strip(entries);
+    assertEquals(1, stripped.size());
+    assertNotNull(stripped.get(CLASS_NAME));
+    assertEquals(2, countAnnotations(bytecode));
+    assertEquals(0, countAnnotations(stripped.get(CLASS_NAME)));
+    assertTrue(stripper.getDanglingReferences().isEmpty());
+  }
+
+  public void testWovenClassReported() throws Exception {
+    ContractClassFileTransformer transformer =
+        new ContractClassFileTransformer(getClass().getClassLoader());
+    byte[] woven = transformer.transformWithContracts(bytecode,
+                                                      contractBytecode);
+
+    HashMap<String, byte[]> entries = new HashMap<String, byte[]>();
+    entries.put(CLASS_NAME, woven);
+    strip(entries);
+    assertFalse(stripper.getDanglingReferences().isEmpty());
+  }
+}
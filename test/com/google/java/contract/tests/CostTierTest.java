@@ -0,0 +1,248 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.ContractEnvironment;
+import com.google.java.contract.Cost;
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.InvariantError;
+import com.google.java.contract.PostconditionError;
+import com.google.java.contract.PreconditionError;
+import com.google.java.contract.Requires;
+import com.google.java.contract.ThrowEnsures;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests activation of contract clauses by cost tier.
+ *
+ * @see Cofoja
+ */
+public class CostTierTest extends TestCase {
+  private static class A {
+    @Requires(value = { "x > 0", "false" },
+              cost = { Cost.CHEAP, Cost.EXPENSIVE })
+    public static void f(int x) {
+    }
+
+    @Requires(value = { "false", "false" }, cost = Cost.EXPENSIVE)
+    public static void g() {
+    }
+
+    @Ensures(value = { "result > old(x)", "false" },
+             cost = { Cost.NORMAL, Cost.EXPENSIVE })
+    public static int h(int x) {
+      return x + 1;
+    }
+
+    @Ensures(value = { "result > old(x)", "old(x) < 0" },
+             cost = { Cost.NORMAL, Cost.EXPENSIVE })
+    public static int k(int x) {
+      return x;
+    }
+
+    @ThrowEnsures(value = { "IllegalStateException", "false" },
+                  cost = Cost.EXPENSIVE)
+    public static void t() {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Invariant(value = "value >= 0", cost = Cost.EXPENSIVE)
+  private static class B {
+    int value;
+
+    public void set(int v) {
+      value = v;
+    }
+  }
+
+  @Invariant(value = "value >= 0", cost = Cost.EXPENSIVE)
+  private static class C {
+    int value;
+
+    public void set(int v) {
+      value = v;
+    }
+  }
+
+  private static class D {
+    @Requires(value = "false", cost = Cost.CHEAP)
+    public static void f() {
+    }
+  }
+
+  private static class F {
+    @Requires({ "x > 0", "list.isEmpty()", "list.containsAll(other)" })
+    public static void f(int x, List<Integer> list, List<Integer> other) {
+    }
+
+    @Requires("list.size() > 0")
+    public static void g(List<Integer> list) {
+    }
+  }
+
+  private static interface I {
+    @Requires(value = "x > 0", cost = Cost.EXPENSIVE)
+    public void f(int x);
+  }
+
+  private static class E implements I {
+    @Override
+    public void f(int x) {
+    }
+  }
+
+  @Invariant(value = "value >= 0", cost = Cost.CHEAP)
+  private static class G {
+    int value;
+  }
+
+  @Invariant(value = "value < 100", cost = Cost.EXPENSIVE)
+  private static class H extends G {
+    public void set(int v) {
+      value = v;
+    }
+  }
+
+  @Override
+  protected void setUp() {
+    ContractEnvironment env = Cofoja.contractEnv;
+
+    env.disableCostTier("com.google.java.contract.tests.CostTierTest$A",
+                        Cost.EXPENSIVE);
+    env.disableCostTier("com.google.java.contract.tests.CostTierTest$B",
+                        Cost.EXPENSIVE);
+    env.disableCostTier("com.google.java.contract.tests.CostTierTest$D",
+                        Cost.EXPENSIVE);
+    env.disableCostTier("com.google.java.contract.tests.CostTierTest$I",
+                        Cost.EXPENSIVE);
+    env.disableCostTier("com.google.java.contract.tests.CostTierTest$F",
+                        Cost.NORMAL);
+    env.disableCostTier("com.google.java.contract.tests.CostTierTest$F",
+                        Cost.EXPENSIVE);
+    env.disableCostTier("com.google.java.contract.tests.CostTierTest$H",
+                        Cost.CHEAP);
+    env.disableCostTier("com.google.java.contract.tests.CostTierTest$H",
+                        Cost.EXPENSIVE);
+  }
+
+  public void testCostTierEnabled() {
+    ContractEnvironment env = Cofoja.contractEnv;
+    assertFalse(env.hasCostTierEnabled(
+        "com.google.java.contract.tests.CostTierTest$A", Cost.EXPENSIVE));
+    assertTrue(env.hasCostTierEnabled(
+        "com.google.java.contract.tests.CostTierTest$A", Cost.CHEAP));
+    assertTrue(env.hasCostTierEnabled(
+        "com.google.java.contract.tests.CostTierTest$C", Cost.EXPENSIVE));
+  }
+
+  public void testDisabledClause() {
+    A.f(1);
+  }
+
+  public void testEnabledClause() {
+    try {
+      A.f(0);
+      fail();
+    } catch (PreconditionError expected) {
+      /* Expected since cheap clauses are checked. */
+    }
+  }
+
+  public void testSingleCost() {
+    A.g();
+  }
+
+  public void testDisabledPostcondition() {
+    assertEquals(2, A.h(1));
+  }
+
+  public void testEnabledPostcondition() {
+    try {
+      A.k(1);
+      fail();
+    } catch (PostconditionError expected) {
+      /* Expected since normal clauses are checked. */
+    }
+  }
+
+  public void testDisabledExceptionalPostcondition() {
+    try {
+      A.t();
+      fail();
+    } catch (IllegalStateException expected) {
+      /* Expected since the exceptional postcondition is disabled. */
+    }
+  }
+
+  public void testDisabledInvariant() {
+    new B().set(-1);
+  }
+
+  public void testEnabledInvariant() {
+    try {
+      new C().set(-1);
+      fail();
+    } catch (InvariantError expected) {
+      /* Expected since all tiers are enabled by default. */
+    }
+  }
+
+  public void testOtherTierDisabled() {
+    try {
+      D.f();
+      fail();
+    } catch (PreconditionError expected) {
+      /* Expected since only the expensive tier is disabled. */
+    }
+  }
+
+  public void testInheritedClause() {
+    new E().f(0);
+  }
+
+  public void testInheritedInvariantOwnTiers() {
+    try {
+      new H().set(-1);
+      fail();
+    } catch (InvariantError expected) {
+      /* Expected since inherited clauses follow the tiers of G. */
+    }
+  }
+
+  public void testEstimatedDisabledClauses() {
+    F.f(1, Arrays.asList(1), Arrays.asList(2));
+    F.g(Collections.<Integer>emptyList());
+  }
+
+  public void testEstimatedEnabledClause() {
+    try {
+      F.f(0, Collections.<Integer>emptyList(),
+          Collections.<Integer>emptyList());
+      fail();
+    } catch (PreconditionError expected) {
+      /* Expected since plain comparisons are estimated cheap. */
+    }
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.ContractEnvironment;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.InvariantError;
+import com.google.java.contract.PreconditionError;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.runtime.ContractRuntime;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests deferral of invariant checks with
+ * {@link ContractRuntime#deferInvariants(Runnable)}.
+ */
+public class DeferredInvariantsTest extends TestCase {
+  private static int checkCount;
+
+  public static boolean allPositive(List<Integer> xs) {
+    ++checkCount;
+    for (int x : xs) {
+      if (x < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Invariant("com.google.java.contract.tests.DeferredInvariantsTest"
+             + ".allPositive(items)")
+  public static class Bag {
+    protected List<Integer> items = new ArrayList<Integer>();
+
+    @Requires("x != 42")
+    public void push(int x) {
+      items.add(x);
+    }
+
+    public void pushAll(int n) {
+      for (int i = 0; i < n; ++i) {
+        push(i);
+      }
+    }
+  }
+
+  /* Invariants disabled by the activation rules. */
+  public static class LaxBag extends Bag {
+    @Requires("x != 42")
+    public void corrupt(int x) {
+      items.add(-1);
+    }
+  }
+
+  private Bag bag;
+
+  @Override
+  protected void setUp() {
+    ContractEnvironment env = Cofoja.contractEnv;
+    env.disableInvariants(
+        "com.google.java.contract.tests.DeferredInvariantsTest$LaxBag");
+
+    bag = new Bag();
+    checkCount = 0;
+  }
+
+  public void testCheckedOnce() {
+    ContractRuntime.deferInvariants(new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < 1000; ++i) {
+          bag.push(1);
+        }
+      }
+    });
+    assertEquals(1, checkCount);
+    assertEquals(1000, bag.items.size());
+  }
+
+  public void testNotDeferredOutside() {
+    bag.push(1);
+    assertEquals(2, checkCount);
+  }
+
+  public void testViolationOnClose() {
+    final boolean[] reached = new boolean[1];
+    try {
+      ContractRuntime.deferInvariants(new Runnable() {
+        @Override
+        public void run() {
+          bag.push(-1);
+          reached[0] = true;
+        }
+      });
+      fail();
+    } catch (InvariantError expected) {
+      assertTrue(reached[0]);
+    }
+    bag.items.clear();
+    bag.push(1);
+  }
+
+  public void testPreconditionsChecked() {
+    try {
+      ContractRuntime.deferInvariants(new Runnable() {
+        @Override
+        public void run() {
+          bag.push(42);
+        }
+      });
+      fail();
+    } catch (PreconditionError expected) {
+      assertEquals(1, checkCount);
+    }
+  }
+
+  public void testNested() {
+    ContractRuntime.deferInvariants(new Runnable() {
+      @Override
+      public void run() {
+        ContractRuntime.deferInvariants(new Runnable() {
+          @Override
+          public void run() {
+            bag.pushAll(10);
+          }
+        });
+        assertEquals(0, checkCount);
+        bag.push(1);
+      }
+    });
+    assertEquals(1, checkCount);
+  }
+
+  public void testDisabledNotRecorded() {
+    final LaxBag lax = new LaxBag();
+    checkCount = 0;
+    ContractRuntime.deferInvariants(new Runnable() {
+      @Override
+      public void run() {
+        lax.corrupt(1);
+      }
+    });
+    assertEquals(0, checkCount);
+  }
+}
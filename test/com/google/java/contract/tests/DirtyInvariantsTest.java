@@ -0,0 +1,116 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.core.agent.ContractClassFileTransformer;
+
+import junit.framework.TestCase;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Tests that, when tracking dirty objects, invariants are only
+ * checked on objects that may have changed since their last check.
+ */
+public class DirtyInvariantsTest extends TestCase {
+  private static int checkCount;
+
+  public static boolean check() {
+    ++checkCount;
+    return true;
+  }
+
+  private Class<?> clazz;
+
+  private static Class<?> weave(Class<?> original) throws Exception {
+    String name = original.getName().replace('.', '/');
+    ContractClassFileTransformer transformer =
+        new ContractClassFileTransformer();
+    transformer.setTrackDirtyInvariants(true);
+    byte[] bytecode = TestUtils.getResourceBytes(name + ".class");
+    byte[] woven =
+        transformer.transform(DirtyInvariantsTest.class.getClassLoader(), name,
+                              null, null, bytecode);
+    assertNotNull(woven);
+    return new TestUtils.SingleClassLoader(original.getName(), woven)
+        .loadClass(original.getName());
+  }
+
+  private static boolean hasCleanFlag(Class<?> clazz) {
+    for (Field field : clazz.getDeclaredFields()) {
+      if (field.getName().equals("com$google$java$contract$clean")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    clazz = weave(DirtyCounter.class);
+    checkCount = 0;
+  }
+
+  private Object call(Object target, String name) throws Exception {
+    return clazz.getMethod(name).invoke(target);
+  }
+
+  public void testCleanAfterConstruction() throws Exception {
+    Object counter = clazz.newInstance();
+    assertEquals(1, checkCount);
+    call(counter, "get");
+    call(counter, "get");
+    assertEquals(1, checkCount);
+  }
+
+  public void testDirtyAfterWrite() throws Exception {
+    Object counter = clazz.newInstance();
+    call(counter, "inc");
+    assertEquals(2, checkCount);
+    call(counter, "get");
+    assertEquals(2, checkCount);
+  }
+
+  public void testDirtyAfterMutatingMethod() throws Exception {
+    Object counter = clazz.newInstance();
+    call(counter, "touch");
+    assertEquals(2, checkCount);
+  }
+
+  public void testDirtyOther() throws Exception {
+    Object counter = clazz.newInstance();
+    Object other = clazz.newInstance();
+    Method incOther = clazz.getMethod("incOther", clazz);
+    incOther.invoke(counter, other);
+    assertEquals(3, checkCount);
+    call(other, "get");
+    assertEquals(4, checkCount);
+    call(other, "get");
+    assertEquals(4, checkCount);
+  }
+
+  public void testTracked() {
+    assertTrue(hasCleanFlag(clazz));
+  }
+
+  public void testEnclosingNotTracked() throws Exception {
+    /* Nestmates may write private fields without an accessor. */
+    assertFalse(hasCleanFlag(weave(EnclosingCounter.class)));
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.PostconditionError;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Tests element-wise postconditions on returned streams, iterables
+ * and iterators.
+ */
+public class EachEnsuresTest extends TestCase {
+  private static interface Source {
+    @Ensures("each(x -> x >= 0)")
+    public Iterator<Integer> iterator(Integer... xs);
+  }
+
+  private static class A implements Source {
+    protected int consumed;
+
+    @Ensures("each(x -> x != null)")
+    public Stream<String> stream(String... xs) {
+      return Arrays.stream(xs).peek(x -> ++consumed);
+    }
+
+    @Ensures({
+      "result != null",
+      "each(x -> x < max)"
+    })
+    public Iterable<Integer> below(int max, Integer... xs) {
+      return Arrays.asList(xs);
+    }
+
+    @Override
+    public Iterator<Integer> iterator(Integer... xs) {
+      return Arrays.asList(xs).iterator();
+    }
+  }
+
+  protected A sample;
+
+  @Override
+  protected void setUp() {
+    sample = new A();
+  }
+
+  public void testStream() {
+    List<String> list =
+        sample.stream("a", "b").collect(Collectors.toList());
+    assertEquals(Arrays.asList("a", "b"), list);
+  }
+
+  public void testStreamLazy() {
+    Stream<String> s = sample.stream("a", null, "c");
+    assertEquals(0, sample.consumed);
+    Iterator<String> it = s.iterator();
+    assertEquals("a", it.next());
+    try {
+      it.next();
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[each(x -> x != null)]",
+                   expected.getMessages().toString());
+    }
+    assertEquals(2, sample.consumed);
+  }
+
+  public void testIterable() {
+    int sum = 0;
+    for (int x : sample.below(3, 1, 2)) {
+      sum += x;
+    }
+    assertEquals(3, sum);
+  }
+
+  public void testIterableViolated() {
+    Iterable<Integer> xs = sample.below(3, 1, 3);
+    Iterator<Integer> it = xs.iterator();
+    assertEquals(Integer.valueOf(1), it.next());
+    try {
+      it.next();
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[each(x -> x < max)]",
+                   expected.getMessages().toString());
+    }
+  }
+
+  public void testInheritedIterator() {
+    Iterator<Integer> it = sample.iterator(0, -1);
+    assertEquals(Integer.valueOf(0), it.next());
+    try {
+      it.next();
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[each(x -> x >= 0)]",
+                   expected.getMessages().toString());
+    }
+  }
+}
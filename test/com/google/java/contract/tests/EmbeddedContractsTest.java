@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.PreconditionError;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.agent.ContractEmbedder;
+import com.google.java.contract.core.agent.ContractsAttribute;
+import com.google.java.contract.core.util.JavaUtils;
+import org.objectweb.asm.ClassReader;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Tests classes with contracts embedded in their class files.
+ */
+public class EmbeddedContractsTest extends TestCase {
+  public static class Target {
+    @Requires("x > 0")
+    public int f(int x) {
+      return x;
+    }
+  }
+
+  private byte[] bytecode;
+  private byte[] contractBytecode;
+
+  @Override
+  protected void setUp() throws IOException {
+    String baseName = Target.class.getName().replace('.', '/');
+    bytecode = TestUtils.getResourceBytes(baseName + ".class");
+    contractBytecode =
+        TestUtils.getResourceBytes(baseName + JavaUtils.CONTRACTS_EXTENSION);
+  }
+
+  public void testExtractNone() {
+    assertNull(ContractsAttribute.extract(new ClassReader(bytecode)));
+  }
+
+  public void testExtractEmbedded() {
+    byte[] embedded = ContractEmbedder.embed(bytecode, contractBytecode);
+    byte[] extracted = ContractsAttribute.extract(new ClassReader(embedded));
+    assertNotNull(extracted);
+    assertTrue(Arrays.equals(contractBytecode, extracted));
+  }
+
+  public void testEmbedTwice() {
+    byte[] once = ContractEmbedder.embed(bytecode, contractBytecode);
+    byte[] twice = ContractEmbedder.embed(once, contractBytecode);
+    assertEquals(once.length, twice.length);
+  }
+
+  public void testEmbeddedContractsChecked() throws Exception {
+    byte[] embedded = ContractEmbedder.embed(bytecode, contractBytecode);
+    ClassLoader loader =
+        new TestUtils.SingleClassLoader(Target.class.getName(), embedded);
+    Class<?> clazz = loader.loadClass(Target.class.getName());
+    assertNotSame(Target.class, clazz);
+
+    Object target = clazz.newInstance();
+    Method f = clazz.getMethod("f", int.class);
+    assertEquals(1, f.invoke(target, 1));
+    try {
+      f.invoke(target, -1);
+      fail();
+    } catch (InvocationTargetException e) {
+      assertTrue(e.getCause() instanceof PreconditionError);
+    }
+  }
+}
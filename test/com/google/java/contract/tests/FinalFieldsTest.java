@@ -25,6 +25,8 @@ import com.google.java.contract.Requires;
 
 import junit.framework.TestCase;
 
+import java.lang.reflect.Field;
+
 /**
  * Tests that invariants are correctly applied to final fields, which can
  * be initialized during the constructor call or before.
@@ -40,6 +42,76 @@ public class FinalFieldsTest extends TestCase {
     public void fail();
   }
 
+  @Invariant({ "x >= 0", "name != null && name.length() > 0" })
+  private static class ImmutablePoint {
+    private final int x;
+    private final String name;
+
+    public ImmutablePoint(int x, String name) {
+      this.x = x;
+      this.name = name;
+    }
+
+    public int getX() {
+      return x;
+    }
+  }
+
+  @Invariant("x >= 0")
+  private static class MutablePoint {
+    private final int x;
+    private int[] history;
+
+    public MutablePoint(int x) {
+      this.x = x;
+      history = new int[0];
+    }
+
+    public int getX() {
+      return x;
+    }
+  }
+
+  /**
+   * Sets final field {@code name} of {@code obj}, behind the back of
+   * contracts.
+   */
+  private static void setFinalField(Object obj, String name, Object value)
+      throws Exception {
+    Field field = obj.getClass().getDeclaredField(name);
+    field.setAccessible(true);
+    field.set(obj, value);
+  }
+
+  public void testImmutableInvariantConstructor() {
+    try {
+      new ImmutablePoint(-1, "p");
+      fail();
+    } catch (InvariantError expected) {
+    }
+    try {
+      new ImmutablePoint(1, "");
+      fail();
+    } catch (InvariantError expected) {
+    }
+  }
+
+  public void testImmutableInvariantNotRechecked() throws Exception {
+    ImmutablePoint p = new ImmutablePoint(1, "p");
+    setFinalField(p, "x", -1);
+    assertEquals(-1, p.getX());
+  }
+
+  public void testMutableInvariantRechecked() throws Exception {
+    MutablePoint p = new MutablePoint(1);
+    setFinalField(p, "x", -1);
+    try {
+      p.getX();
+      fail();
+    } catch (InvariantError expected) {
+    }
+  }
+
   public void testFinalField() {
     @Invariant("field == 1")
     class ContractedFinalField {
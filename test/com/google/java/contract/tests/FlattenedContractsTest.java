@@ -0,0 +1,269 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.InvariantError;
+import com.google.java.contract.PostconditionError;
+import com.google.java.contract.PreconditionError;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.agent.ContractClassFileTransformer;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests flattening of inherited contracts.
+ */
+public class FlattenedContractsTest extends TestCase {
+  interface I {
+    @Requires("x >= 0")
+    @Ensures("result >= 0")
+    int f(int x);
+  }
+
+  @Invariant("a >= 0")
+  static class A implements I {
+    int a;
+
+    @Override
+    @Requires("x >= 0")
+    public int f(int x) {
+      return x;
+    }
+
+    void setA(int a) {
+      this.a = a;
+    }
+
+    void setB(int b) {
+    }
+  }
+
+  @Invariant("b >= 0")
+  static class B extends A {
+    /* Private: B's invariant cannot be inlined into subclasses. */
+    private int b;
+
+    @Override
+    void setB(int b) {
+      this.b = b;
+    }
+  }
+
+  @Invariant("c >= 0")
+  static class C extends B {
+    int c;
+
+    @Override
+    @Requires("x >= 0")
+    public int f(int x) {
+      return x - 1;
+    }
+  }
+
+  private static final String PREFIX = FlattenedContractsTest.class.getName();
+
+  /**
+   * A class loader that defines the nested classes of this test,
+   * woven with flattening, and hides contract class files from the
+   * agent.
+   */
+  private static class FlatteningClassLoader
+      extends TestUtils.ContractHidingClassLoader {
+    private ContractClassFileTransformer transformer;
+    private Map<String, byte[]> woven;
+
+    FlatteningClassLoader() {
+      transformer = new ContractClassFileTransformer();
+      transformer.setFlattenInheritedContracts(true);
+      woven = new HashMap<String, byte[]>();
+    }
+
+    @Override
+    protected synchronized Class<?> loadClass(String name, boolean resolve)
+        throws ClassNotFoundException {
+      if (!name.startsWith(PREFIX + "$")) {
+        return super.loadClass(name, resolve);
+      }
+      Class<?> clazz = findLoadedClass(name);
+      if (clazz == null) {
+        String binaryName = name.replace('.', '/');
+        ClassLoader parent = getParent();
+        byte[] bytecode;
+        try {
+          bytecode = TestUtils.getResourceBytes(binaryName + ".class");
+        } catch (IOException e) {
+          throw new ClassNotFoundException(name, e);
+        }
+        byte[] data =
+            transformer.transform(parent, binaryName, null, null, bytecode);
+        if (data == null) {
+          data = bytecode;
+        }
+        woven.put(binaryName, data);
+        clazz = defineClass(name, data, 0, data.length);
+      }
+      return clazz;
+    }
+
+    byte[] getWovenBytes(String name) {
+      return woven.get(name.replace('.', '/'));
+    }
+  }
+
+  private FlatteningClassLoader loader;
+
+  /**
+   * Returns the names of the helper contract methods invoked by the
+   * contract methods of the class file {@code bytecode}.
+   */
+  private static Set<String> getHelperCalls(byte[] bytecode) {
+    final Set<String> calls = new HashSet<String>();
+    new ClassReader(bytecode).accept(new ClassVisitor(Opcodes.ASM5) {
+      @Override
+      public MethodVisitor visitMethod(int access, String name, String desc,
+                                       String signature, String[] exceptions) {
+        if (!name.startsWith("com$google$java$contract$")
+            || name.matches("com\\$google\\$java\\$contract\\$[A-Z]+H\\$.*")) {
+          return null;
+        }
+        return new MethodVisitor(Opcodes.ASM5) {
+          @Override
+          public void visitMethodInsn(int opcode, String owner, String name,
+                                      String desc, boolean itf) {
+            if (name.matches("com\\$google\\$java\\$contract\\$[A-Z]+H\\$.*")) {
+              calls.add(name);
+            }
+          }
+        };
+      }
+    }, 0);
+    return calls;
+  }
+
+  private static String mangle(String className) {
+    return className.replace('.', '$');
+  }
+
+  private Object newInstance(String simpleName) throws Exception {
+    Class<?> clazz = loader.loadClass(PREFIX + "$" + simpleName);
+    Constructor<?> ctor = clazz.getDeclaredConstructor();
+    ctor.setAccessible(true);
+    return ctor.newInstance();
+  }
+
+  private static Object invoke(Object target, String name, int arg)
+      throws Throwable {
+    Class<?> clazz = target.getClass();
+    Method method = null;
+    while (method == null) {
+      for (Method m : clazz.getDeclaredMethods()) {
+        if (m.getName().equals(name) && !m.isBridge()) {
+          method = m;
+        }
+      }
+      clazz = clazz.getSuperclass();
+    }
+    method.setAccessible(true);
+    try {
+      return method.invoke(target, arg);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  @Override
+  protected void setUp() {
+    loader = new FlatteningClassLoader();
+  }
+
+  public void testInlinedHelpers() throws Exception {
+    newInstance("C");
+    Set<String> calls = getHelperCalls(loader.getWovenBytes(PREFIX + "$C"));
+    String a = mangle(PREFIX + "$A");
+    String b = mangle(PREFIX + "$B");
+    String c = mangle(PREFIX + "$C");
+    String i = mangle(PREFIX + "$I");
+    for (String call : calls) {
+      assertFalse(call, call.contains("$" + a + "$"));
+      assertFalse(call, call.contains("$" + i + "$"));
+    }
+    assertTrue(calls.contains("com$google$java$contract$IH$" + c));
+    /* Not inlined: references a private field. */
+    assertTrue(calls.contains("com$google$java$contract$IH$" + b));
+  }
+
+  public void testPrecondition() throws Throwable {
+    Object c = newInstance("C");
+    assertEquals(0, invoke(c, "f", 1));
+    try {
+      invoke(c, "f", -1);
+      fail();
+    } catch (PreconditionError expected) {
+      /* From C, A and I, in that order. */
+      assertEquals("[x >= 0, x >= 0, x >= 0]",
+                   expected.getMessages().toString());
+    }
+  }
+
+  public void testInterfacePostcondition() throws Throwable {
+    Object c = newInstance("C");
+    try {
+      invoke(c, "f", 0);
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[result >= 0]", expected.getMessages().toString());
+    }
+  }
+
+  public void testInlinedInvariant() throws Throwable {
+    Object c = newInstance("C");
+    invoke(c, "setA", 1);
+    try {
+      invoke(c, "setA", -1);
+      fail();
+    } catch (InvariantError expected) {
+      assertEquals("[a >= 0]", expected.getMessages().toString());
+    }
+  }
+
+  public void testInvariantNotInlined() throws Throwable {
+    Object c = newInstance("C");
+    invoke(c, "setB", 1);
+    try {
+      invoke(c, "setB", -1);
+      fail();
+    } catch (InvariantError expected) {
+      assertEquals("[b >= 0]", expected.getMessages().toString());
+    }
+  }
+}
@@ -123,6 +123,41 @@ public class GenericsTest extends TestCase {
     }
   }
 
+  /* Counts evaluations of the preconditions below. */
+  static int preconditionCount;
+
+  static boolean countPrecondition() {
+    ++preconditionCount;
+    return true;
+  }
+
+  private static interface K<T> {
+    @Requires("GenericsTest.countPrecondition()")
+    public int h(T x);
+  }
+
+  private static class G implements K<Integer> {
+    @Override
+    public int h(Integer x) {
+      return x;
+    }
+  }
+
+  private static class P {
+    @Requires("GenericsTest.countPrecondition()")
+    public Object get() {
+      return "";
+    }
+  }
+
+  private static class Q extends P {
+    /* Covariant return type; compiled with a bridge method. */
+    @Override
+    public String get() {
+      return "q";
+    }
+  }
+
   public void testB() {
     B b = new B(48);
   }
@@ -192,6 +227,34 @@ public class GenericsTest extends TestCase {
     }
   }
 
+  public void testBridgeGeneric() {
+    K<Integer> k = new G();
+    preconditionCount = 0;
+    k.h(1);
+    assertEquals(1, preconditionCount);
+  }
+
+  public void testBridgeGenericDirect() {
+    G g = new G();
+    preconditionCount = 0;
+    g.h(1);
+    assertEquals(1, preconditionCount);
+  }
+
+  public void testBridgeCovariant() {
+    P p = new Q();
+    preconditionCount = 0;
+    p.get();
+    assertEquals(1, preconditionCount);
+  }
+
+  public void testBridgeCovariantDirect() {
+    Q q = new Q();
+    preconditionCount = 0;
+    q.get();
+    assertEquals(1, preconditionCount);
+  }
+
   public void testT() {
     Npe npe = new Npe();
     try {
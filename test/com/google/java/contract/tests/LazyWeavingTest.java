@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.agent.ContractClassFileTransformer;
+import com.google.java.contract.core.util.JavaUtils;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import junit.framework.TestCase;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tests lazy weaving of contracted classes.
+ */
+public class LazyWeavingTest extends TestCase {
+  @Invariant("n >= 0")
+  public static class Target {
+    protected int n;
+
+    @Requires("x > 0")
+    @Ensures("n == old(n) + x")
+    public void add(int x) {
+      n += x;
+    }
+
+    public int get() {
+      return n;
+    }
+  }
+
+  private byte[] lazy;
+  private byte[] full;
+
+  /**
+   * Returns the methods of the class file {@code bytecode}, as
+   * strings holding their access flags, names and descriptors.
+   */
+  private static Set<String> getMethods(byte[] bytecode) {
+    final Set<String> methods = new HashSet<String>();
+    new ClassReader(bytecode).accept(new ClassVisitor(Opcodes.ASM5) {
+      @Override
+      public MethodVisitor visitMethod(int access, String name, String desc,
+                                       String signature, String[] exceptions) {
+        methods.add(access + " " + name + desc);
+        return null;
+      }
+    }, 0);
+    return methods;
+  }
+
+  /**
+   * Returns the owners and names of the methods called from method
+   * {@code methodName} of the class file {@code bytecode}.
+   */
+  private static Set<String> getCalls(byte[] bytecode,
+                                      final String methodName) {
+    final Set<String> calls = new HashSet<String>();
+    new ClassReader(bytecode).accept(new ClassVisitor(Opcodes.ASM5) {
+      @Override
+      public MethodVisitor visitMethod(int access, String name, String desc,
+                                       String signature, String[] exceptions) {
+        if (!name.equals(methodName)) {
+          return null;
+        }
+        return new MethodVisitor(Opcodes.ASM5) {
+          @Override
+          public void visitMethodInsn(int opcode, String owner, String name,
+                                      String desc, boolean itf) {
+            calls.add(owner + "." + name);
+          }
+        };
+      }
+    }, 0);
+    return calls;
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    String baseName = Target.class.getName().replace('.', '/');
+    byte[] bytecode = TestUtils.getResourceBytes(baseName + ".class");
+    byte[] contractBytecode =
+        TestUtils.getResourceBytes(baseName + JavaUtils.CONTRACTS_EXTENSION);
+
+    ContractClassFileTransformer transformer =
+        new ContractClassFileTransformer();
+    transformer.setLazyWeaving(true);
+    lazy = transformer.transform(LazyWeavingTest.class.getClassLoader(),
+                                 baseName, null, null, bytecode);
+    full = transformer.transformWithContracts(bytecode, contractBytecode);
+  }
+
+  public void testSameMethods() {
+    assertNotNull(lazy);
+    assertEquals(getMethods(full), getMethods(lazy));
+  }
+
+  public void testTrampoline() {
+    String enter = "com/google/java/contract/core/agent/LazyWeaver.enter";
+    String getContext =
+        "com/google/java/contract/core/runtime/ContractRuntime.getContext";
+
+    Set<String> lazyCalls = getCalls(lazy, "add");
+    assertTrue(lazyCalls.contains(enter));
+    assertFalse(lazyCalls.contains(getContext));
+
+    Set<String> fullCalls = getCalls(full, "add");
+    assertFalse(fullCalls.contains(enter));
+    assertTrue(fullCalls.contains(getContext));
+  }
+
+  public void testLazyUnchecked() throws Exception {
+    ClassLoader loader =
+        new TestUtils.SingleClassLoader(Target.class.getName(), lazy);
+    Class<?> clazz = loader.loadClass(Target.class.getName());
+    assertNotSame(Target.class, clazz);
+
+    /* No retransformation takes place outside of the agent. */
+    Object target = clazz.newInstance();
+    clazz.getMethod("add", int.class).invoke(target, -1);
+    assertEquals(-1, clazz.getMethod("get").invoke(target));
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.Invariant;
+import com.google.java.contract.InvariantError;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.runtime.ContractRuntime;
+import com.google.java.contract.util.Iterables;
+import com.google.java.contract.util.Predicate;
+import com.google.java.contract.util.Quantifiers;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests parallel evaluation of quantifiers.
+ */
+public class ParallelQuantifiersTest extends TestCase {
+  private static final int SIZE = 100000;
+
+  @Invariant("Quantifiers.forAll(xs, x -> x >= 0)")
+  private static class A {
+    protected int[] xs = new int[SIZE];
+
+    public void set(int i, int x) {
+      xs[i] = x;
+    }
+  }
+
+  private static class B {
+    @Requires("x >= 0")
+    public static boolean positive(int x) {
+      return true;
+    }
+  }
+
+  @Override
+  protected void setUp() {
+    ContractRuntime.setParallelThreshold(SIZE / 10);
+  }
+
+  @Override
+  protected void tearDown() {
+    ContractRuntime.setParallelThreshold(0);
+  }
+
+  public void testInvariant() {
+    A a = new A();
+    a.set(SIZE - 1, 1);
+    try {
+      a.set(SIZE / 2, -1);
+      fail();
+    } catch (InvariantError expected) {
+      assertEquals("[Quantifiers.forAll(xs, x -> x >= 0)]",
+                   expected.getMessages().toString());
+    }
+  }
+
+  public void testRanges() {
+    assertTrue(Quantifiers.forAll(0, SIZE, i -> i < SIZE));
+    assertFalse(Quantifiers.forAll(0, SIZE, i -> i != SIZE - 1));
+    assertTrue(Quantifiers.exists(0, SIZE, i -> i == SIZE - 1));
+    assertFalse(Quantifiers.existsLong(0, SIZE, i -> i < 0));
+  }
+
+  public void testLists() {
+    List<Integer> xs = new ArrayList<Integer>();
+    for (int i = 0; i < SIZE; ++i) {
+      xs.add(i);
+    }
+    assertTrue(Iterables.all(xs, new Predicate<Integer>() {
+      @Override
+      public boolean apply(Integer x) {
+        return x >= 0;
+      }
+    }));
+    assertTrue(Iterables.any(xs, new Predicate<Integer>() {
+      @Override
+      public boolean apply(Integer x) {
+        return x == SIZE - 1;
+      }
+    }));
+  }
+
+  public void testNestedContractsDisabled() {
+    int[] xs = new int[SIZE];
+    xs[SIZE - 1] = -1;
+    assertTrue(Quantifiers.forAll(xs, x -> B.positive(x)));
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.core.agent.ActivationProfile;
+import com.google.java.contract.core.agent.ActivationRuleManager;
+import com.google.java.contract.core.agent.PreWovenVariants;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+
+/**
+ * Tests pre-woven class variants.
+ */
+public class PreWovenVariantsTest extends TestCase {
+  private static final String CLASS_NAME = "a/b/C";
+
+  private File dir;
+  private ClassLoader loader;
+  private ActivationRuleManager rules;
+
+  @Override
+  protected void setUp() throws IOException {
+    dir = File.createTempFile("cofoja", "variants");
+    dir.delete();
+    dir.mkdir();
+    loader = new URLClassLoader(new URL[] { dir.toURI().toURL() }, null);
+    rules = new ActivationRuleManager() {};
+  }
+
+  @Override
+  protected void tearDown() {
+    for (ActivationProfile profile : ActivationProfile.values()) {
+      new File(dir, PreWovenVariants.getFileName(CLASS_NAME, profile))
+          .delete();
+    }
+    new File(dir, "a/b").delete();
+    new File(dir, "a").delete();
+    dir.delete();
+  }
+
+  private void write(ActivationProfile profile, byte[] bytecode,
+                     byte[] instrumented) throws IOException {
+    PreWovenVariants.write(
+        new File(dir, PreWovenVariants.getFileName(CLASS_NAME, profile)),
+        bytecode, instrumented);
+  }
+
+  public void testFind() throws IOException {
+    byte[] bytecode = { 1, 2, 3 };
+    byte[] instrumented = { 4, 5, 6, 7 };
+    write(ActivationProfile.PRE, bytecode, instrumented);
+    assertTrue(Arrays.equals(instrumented,
+        PreWovenVariants.find(loader, CLASS_NAME,
+                              ActivationProfile.PRE, bytecode)));
+    assertNull(PreWovenVariants.find(loader, CLASS_NAME,
+                                     ActivationProfile.ALL, bytecode));
+  }
+
+  public void testStale() throws IOException {
+    write(ActivationProfile.ALL, new byte[] { 1, 2, 3 }, new byte[] { 4 });
+    assertNull(PreWovenVariants.find(loader, CLASS_NAME,
+                                     ActivationProfile.ALL,
+                                     new byte[] { 1, 2, 4 }));
+  }
+
+  public void testModes() throws IOException {
+    byte[] bytecode = { 1, 2, 3 };
+    byte[] instrumented = { 4, 5, 6, 7 };
+    PreWovenVariants.write(
+        new File(dir, PreWovenVariants.getFileName(CLASS_NAME,
+                                                   ActivationProfile.ALL)),
+        bytecode, instrumented, PreWovenVariants.DIRTY);
+    assertNull(PreWovenVariants.find(loader, CLASS_NAME,
+                                     ActivationProfile.ALL, bytecode));
+    assertNull(PreWovenVariants.find(loader, CLASS_NAME,
+                                     ActivationProfile.ALL, bytecode,
+                                     PreWovenVariants.FLATTEN));
+    assertTrue(Arrays.equals(instrumented,
+        PreWovenVariants.find(loader, CLASS_NAME, ActivationProfile.ALL,
+                              bytecode, PreWovenVariants.DIRTY)));
+  }
+
+  public void testProfileAll() {
+    assertEquals(ActivationProfile.ALL,
+                 ActivationProfile.forClass(rules, "a.b.C"));
+  }
+
+  public void testProfilePre() {
+    rules.disablePostconditions("a.b.*");
+    rules.disableInvariants("a.b.*");
+    assertEquals(ActivationProfile.PRE,
+                 ActivationProfile.forClass(rules, "a.b.C"));
+    assertEquals(ActivationProfile.ALL,
+                 ActivationProfile.forClass(rules, "a.d.C"));
+  }
+
+  public void testProfileOff() {
+    rules.disablePreconditions("a.*");
+    rules.disablePostconditions("a.*");
+    rules.disableInvariants("a.*");
+    assertEquals(ActivationProfile.OFF,
+                 ActivationProfile.forClass(rules, "a.b.C"));
+  }
+
+  public void testProfileNone() {
+    rules.disablePreconditions("a.b.C");
+    assertNull(ActivationProfile.forClass(rules, "a.b.C"));
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.InvariantError;
+import com.google.java.contract.PostconditionError;
+import com.google.java.contract.Requires;
+import com.google.java.contract.util.Quantifiers;
+import junit.framework.TestCase;
+
+/**
+ * Tests primitive quantifiers in contracts.
+ */
+public class QuantifiersTest extends TestCase {
+  @Invariant({
+    "Quantifiers.sorted(keys, 0, size)",
+    "Quantifiers.forAll(keys, 0, size, k -> k >= 0)"
+  })
+  private static class SortedSet {
+    protected int[] keys = new int[16];
+    protected int size;
+
+    @Requires("k >= 0")
+    @Ensures("Quantifiers.exists(0, size, i -> keys[i] == k)")
+    public void add(int k) {
+      int i = size++;
+      while (i > 0 && keys[i - 1] > k) {
+        keys[i] = keys[i - 1];
+        --i;
+      }
+      keys[i] = k;
+    }
+
+    public void addUnsorted(int k) {
+      keys[size++] = k;
+    }
+
+    @Ensures("Quantifiers.forAll(result, x -> x % 2 == 0)")
+    public long[] evens(boolean bogus) {
+      return bogus ? new long[] { 2, 3 } : new long[] { 2, 4 };
+    }
+  }
+
+  protected SortedSet sample;
+
+  @Override
+  protected void setUp() {
+    sample = new SortedSet();
+  }
+
+  public void testSorted() {
+    sample.add(3);
+    sample.add(1);
+    sample.add(2);
+    assertEquals(3, sample.size);
+  }
+
+  public void testNotSorted() {
+    sample.add(3);
+    try {
+      sample.addUnsorted(1);
+      fail();
+    } catch (InvariantError expected) {
+      assertEquals("[Quantifiers.sorted(keys, 0, size)]",
+                   expected.getMessages().toString());
+    }
+  }
+
+  public void testArray() {
+    sample.evens(false);
+  }
+
+  public void testArrayViolated() {
+    try {
+      sample.evens(true);
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[Quantifiers.forAll(result, x -> x % 2 == 0)]",
+                   expected.getMessages().toString());
+    }
+  }
+
+  public void testDoubles() {
+    assertTrue(Quantifiers.sorted(new double[] { -1.0, 0.0, 0.0, 2.5 }));
+    assertFalse(Quantifiers.sorted(new double[] { 0.0, -0.0 }));
+    assertFalse(Quantifiers.sorted((double[]) null));
+    assertTrue(Quantifiers.existsLong(0, 1L << 40, i -> i == 3));
+  }
+
+  public void testExistsRange() {
+    int[] ints = { 1, 2, 3, 4 };
+    assertTrue(Quantifiers.exists(ints, 1, 3, x -> x == 3));
+    assertFalse(Quantifiers.exists(ints, 1, 3, x -> x == 4));
+    assertFalse(Quantifiers.exists(ints, 2, 2, x -> true));
+    long[] longs = { 1L, 2L, 3L };
+    assertTrue(Quantifiers.exists(longs, 0, 2, x -> x == 2L));
+    assertFalse(Quantifiers.exists(longs, 0, 2, x -> x == 3L));
+    double[] doubles = { 0.5, 1.5, 2.5 };
+    assertTrue(Quantifiers.exists(doubles, 2, 3, x -> x > 2.0));
+    assertFalse(Quantifiers.exists(doubles, 0, 2, x -> x > 2.0));
+    assertFalse(Quantifiers.exists((int[]) null, 0, 0, x -> true));
+  }
+}
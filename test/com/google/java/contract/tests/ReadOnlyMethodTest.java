@@ -0,0 +1,146 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.Invariant;
+import com.google.java.contract.InvariantError;
+import com.google.java.contract.core.agent.ContractClassFileTransformer;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests that invariants are not checked on exit from methods that
+ * cannot change the state of their receiver.
+ */
+public class ReadOnlyMethodTest extends TestCase {
+  @Invariant({
+    "n >= 0",
+    "items.size() <= n"
+  })
+  public static class Counter {
+    protected int n;
+    protected List<Object> items;
+
+    public Counter() {
+      items = new ArrayList<Object>();
+    }
+
+    public int get() {
+      return n;
+    }
+
+    public int getTwice() {
+      return twice();
+    }
+
+    private int twice() {
+      return 2 * n;
+    }
+
+    public String describe(String prefix) {
+      return prefix.concat(Integer.toString(n));
+    }
+
+    public void inc() {
+      ++n;
+    }
+
+    public void sneak() {
+      items.add(null);
+    }
+
+    public int broken() {
+      return 2 * overridable();
+    }
+
+    protected int overridable() {
+      return n;
+    }
+  }
+
+  /**
+   * Returns the number of invariant checks woven into method
+   * {@code methodName} of the class file {@code bytecode}.
+   */
+  private static int countInvariantCalls(byte[] bytecode,
+                                         final String methodName) {
+    final int[] count = new int[1];
+    new ClassReader(bytecode).accept(new ClassVisitor(Opcodes.ASM5) {
+      @Override
+      public MethodVisitor visitMethod(int access, String name, String desc,
+                                       String signature, String[] exceptions) {
+        if (!name.equals(methodName)) {
+          return null;
+        }
+        return new MethodVisitor(Opcodes.ASM5) {
+          @Override
+          public void visitMethodInsn(int opcode, String owner, String name,
+                                      String desc, boolean itf) {
+            if (name.equals("com$google$java$contract$I")) {
+              ++count[0];
+            }
+          }
+        };
+      }
+    }, 0);
+    return count[0];
+  }
+
+  private byte[] woven;
+
+  @Override
+  protected void setUp() throws Exception {
+    String name = Counter.class.getName().replace('.', '/');
+    ContractClassFileTransformer transformer =
+        new ContractClassFileTransformer();
+    woven = transformer.transform(ReadOnlyMethodTest.class.getClassLoader(),
+                                  name, null, null,
+                                  TestUtils.getResourceBytes(name + ".class"));
+    assertNotNull(woven);
+  }
+
+  public void testReadOnly() {
+    assertEquals(1, countInvariantCalls(woven, "get"));
+    assertEquals(1, countInvariantCalls(woven, "getTwice"));
+    assertEquals(1, countInvariantCalls(woven, "describe"));
+  }
+
+  public void testWriting() {
+    /* On entry, on return and on throw. */
+    assertEquals(3, countInvariantCalls(woven, "inc"));
+    assertEquals(3, countInvariantCalls(woven, "sneak"));
+    assertEquals(3, countInvariantCalls(woven, "broken"));
+  }
+
+  public void testWritingChecked() {
+    Counter counter = new Counter();
+    assertEquals(0, counter.get());
+    try {
+      counter.sneak();
+      fail();
+    } catch (InvariantError expected) {
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.core.agent.RuntimeLinkChecker;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests {@link RuntimeLinkChecker}.
+ */
+public class RuntimeLinkCheckerTest extends TestCase {
+  private static final String RUNTIME_NAME =
+      "com/google/java/contract/core/runtime/ContractRuntime";
+  private static final String AGENT_NAME =
+      "com/google/java/contract/core/agent/ActivationRuleManager";
+
+  private File runtimeJar;
+  private RuntimeLinkChecker checker;
+
+  /**
+   * Returns a class named {@code x/Y} whose only method calls the
+   * static method {@code name} of {@code owner}, of descriptor
+   * {@code desc}.
+   */
+  private static byte[] makeClass(String owner, String name, String desc) {
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC, "x/Y", null,
+             "java/lang/Object", null);
+    MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC,
+                                      "f", "()V", null, null);
+    mv.visitCode();
+    mv.visitInsn(Opcodes.ACONST_NULL);
+    mv.visitMethodInsn(Opcodes.INVOKESTATIC, owner, name, desc, false);
+    mv.visitInsn(Opcodes.RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  @Override
+  protected void setUp() throws IOException {
+    runtimeJar = File.createTempFile("cofoja-runtime", ".jar");
+    ZipOutputStream zout =
+        new ZipOutputStream(new FileOutputStream(runtimeJar));
+    try {
+      zout.putNextEntry(new ZipEntry(RUNTIME_NAME + ".class"));
+      zout.closeEntry();
+    } finally {
+      zout.close();
+    }
+    checker = new RuntimeLinkChecker(runtimeJar);
+  }
+
+  @Override
+  protected void tearDown() {
+    runtimeJar.delete();
+  }
+
+  public void testRuntimeReference() {
+    checker.add(makeClass(RUNTIME_NAME, "f", "(Ljava/lang/Object;)V"));
+    assertEquals(Collections.emptyList(), checker.getMissingReferences());
+  }
+
+  public void testAgentReference() {
+    checker.add(makeClass(AGENT_NAME, "f", "(Ljava/lang/Object;)V"));
+    assertEquals(
+        Arrays.asList("x.Y -> " + AGENT_NAME.replace('/', '.')),
+        checker.getMissingReferences());
+  }
+
+  public void testDescriptorReference() {
+    checker.add(makeClass("x/Z", "f", "(L" + AGENT_NAME + ";)V"));
+    assertEquals(
+        Arrays.asList("x.Y -> " + AGENT_NAME.replace('/', '.')),
+        checker.getMissingReferences());
+  }
+
+  public void testCheckedReference() {
+    byte[] bytecode = makeClass(AGENT_NAME, "f", "(Ljava/lang/Object;)V");
+    checker.add(bytecode);
+    ClassWriter cw = new ClassWriter(0);
+    cw.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC, AGENT_NAME, null,
+             "java/lang/Object", null);
+    cw.visitEnd();
+    checker.add(cw.toByteArray());
+    assertEquals(Collections.emptyList(), checker.getMissingReferences());
+  }
+}
@@ -79,6 +79,60 @@ public class SelectiveContractsTest extends TestCase {
   private static class G implements I {
   }
 
+  @Invariant("value >= 0")
+  private static class H {
+    int value;
+
+    private void set(int v) {
+      value = v;
+    }
+
+    void setPackage(int v) {
+      value = v;
+    }
+
+    public void setPublic(int v) {
+      value = v;
+    }
+
+    static void corrupt(H h) {
+      h.set(-1);
+    }
+
+    static void corruptPackage(H h) {
+      h.setPackage(-1);
+    }
+  }
+
+  @Invariant("value >= 0")
+  private static class K {
+    int value;
+
+    private void set(int v) {
+      value = v;
+    }
+
+    static void corrupt(K k) {
+      k.set(-1);
+    }
+  }
+
+  public static class L {
+    @Requires("false")
+    public void f() {
+    }
+
+    @Requires("false")
+    void g() {
+    }
+  }
+
+  private static class M {
+    @Requires("false")
+    public void f() {
+    }
+  }
+
   @Override
   protected void setUp() {
     ContractEnvironment env = Cofoja.contractEnv;
@@ -89,6 +143,12 @@ public class SelectiveContractsTest extends TestCase {
     env.disablePreconditions("com.google.java.contract.tests.SelectiveContractsTest$D");
     env.disableInvariants("com.google.java.contract.tests.SelectiveContractsTest$E");
 
+    env.disablePrivateInvariants("com.google.java.contract.tests.SelectiveContractsTest$H");
+    env.disablePackageInvariants("com.google.java.contract.tests.SelectiveContractsTest$H");
+
+    env.disableInternalContracts("com.google.java.contract.tests.SelectiveContractsTest$L");
+    env.disableInternalContracts("com.google.java.contract.tests.SelectiveContractsTest$M");
+
     env.ignore("com.google.java.contract.tests.SelectiveContractsTest$F");
     env.ignore("com.google.java.contract.tests.SelectiveContractsTest$G");
 
@@ -136,6 +196,49 @@ public class SelectiveContractsTest extends TestCase {
     new G();
   }
 
+  public void testPrivateInvariants() {
+    H.corrupt(new H());
+  }
+
+  public void testPackageInvariants() {
+    H.corruptPackage(new H());
+  }
+
+  public void testPublicInvariants() {
+    try {
+      new H().setPublic(-1);
+      fail();
+    } catch (InvariantError expected) {
+      /* Expected since only internal methods are exempted. */
+    }
+  }
+
+  public void testPrivateInvariantsDefault() {
+    try {
+      K.corrupt(new K());
+      fail();
+    } catch (InvariantError expected) {
+      /* Expected since private invariants are enabled by default. */
+    }
+  }
+
+  public void testBoundaryPublicMethod() {
+    try {
+      new L().f();
+      fail();
+    } catch (PreconditionError expected) {
+      /* Expected since public methods of public classes are checked. */
+    }
+  }
+
+  public void testBoundaryPackageMethod() {
+    new L().g();
+  }
+
+  public void testBoundaryPrivateClass() {
+    new M().f();
+  }
+
   public void testStarPattern() {
     new com.google.java.contract.tests.selective.a.A();
     new com.google.java.contract.tests.selective.a.x.X();
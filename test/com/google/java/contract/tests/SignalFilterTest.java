@@ -0,0 +1,157 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.PostconditionError;
+import com.google.java.contract.ThrowEnsures;
+import com.google.java.contract.core.agent.ContractClassFileTransformer;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import junit.framework.TestCase;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tests that exceptional postconditions are only evaluated for the
+ * exception types they name.
+ */
+public class SignalFilterTest extends TestCase {
+  public static class Parent {
+    @ThrowEnsures({ "IllegalStateException", "k < 0" })
+    public void run(int k) {
+      if (k == 2 || k == -2) {
+        throw new IllegalStateException();
+      }
+    }
+  }
+
+  public static class Child extends Parent {
+    @Override
+    @ThrowEnsures({ "IllegalArgumentException", "k > 0" })
+    public void run(int k) {
+      if (k == 1 || k == -1) {
+        throw new IllegalArgumentException();
+      }
+      if (k == 3) {
+        throw new UnsupportedOperationException();
+      }
+      super.run(k);
+    }
+
+    @Ensures("result == k")
+    public int identity(int k) {
+      if (k < 0) {
+        throw new IllegalArgumentException();
+      }
+      return k;
+    }
+  }
+
+  /**
+   * Returns the types tested with {@code instanceof} in method
+   * {@code methodName} of the class file {@code bytecode}.
+   */
+  private static Set<String> getInstanceOfTypes(byte[] bytecode,
+                                                final String methodName) {
+    final Set<String> types = new HashSet<String>();
+    new ClassReader(bytecode).accept(new ClassVisitor(Opcodes.ASM5) {
+      @Override
+      public MethodVisitor visitMethod(int access, String name, String desc,
+                                       String signature, String[] exceptions) {
+        if (!name.equals(methodName)) {
+          return null;
+        }
+        return new MethodVisitor(Opcodes.ASM5) {
+          @Override
+          public void visitTypeInsn(int opcode, String type) {
+            if (opcode == Opcodes.INSTANCEOF) {
+              types.add(type);
+            }
+          }
+        };
+      }
+    }, 0);
+    return types;
+  }
+
+  private Child child;
+
+  @Override
+  protected void setUp() {
+    child = new Child();
+  }
+
+  public void testNamedSignal() {
+    try {
+      child.run(1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testNamedSignalViolated() {
+    try {
+      child.run(-1);
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[IllegalArgumentException => k > 0]",
+                   expected.getMessages().toString());
+    }
+  }
+
+  public void testInheritedSignalViolated() {
+    try {
+      child.run(2);
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[IllegalStateException => k < 0]",
+                   expected.getMessages().toString());
+    }
+  }
+
+  public void testOtherSignal() {
+    try {
+      child.run(3);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  public void testWovenFilter() throws Exception {
+    String name = Child.class.getName().replace('.', '/');
+    ContractClassFileTransformer transformer =
+        new ContractClassFileTransformer();
+    byte[] bytecode = TestUtils.getResourceBytes(name + ".class");
+    byte[] woven =
+        transformer.transform(SignalFilterTest.class.getClassLoader(), name,
+                              null, null, bytecode);
+    assertNotNull(woven);
+
+    Set<String> runTypes = getInstanceOfTypes(woven, "run");
+    assertTrue(runTypes.contains("java/lang/IllegalArgumentException"));
+    assertTrue(runTypes.contains("java/lang/IllegalStateException"));
+
+    /* No exceptional postconditions; exceptions pass through. */
+    assertTrue(getInstanceOfTypes(woven, "identity").isEmpty());
+  }
+}
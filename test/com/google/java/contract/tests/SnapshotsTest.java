@@ -0,0 +1,161 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.PostconditionError;
+import com.google.java.contract.util.SnapshotList;
+import com.google.java.contract.util.Snapshots;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests snapshots of collections in old expressions.
+ */
+public class SnapshotsTest extends TestCase {
+  private static class A {
+    List<Integer> list = new SnapshotList<Integer>();
+
+    @Ensures({
+      "list.size() == old(Snapshots.of(list)).size() + 1",
+      "list.subList(0, list.size() - 1).equals(old(Snapshots.of(list)))"
+    })
+    public void push(int x) {
+      list.add(x);
+    }
+
+    @Ensures("list.equals(old(Snapshots.of(list)))")
+    public void pushBroken(int x) {
+      list.add(x);
+    }
+
+    @Ensures("java.util.Arrays.equals(values, old(Snapshots.of(values)))")
+    public void touch(int[] values) {
+      ++values[0];
+    }
+  }
+
+  public void testSnapshotInOld() {
+    A a = new A();
+    for (int i = 0; i < 100; ++i) {
+      a.push(i);
+    }
+    assertEquals(100, a.list.size());
+  }
+
+  public void testSnapshotInOldBroken() {
+    try {
+      new A().pushBroken(1);
+      fail();
+    } catch (PostconditionError expected) {
+      /* Expected since the snapshot has the old elements. */
+    }
+  }
+
+  public void testArraySnapshotInOld() {
+    try {
+      new A().touch(new int[] { 1 });
+      fail();
+    } catch (PostconditionError expected) {
+      /* Expected since arrays are copied. */
+    }
+  }
+
+  public void testSnapshotListMatchesArrayList() {
+    Random random = new Random(42);
+    SnapshotList<Integer> list = new SnapshotList<Integer>();
+    ArrayList<Integer> expected = new ArrayList<Integer>();
+    List<List<Integer>> snapshots = new ArrayList<List<Integer>>();
+    List<List<Integer>> copies = new ArrayList<List<Integer>>();
+    for (int i = 0; i < 5000; ++i) {
+      int op = random.nextInt(10);
+      if (op < 5 || expected.isEmpty()) {
+        list.add(i);
+        expected.add(i);
+      } else if (op < 7) {
+        int index = random.nextInt(expected.size());
+        list.set(index, -i);
+        expected.set(index, -i);
+      } else if (op < 8) {
+        int index = random.nextInt(expected.size() + 1);
+        list.add(index, i);
+        expected.add(index, i);
+      } else if (op < 9) {
+        int index = random.nextInt(expected.size());
+        assertEquals(expected.remove(index), list.remove(index));
+      } else {
+        snapshots.add(list.snapshot());
+        copies.add(new ArrayList<Integer>(expected));
+      }
+    }
+    assertEquals(expected, list);
+    assertEquals(copies, snapshots);
+  }
+
+  public void testSnapshotListClear() {
+    SnapshotList<String> list =
+        new SnapshotList<String>(Arrays.asList("a", "b", "c"));
+    List<String> snapshot = list.snapshot();
+    list.clear();
+    list.add("d");
+    assertEquals(Arrays.asList("a", "b", "c"), snapshot);
+    assertEquals(Arrays.asList("d"), list);
+  }
+
+  public void testSnapshotUnmodifiable() {
+    SnapshotList<String> list =
+        new SnapshotList<String>(Arrays.asList("a"));
+    try {
+      list.snapshot().add("b");
+      fail();
+    } catch (UnsupportedOperationException expected) {
+      /* Expected since snapshots are read-only. */
+    }
+  }
+
+  public void testVersion() {
+    SnapshotList<String> list = new SnapshotList<String>();
+    long version = list.version();
+    list.add("a");
+    assertTrue(list.version() != version);
+    version = list.version();
+    list.set(0, "b");
+    assertTrue(list.version() != version);
+  }
+
+  public void testCopiedSnapshots() {
+    ArrayList<String> list = new ArrayList<String>(Arrays.asList("a"));
+    List<String> snapshot = Snapshots.of(list);
+    list.add("b");
+    assertEquals(Arrays.asList("a"), snapshot);
+
+    Map<String, Integer> map = new HashMap<String, Integer>();
+    map.put("a", 1);
+    Map<String, Integer> mapSnapshot = Snapshots.of(map);
+    map.put("a", 2);
+    assertEquals(Integer.valueOf(1), mapSnapshot.get("a"));
+
+    assertNull(Snapshots.of((List<String>) null));
+  }
+}
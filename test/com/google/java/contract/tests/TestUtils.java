@@ -0,0 +1,96 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.core.util.JavaUtils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+/**
+ * Helpers for tests that weave or load class files by hand.
+ */
+final class TestUtils {
+  private TestUtils() {
+  }
+
+  /**
+   * A class loader that hides all contract class files, so that the
+   * agent only sees contracts embedded in or woven into the classes
+   * it loads.
+   */
+  static class ContractHidingClassLoader extends ClassLoader {
+    ContractHidingClassLoader() {
+      super(TestUtils.class.getClassLoader());
+    }
+
+    @Override
+    public URL getResource(String name) {
+      if (name.endsWith(JavaUtils.CONTRACTS_EXTENSION)) {
+        return null;
+      }
+      return super.getResource(name);
+    }
+  }
+
+  /**
+   * A class loader that defines a single class from the given
+   * bytecode and hides all contract class files.
+   */
+  static class SingleClassLoader extends ContractHidingClassLoader {
+    private String className;
+    private byte[] bytecode;
+
+    SingleClassLoader(String className, byte[] bytecode) {
+      this.className = className;
+      this.bytecode = bytecode;
+    }
+
+    @Override
+    protected synchronized Class<?> loadClass(String name, boolean resolve)
+        throws ClassNotFoundException {
+      if (!name.equals(className)) {
+        return super.loadClass(name, resolve);
+      }
+      Class<?> clazz = findLoadedClass(name);
+      if (clazz == null) {
+        clazz = defineClass(name, bytecode, 0, bytecode.length);
+      }
+      return clazz;
+    }
+  }
+
+  /**
+   * Returns the content of the resource {@code name}, as found by the
+   * class loader of the tests.
+   */
+  static byte[] getResourceBytes(String name) throws IOException {
+    InputStream in =
+        TestUtils.class.getClassLoader().getResourceAsStream(name);
+    if (in == null) {
+      throw new FileNotFoundException(name);
+    }
+    try {
+      return JavaUtils.getBytes(in);
+    } finally {
+      in.close();
+    }
+  }
+}
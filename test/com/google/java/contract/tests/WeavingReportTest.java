@@ -0,0 +1,152 @@
+/*
+ * Copyright 2010 Google Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.core.agent.WeavingReport;
+import junit.framework.TestCase;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests weaving reports.
+ */
+public class WeavingReportTest extends TestCase {
+  /**
+   * Returns a class with a method {@code m()V} of {@code size}
+   * bytes, using {@code locals} local variables and {@code handlers}
+   * exception handlers, and, if {@code extra} is {@code true}, an
+   * additional method {@code x()V}.
+   */
+  private static byte[] makeClass(int size, int locals, int handlers,
+                                  boolean extra) {
+    ClassWriter cw = new ClassWriter(0);
+    cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, "a/B", null,
+             "java/lang/Object", null);
+    MethodVisitor mv =
+        cw.visitMethod(Opcodes.ACC_PUBLIC, "m", "()V", null, null);
+    mv.visitCode();
+    Label start = new Label();
+    Label end = new Label();
+    mv.visitLabel(start);
+    for (int i = 1; i < size; ++i) {
+      mv.visitInsn(Opcodes.NOP);
+    }
+    mv.visitLabel(end);
+    mv.visitInsn(Opcodes.RETURN);
+    for (int i = 0; i < handlers; ++i) {
+      mv.visitTryCatchBlock(start, end, end, null);
+    }
+    mv.visitMaxs(0, locals);
+    mv.visitEnd();
+    if (extra) {
+      mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "x", "()V", null, null);
+      mv.visitCode();
+      mv.visitInsn(Opcodes.RETURN);
+      mv.visitMaxs(0, 1);
+      mv.visitEnd();
+    }
+    mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT,
+                        "n", "()V", null, null);
+    mv.visitEnd();
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  private static WeavingReport.MethodEntry getEntry(WeavingReport report,
+                                                    String method) {
+    for (WeavingReport.MethodEntry entry : report.getMethods()) {
+      if (entry.method.equals(method)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  public void testMetrics() {
+    WeavingReport report = new WeavingReport(makeClass(10, 1, 0, false),
+                                             makeClass(20, 3, 2, true));
+    assertEquals("a/B", report.getClassName());
+    assertEquals(2, report.getMethods().size());
+
+    WeavingReport.MethodEntry m = getEntry(report, "m()V");
+    assertEquals(10, m.before.codeLength);
+    assertEquals(20, m.after.codeLength);
+    assertEquals(0, m.before.handlers);
+    assertEquals(2, m.after.handlers);
+    assertEquals(1, m.before.maxLocals);
+    assertEquals(3, m.after.maxLocals);
+    assertTrue(m.isChanged());
+    assertEquals(Collections.emptyList(), m.getCrossedLimits());
+
+    WeavingReport.MethodEntry x = getEntry(report, "x()V");
+    assertNull(x.before);
+    assertTrue(x.isChanged());
+
+    assertNull(getEntry(report, "n()V"));
+  }
+
+  public void testUnchanged() {
+    WeavingReport report = new WeavingReport(makeClass(10, 1, 0, false),
+                                             makeClass(10, 1, 0, false));
+    assertFalse(getEntry(report, "m()V").isChanged());
+    assertFalse(report.hasCrossedLimits());
+  }
+
+  public void testCrossedLimits() {
+    WeavingReport report = new WeavingReport(makeClass(30, 1, 0, false),
+                                             makeClass(8001, 1, 0, false));
+    List<String> expected =
+        Arrays.asList("MaxInlineSize", "FreqInlineSize", "HugeMethodLimit");
+    assertEquals(expected, getEntry(report, "m()V").getCrossedLimits());
+    assertTrue(report.hasCrossedLimits());
+    assertTrue(report.hasCrossedHugeMethodLimit());
+
+    report = new WeavingReport(makeClass(300, 1, 0, false),
+                               makeClass(326, 1, 0, false));
+    assertEquals(Arrays.asList("FreqInlineSize"),
+                 getEntry(report, "m()V").getCrossedLimits());
+    assertFalse(report.hasCrossedHugeMethodLimit());
+
+    report = new WeavingReport(makeClass(400, 1, 0, false),
+                               makeClass(500, 1, 0, false));
+    assertFalse(report.hasCrossedLimits());
+  }
+
+  public void testPrint() {
+    WeavingReport report = new WeavingReport(makeClass(300, 1, 0, false),
+                                             makeClass(326, 2, 1, true));
+    StringWriter buffer = new StringWriter();
+    PrintWriter out = new PrintWriter(buffer);
+    report.print(out);
+    out.flush();
+    String nl = System.getProperty("line.separator");
+    assertEquals("class a.B size 300 -> 327" + nl
+                 + "! m()V size 300 -> 326 handlers +1 locals +1"
+                 + " crosses FreqInlineSize" + nl
+                 + "  x()V added size 1" + nl,
+                 buffer.toString());
+  }
+}